@@ -332,7 +332,7 @@ def create_gtfs_files(stops, route_segments):
         writer = csv.writer(f)
         writer.writerow(['service_id', 'monday', 'tuesday', 'wednesday', 'thursday', 'friday', 'saturday', 'sunday', 'start_date', 'end_date'])
         # Service runs all days
-        writer.writerow(['WEEKDAY', '1', '1', '1', '1', '1', '1', '1', '20250101', '20251231'])
+        writer.writerow(['WEEKDAY', '1', '1', '1', '1', '1', '1', '1', '20250101', '20271231'])
 
     print("Created calendar.txt")
 
@@ -0,0 +1,9 @@
+package com.majuro.transit.codec;
+
+/**
+ * Payload that can be sent in the compact binary encoding; each instance writes one fixed-layout record
+ */
+public interface CompactEncodable {
+
+    void writeCompact(CompactWriter writer);
+}
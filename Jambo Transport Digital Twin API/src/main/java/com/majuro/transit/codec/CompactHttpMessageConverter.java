@@ -0,0 +1,81 @@
+package com.majuro.transit.codec;
+
+import com.majuro.transit.service.GtfsFeedIndex;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Writes {@link CompactEncodable} payloads, and collections of them, in the compact binary
+ * encoding when a client asks for {@value #MEDIA_TYPE_VALUE}. Write only.
+ */
+public class CompactHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String MEDIA_TYPE_VALUE = "application/vnd.majuro.compact";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    private final GtfsFeedIndex feedIndex;
+
+    public CompactHttpMessageConverter(GtfsFeedIndex feedIndex) {
+        super(MEDIA_TYPE);
+        this.feedIndex = feedIndex;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CompactEncodable.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        if (Collection.class.isAssignableFrom(resolved.toClass())) {
+            Class<?> element = resolved.asCollection().getGeneric(0).resolve();
+            return element != null && supports(element);
+        }
+        return supports(resolved.toClass());
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected void writeInternal(Object payload, Type type, HttpOutputMessage outputMessage) throws IOException {
+        CompactWriter writer = new CompactWriter(feedIndex.getVersion() == 0 ? null : feedIndex.getSnapshot());
+        if (payload instanceof Collection<?> records) {
+            for (Object record : records) {
+                writer.writeRecord((CompactEncodable) record);
+            }
+        } else {
+            writer.writeRecord((CompactEncodable) payload);
+        }
+        writer.writeTo(outputMessage.getBody());
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Compact encoding is write only", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Compact encoding is write only", inputMessage);
+    }
+}
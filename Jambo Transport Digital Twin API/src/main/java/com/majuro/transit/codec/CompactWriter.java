@@ -0,0 +1,161 @@
+package com.majuro.transit.codec;
+
+import com.majuro.transit.model.FeedSnapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer for the compact binary encoding. Records are written as fixed-layout big-endian fields;
+ * strings go into a dictionary written once ahead of the records and are referenced by index,
+ * and stops are referenced by their index in the stop table of the feed version in the header.
+ * <pre>
+ * u8  format version
+ * i64 feed version of the stop table
+ * u16 dictionary size, then per entry: u16 byte length, UTF-8 bytes
+ * u32 record count, then the records
+ * </pre>
+ */
+public final class CompactWriter {
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int NO_STRING = 0xFFFF;
+    public static final int NO_STOP = -1;
+    public static final int NO_COORDINATE = Integer.MIN_VALUE;
+    public static final short NO_SHORT = Short.MIN_VALUE;
+    public static final int NO_TIME = -1;
+    public static final int NO_SCALED = 0xFFFF;
+
+    private final FeedSnapshot snapshot;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+    private final DataOutputStream records = new DataOutputStream(bytes);
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private int recordCount;
+
+    /**
+     * @param snapshot Feed whose stop table stop indexes refer to; null writes every stop as absent
+     */
+    public CompactWriter(FeedSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public void writeRecord(CompactEncodable record) {
+        record.writeCompact(this);
+        recordCount++;
+    }
+
+    /**
+     * u16 dictionary index, {@link #NO_STRING} for null
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeU16(NO_STRING);
+            return;
+        }
+        Integer index = dictionaryIndex.get(value);
+        if (index == null) {
+            if (dictionary.size() >= NO_STRING) {
+                throw new RuntimeException("Too many distinct strings for the compact encoding");
+            }
+            index = dictionary.size();
+            dictionary.add(value);
+            dictionaryIndex.put(value, index);
+        }
+        writeU16(index);
+    }
+
+    /**
+     * i32 stop table index, {@link #NO_STOP} for null or unknown stops
+     */
+    public void writeStop(String stopId) {
+        writeInt(stopId == null || snapshot == null ? NO_STOP : snapshot.stopIndex(stopId));
+    }
+
+    /**
+     * i32 microdegrees, {@link #NO_COORDINATE} for null
+     */
+    public void writeCoordinate(Double degrees) {
+        writeInt(degrees == null ? NO_COORDINATE : (int) Math.round(degrees * 1_000_000));
+    }
+
+    /**
+     * i16, {@link #NO_SHORT} for null; values are clamped to the representable range
+     */
+    public void writeShort(Integer value) {
+        int clamped = value == null ? NO_SHORT : Math.max(NO_SHORT + 1, Math.min(Short.MAX_VALUE, value));
+        try {
+            records.writeShort(clamped);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * i32 seconds since midnight of an ISO time such as {@code 14:05}, {@link #NO_TIME} for null
+     */
+    public void writeTimeOfDay(String time) {
+        writeInt(time == null ? NO_TIME : LocalTime.parse(time).toSecondOfDay());
+    }
+
+    /**
+     * u16 of the value times {@code scale}, clamped to [0, 65534]; {@link #NO_SCALED} for null
+     */
+    public void writeScaled(Double value, int scale) {
+        writeU16(value == null ? NO_SCALED : (int) Math.max(0, Math.min(NO_SCALED - 1, Math.round(value * scale))));
+    }
+
+    public void writeInt(int value) {
+        try {
+            records.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeByte(int value) {
+        try {
+            records.writeByte(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void writeU16(int value) {
+        try {
+            records.writeShort(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the header, the dictionary and the records
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeByte(FORMAT_VERSION);
+        out.writeLong(snapshot == null ? 0 : snapshot.getVersion());
+        out.writeShort(dictionary.size());
+        for (String value : dictionary) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > 0xFFFF) {
+                throw new RuntimeException("String too long for the compact encoding");
+            }
+            out.writeShort(utf8.length);
+            out.write(utf8);
+        }
+        out.writeInt(recordCount);
+        bytes.writeTo(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,25 @@
+package com.majuro.transit.config;
+
+import com.majuro.transit.codec.CompactHttpMessageConverter;
+import com.majuro.transit.service.GtfsFeedIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final GtfsFeedIndex feedIndex;
+
+    /**
+     * The compact binary converter goes last, so JSON stays the default for clients that accept anything
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new CompactHttpMessageConverter(feedIndex));
+    }
+}
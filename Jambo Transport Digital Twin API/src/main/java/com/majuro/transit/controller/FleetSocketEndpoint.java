@@ -0,0 +1,125 @@
+package com.majuro.transit.controller;
+
+import com.majuro.transit.service.FleetSubscriptionBroker;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.ServletContextAware;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Live fleet updates over a WebSocket at {@value #PATH}. Clients send subscribe and unsubscribe
+ * messages (see {@link FleetSubscriptionBroker#handle}) and receive the current state of the
+ * vehicles they subscribed to, then delta messages as those vehicles change.
+ * Registered with the servlet container's JSR-356 server container.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FleetSocketEndpoint implements ServletContextAware, SmartInitializingSingleton {
+
+    public static final String PATH = "/api/gtfs/buses/ws";
+
+    private final FleetSubscriptionBroker broker;
+
+    // Slowest a client may read one message before it is dropped
+    @Value("${transit.fleet.ws.send-timeout-millis:10000}")
+    private long sendTimeoutMillis;
+
+    // Largest inbound message; longer messages close the connection
+    @Value("${transit.fleet.ws.max-message-chars:4096}")
+    private int maxMessageChars;
+
+    private ServletContext servletContext;
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ServerContainer container = servletContext == null ? null
+                : (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+        if (container == null) {
+            log.warn("No WebSocket server container available, {} is disabled", PATH);
+            return;
+        }
+        try {
+            container.addEndpoint(ServerEndpointConfig.Builder.create(Connection.class, PATH)
+                    .configurator(new ServerEndpointConfig.Configurator() {
+                        @Override
+                        public <T> T getEndpointInstance(Class<T> endpointClass) {
+                            return endpointClass.cast(new Connection(broker, sendTimeoutMillis, maxMessageChars));
+                        }
+                    })
+                    .build());
+            log.info("Fleet WebSocket endpoint registered at {}", PATH);
+        } catch (DeploymentException e) {
+            throw new RuntimeException("Failed to register fleet WebSocket endpoint", e);
+        }
+    }
+
+    /**
+     * One WebSocket connection, bridging its session to a broker client
+     */
+    public static class Connection extends Endpoint implements FleetSubscriptionBroker.Outbound {
+        private final FleetSubscriptionBroker broker;
+        private final long sendTimeoutMillis;
+        private final int maxMessageChars;
+        private Session session;
+        private FleetSubscriptionBroker.Client client;
+
+        Connection(FleetSubscriptionBroker broker, long sendTimeoutMillis, int maxMessageChars) {
+            this.broker = broker;
+            this.sendTimeoutMillis = sendTimeoutMillis;
+            this.maxMessageChars = maxMessageChars;
+        }
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            this.session = session;
+            session.setMaxTextMessageBufferSize(maxMessageChars);
+            session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+            client = broker.connect(this);
+            session.addMessageHandler(String.class, (MessageHandler.Whole<String>) text -> broker.handle(client, text));
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            broker.disconnect(client);
+        }
+
+        @Override
+        public void onError(Session session, Throwable error) {
+            log.debug("Fleet WebSocket error: {}", error.getMessage());
+        }
+
+        @Override
+        public void send(String text, Consumer<Throwable> done) {
+            session.getAsyncRemote().sendText(text, result -> done.accept(result.isOK() ? null : result.getException()));
+        }
+
+        @Override
+        public void close() {
+            try {
+                session.close();
+            } catch (IOException e) {
+                log.debug("Failed to close fleet WebSocket: {}", e.getMessage());
+            }
+        }
+    }
+}
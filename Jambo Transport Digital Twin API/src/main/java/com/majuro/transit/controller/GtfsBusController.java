@@ -5,16 +5,23 @@ import com.majuro.transit.dto.StopDTO;
 import com.majuro.transit.model.gtfs.GtfsStopTime;
 import com.majuro.transit.model.gtfs.GtfsTrip;
 import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.service.DelayPropagationService;
+import com.majuro.transit.service.FleetSnapshotService;
 import com.majuro.transit.service.GtfsBusSimulationService;
 import com.majuro.transit.service.RoutePathService;
-import com.majuro.transit.service.TidalImpactCalculator;
+import com.majuro.transit.service.RouteImpactCache;
+import com.majuro.transit.service.StaticResponseCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Flux;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/gtfs/buses")
@@ -24,47 +31,47 @@ public class GtfsBusController {
 
     private final GtfsBusSimulationService simulationService;
     private final RoutePathService routePathService;
-    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
+    private final DelayPropagationService delayPropagationService;
+    private final FleetSnapshotService fleetSnapshotService;
+    private final StaticResponseCache staticResponseCache;
 
     @GetMapping("/active")
     public ResponseEntity<List<BusPositionDTO>> getActiveBuses() {
-        List<BusPositionDTO> positions = simulationService.getAllActiveBusPositions()
-                .stream()
-                .map(BusPositionDTO::fromEntity)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(positions);
+        return ResponseEntity.ok(fleetSnapshotService.getActivePositions());
+    }
+
+    /**
+     * Server-sent events: a full snapshot on connect (or the frames missed since Last-Event-ID),
+     * then a delta of the changed fields per vehicle on every tick
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamPositions(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return fleetSnapshotService.stream(lastEventId);
+    }
+
+    /**
+     * Active vehicles by bus label or bus ID, all from the same tick; unknown names are skipped
+     */
+    @GetMapping
+    public ResponseEntity<List<BusPositionDTO>> getBuses(@RequestParam List<String> ids) {
+        return ResponseEntity.ok(fleetSnapshotService.findVehicles(ids));
     }
 
     @GetMapping("/{busIdOrLabel}")
     public ResponseEntity<BusPositionDTO> getBusPosition(@PathVariable String busIdOrLabel) {
-        // First, try to find by trip ID directly
-        try {
-            BusPositionDTO position = BusPositionDTO.fromEntity(
-                    simulationService.getTripPosition(busIdOrLabel)
-            );
-            return ResponseEntity.ok(position);
-        } catch (RuntimeException e) {
-            // Not found as trip ID, try searching in active buses by ID
+        // Active vehicles come from the latest tick, by bus label (trip ID) or bus ID
+        BusPositionDTO bus = fleetSnapshotService.findVehicle(busIdOrLabel);
+        if (bus != null) {
+            return ResponseEntity.ok(bus);
         }
 
-        // Try to match by busId in active buses
-        try {
-            Long busId = Long.parseLong(busIdOrLabel);
-            List<BusPositionDTO> activeBuses = simulationService.getAllActiveBusPositions()
-                    .stream()
-                    .map(BusPositionDTO::fromEntity)
-                    .collect(Collectors.toList());
-
-            BusPositionDTO bus = activeBuses.stream()
-                    .filter(b -> b.getBusId().equals(busId))
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Bus not found with ID: " + busIdOrLabel));
-
-            return ResponseEntity.ok(bus);
-        } catch (NumberFormatException e) {
-            // Not a numeric ID, throw not found
-            throw new RuntimeException("Bus not found with ID or label: " + busIdOrLabel);
+        // Trips not in service right now still report their scheduled state
+        if (simulationService.hasTrip(busIdOrLabel)) {
+            return ResponseEntity.ok(BusPositionDTO.fromEntity(simulationService.getTripPosition(busIdOrLabel)));
         }
+        throw new RuntimeException("Bus not found with ID or label: " + busIdOrLabel);
     }
 
     @GetMapping("/trips/{tripId}/position")
@@ -77,16 +84,11 @@ public class GtfsBusController {
 
     @GetMapping("/{busId}/route")
     public ResponseEntity<BusRouteDTO> getBusRoute(@PathVariable Long busId) {
-        // Find the trip by busId (busId is generated from tripId hashCode)
-        List<BusPositionDTO> activeBuses = simulationService.getAllActiveBusPositions()
-                .stream()
-                .map(BusPositionDTO::fromEntity)
-                .collect(Collectors.toList());
-
-        BusPositionDTO bus = activeBuses.stream()
-                .filter(b -> b.getBusId().equals(busId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Bus not found with ID: " + busId));
+        // busId is generated from the tripId hashCode
+        BusPositionDTO bus = fleetSnapshotService.findVehicle(busId);
+        if (bus == null) {
+            throw new RuntimeException("Bus not found with ID: " + busId);
+        }
 
         return ResponseEntity.ok(getBusRouteByTripId(bus.getBusLabel()));
     }
@@ -97,28 +99,37 @@ public class GtfsBusController {
     }
 
     @GetMapping("/trip/{tripId}/path")
-    public ResponseEntity<RoutePathDTO> getRoutePath(
+    public ResponseEntity<byte[]> getRoutePath(
             @PathVariable String tripId,
-            @RequestParam(required = false) Integer pointsPerSegment) {
+            @RequestParam(required = false) Integer pointsPerSegment,
+            WebRequest request) {
+        return staticResponseCache.serve("trips/" + tripId + "/path/" + pointsPerSegment, true,
+                () -> buildRoutePath(tripId, pointsPerSegment), request);
+    }
 
+    @GetMapping("/route/{routeId}/path")
+    public ResponseEntity<byte[]> getRoutePathSimplified(@PathVariable String routeId, WebRequest request) {
+        // Convert A/B to ROUTE_A/ROUTE_B
+        String fullRouteId = routeId.matches("^[AB]$") ? "ROUTE_" + routeId : routeId;
+        return staticResponseCache.serve("routes/" + fullRouteId + "/path", true,
+                () -> buildRoutePathSimplified(routeId, fullRouteId), request);
+    }
+
+    private RoutePathDTO buildRoutePath(String tripId, Integer pointsPerSegment) {
         GtfsTrip trip = simulationService.getTripByTripId(tripId);
         List<RoutePathService.RoutePathPoint> pathPoints =
                 routePathService.generateRoutePath(trip, pointsPerSegment);
 
-        return ResponseEntity.ok(new RoutePathDTO(
+        return new RoutePathDTO(
                 tripId,
                 trip.getRoute().getRouteShortName(),
                 trip.getTripHeadsign(),
                 trip.getDirectionId(),
                 pathPoints
-        ));
+        );
     }
 
-    @GetMapping("/route/{routeId}/path")
-    public ResponseEntity<RoutePathDTO> getRoutePathSimplified(@PathVariable String routeId) {
-        // Convert A/B to ROUTE_A/ROUTE_B
-        String fullRouteId = routeId.matches("^[AB]$") ? "ROUTE_" + routeId : routeId;
-
+    private RoutePathDTO buildRoutePathSimplified(String routeId, String fullRouteId) {
         // Get any trip from this route (all trips for a route have the same path)
         List<GtfsTrip> trips = simulationService.getTripsForRoute(fullRouteId);
 
@@ -131,53 +142,55 @@ public class GtfsBusController {
         List<RoutePathService.RoutePathPoint> pathPoints =
                 routePathService.generateRoutePath(trip, null);
 
-        return ResponseEntity.ok(new RoutePathDTO(
+        return new RoutePathDTO(
                 fullRouteId,
                 trip.getRoute().getRouteShortName(),
                 trip.getTripHeadsign(),
                 trip.getDirectionId(),
                 pathPoints
-        ));
+        );
     }
 
     private BusRouteDTO getBusRouteByTripId(String tripId) {
         GtfsTrip trip = simulationService.getTripByTripId(tripId);
         LocalTime currentTime = LocalTime.now();
 
-        // Get tidal impact for this route
-        RouteImpact impact = tidalImpactCalculator.calculateImpact(trip.getRoute().getRouteId());
-        Integer delayMinutes = impact.getEstimatedDelayMinutes();
-
-        List<BusRouteStopDTO> stops = trip.getStopTimes().stream()
-                .map(st -> {
-                    LocalTime scheduledArrival = st.getArrivalTime();
-                    LocalTime scheduledDeparture = st.getDepartureTime();
-
-                    // Calculate estimated times with tidal delay
-                    LocalTime estimatedArrival = scheduledArrival.plusMinutes(delayMinutes);
-                    LocalTime estimatedDeparture = scheduledDeparture.plusMinutes(delayMinutes);
-
-                    boolean isPassed = scheduledDeparture.isBefore(currentTime);
-                    boolean isCurrent = !isPassed &&
-                        (scheduledArrival.isAfter(currentTime) || scheduledArrival.equals(currentTime));
-
-                    return new BusRouteStopDTO(
-                        st.getStop().getStopId(),
-                        st.getStop().getStopName(),
-                        st.getStop().getStopLat(),
-                        st.getStop().getStopLon(),
-                        scheduledArrival.toString(),
-                        scheduledDeparture.toString(),
-                        estimatedArrival.toString(),
-                        estimatedDeparture.toString(),
-                        delayMinutes,
-                        impact.getInundationLevel(),
-                        st.getStopSequence(),
-                        isPassed,
-                        isCurrent
-                    );
-                })
-                .collect(Collectors.toList());
+        // Get tidal impact for this route; delays accumulate over the affected segments travelled
+        RouteImpact impact = routeImpactCache.getImpact(trip.getRoute().getRouteId());
+        int[] delaySeconds = delayPropagationService.getStopDelaySeconds(trip.getTripId());
+
+        List<GtfsStopTime> stopTimes = trip.getStopTimes();
+        List<BusRouteStopDTO> stops = new ArrayList<>(stopTimes.size());
+        for (int i = 0; i < stopTimes.size(); i++) {
+            GtfsStopTime st = stopTimes.get(i);
+            LocalTime scheduledArrival = st.getArrivalTime();
+            LocalTime scheduledDeparture = st.getDepartureTime();
+            int delay = i < delaySeconds.length ? delaySeconds[i] : 0;
+
+            // Calculate estimated times with the delay accumulated up to this stop
+            LocalTime estimatedArrival = scheduledArrival.plusSeconds(delay);
+            LocalTime estimatedDeparture = scheduledDeparture.plusSeconds(delay);
+
+            boolean isPassed = scheduledDeparture.isBefore(currentTime);
+            boolean isCurrent = !isPassed &&
+                (scheduledArrival.isAfter(currentTime) || scheduledArrival.equals(currentTime));
+
+            stops.add(new BusRouteStopDTO(
+                st.getStop().getStopId(),
+                st.getStop().getStopName(),
+                st.getStop().getStopLat(),
+                st.getStop().getStopLon(),
+                scheduledArrival.toString(),
+                scheduledDeparture.toString(),
+                estimatedArrival.toString(),
+                estimatedDeparture.toString(),
+                (delay + 59) / 60, // Round up
+                impact.getInundationLevel(),
+                st.getStopSequence(),
+                isPassed,
+                isCurrent
+            ));
+        }
 
         return new BusRouteDTO(
             tripId,
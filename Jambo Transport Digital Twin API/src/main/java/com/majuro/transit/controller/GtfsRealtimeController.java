@@ -0,0 +1,46 @@
+package com.majuro.transit.controller;
+
+import com.majuro.transit.service.GtfsRealtimeFeedService;
+import com.majuro.transit.service.GtfsRealtimeFeedService.EncodedFeed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * GTFS-Realtime feeds in protobuf, with ETag revalidation
+ */
+@RestController
+@RequestMapping("/api/gtfs/realtime")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class GtfsRealtimeController {
+
+    private static final MediaType PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+    private final GtfsRealtimeFeedService feedService;
+
+    @GetMapping("/vehicle-positions")
+    public ResponseEntity<byte[]> getVehiclePositions(WebRequest request) {
+        return serve(feedService.getVehiclePositions(), request);
+    }
+
+    @GetMapping("/trip-updates")
+    public ResponseEntity<byte[]> getTripUpdates(WebRequest request) {
+        return serve(feedService.getTripUpdates(), request);
+    }
+
+    private ResponseEntity<byte[]> serve(EncodedFeed feed, WebRequest request) {
+        if (request.checkNotModified(feed.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(feed.etag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(feed.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(PROTOBUF)
+                .body(feed.bytes());
+    }
+}
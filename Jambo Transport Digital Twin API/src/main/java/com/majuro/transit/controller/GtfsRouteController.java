@@ -4,9 +4,13 @@ import com.majuro.transit.dto.BusPositionDTO;
 import com.majuro.transit.model.gtfs.GtfsRoute;
 import com.majuro.transit.model.gtfs.GtfsTrip;
 import com.majuro.transit.service.GtfsBusSimulationService;
+import com.majuro.transit.service.RouteProjectionService;
+import com.majuro.transit.service.RouteProjectionService.RouteProjection;
+import com.majuro.transit.service.StaticResponseCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -18,20 +22,21 @@ import java.util.stream.Collectors;
 public class GtfsRouteController {
 
     private final GtfsBusSimulationService simulationService;
+    private final RouteProjectionService routeProjectionService;
+    private final StaticResponseCache staticResponseCache;
 
     @GetMapping
-    public ResponseEntity<List<RouteDTO>> getAllRoutes() {
-        List<RouteDTO> routes = simulationService.getAllRoutes()
+    public ResponseEntity<byte[]> getAllRoutes(WebRequest request) {
+        return staticResponseCache.serve("routes", false, () -> simulationService.getAllRoutes()
                 .stream()
                 .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(routes);
+                .collect(Collectors.toList()), request);
     }
 
     @GetMapping("/{routeId}")
-    public ResponseEntity<RouteDTO> getRoute(@PathVariable String routeId) {
-        GtfsRoute route = simulationService.getRoute(routeId);
-        return ResponseEntity.ok(convertToDTO(route));
+    public ResponseEntity<byte[]> getRoute(@PathVariable String routeId, WebRequest request) {
+        return staticResponseCache.serve("routes/" + routeId, false,
+                () -> convertToDTO(simulationService.getRoute(routeId)), request);
     }
 
     @GetMapping("/{routeId}/buses")
@@ -44,10 +49,42 @@ public class GtfsRouteController {
     }
 
     @GetMapping("/{routeId}/trips")
-    public ResponseEntity<List<TripDTO>> getTripsForRoute(@PathVariable String routeId) {
-        List<GtfsTrip> trips = simulationService.getTripsForRoute(routeId);
+    public ResponseEntity<byte[]> getTripsForRoute(@PathVariable String routeId, WebRequest request) {
+        return staticResponseCache.serve("routes/" + routeId + "/trips", false,
+                () -> convertToTripDTOs(simulationService.getTripsForRoute(routeId)), request);
+    }
+
+    @GetMapping("/{routeId}/project")
+    public ResponseEntity<RouteProjection> projectOntoRoute(
+            @PathVariable String routeId,
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(required = false) String pattern) {
+        return ResponseEntity.ok(routeProjectionService.project(routeId, pattern, lat, lon));
+    }
+
+    @PostMapping("/{routeId}/project")
+    public ResponseEntity<List<RouteProjection>> projectAllOntoRoute(
+            @PathVariable String routeId,
+            @RequestParam(required = false) String pattern,
+            @RequestBody List<CoordinateDTO> points) {
+        List<double[]> latLonPoints = points.stream()
+                .map(p -> new double[]{p.latitude(), p.longitude()})
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(routeProjectionService.projectAll(routeId, pattern, latLonPoints));
+    }
+
+    private RouteDTO convertToDTO(GtfsRoute route) {
+        return new RouteDTO(
+                route.getRouteId(),
+                route.getRouteShortName(),
+                route.getRouteLongName(),
+                route.getRouteType()
+        );
+    }
 
-        List<TripDTO> tripDTOs = trips.stream()
+    private List<TripDTO> convertToTripDTOs(List<GtfsTrip> trips) {
+        return trips.stream()
                 .map(trip -> {
                     String startTime = trip.getStopTimes().isEmpty() ? null :
                         trip.getStopTimes().get(0).getDepartureTime().toString();
@@ -64,21 +101,11 @@ public class GtfsRouteController {
                     );
                 })
                 .collect(Collectors.toList());
-
-        return ResponseEntity.ok(tripDTOs);
-    }
-
-    private RouteDTO convertToDTO(GtfsRoute route) {
-        return new RouteDTO(
-                route.getRouteId(),
-                route.getRouteShortName(),
-                route.getRouteLongName(),
-                route.getRouteType()
-        );
     }
 
     // Inner DTO classes
     public record RouteDTO(String routeId, String shortName, String longName, Integer type) {}
     public record TripDTO(String tripId, String routeName, String headsign, Integer directionId,
                          String startTime, String endTime) {}
+    public record CoordinateDTO(double latitude, double longitude) {}
 }
@@ -1,17 +1,35 @@
 package com.majuro.transit.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.majuro.transit.codec.CompactEncodable;
+import com.majuro.transit.codec.CompactWriter;
 import com.majuro.transit.dto.StopDTO;
+import com.majuro.transit.model.FeedSnapshot;
 import com.majuro.transit.model.RouteImpact;
 import com.majuro.transit.model.gtfs.GtfsStop;
-import com.majuro.transit.model.gtfs.GtfsStopTime;
 import com.majuro.transit.service.GtfsBusSimulationService;
-import com.majuro.transit.service.TidalImpactCalculator;
+import com.majuro.transit.service.GtfsFeedIndex;
+import com.majuro.transit.service.NearbyStopService;
+import com.majuro.transit.service.NearbyStopService.NearbyStop;
+import com.majuro.transit.service.StaticResponseCache;
+import com.majuro.transit.service.StopBoardService;
+import com.majuro.transit.service.StopBoardService.UpcomingArrival;
+import com.majuro.transit.service.StopTravelMatrixService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @RestController
@@ -21,13 +39,68 @@ import java.util.stream.Collectors;
 public class GtfsStopController {
 
     private final GtfsBusSimulationService simulationService;
-    private final TidalImpactCalculator tidalImpactCalculator;
+    private final StopTravelMatrixService travelMatrixService;
+    private final StopBoardService stopBoardService;
+    private final NearbyStopService nearbyStopService;
+    private final ObjectMapper objectMapper;
+    private final StaticResponseCache staticResponseCache;
+    private final GtfsFeedIndex feedIndex;
 
     @GetMapping
-    public ResponseEntity<List<StopDTO>> getAllStops() {
-        List<StopDTO> stops = simulationService.getAllStops()
+    public ResponseEntity<byte[]> getAllStops(WebRequest request) {
+        return staticResponseCache.serve("stops", false, () -> simulationService.getAllStops()
                 .stream()
                 .map(this::convertToDTO)
+                .collect(Collectors.toList()), request);
+    }
+
+    /**
+     * Stops in feed index order; compact position payloads refer to stops by their index in the
+     * table of the feed version they carry
+     */
+    @GetMapping("/table")
+    public ResponseEntity<byte[]> getStopTable(WebRequest request) {
+        return staticResponseCache.serve("stops/table", false, () -> {
+            FeedSnapshot snapshot = feedIndex.getSnapshot();
+            List<StopDTO> stops = new ArrayList<>(snapshot.stopCount());
+            for (int stop = 0; stop < snapshot.stopCount(); stop++) {
+                stops.add(new StopDTO(snapshot.getStopIds()[stop], snapshot.getStopNames()[stop],
+                        snapshot.getStopLats()[stop], snapshot.getStopLons()[stop]));
+            }
+            return new StopTableDTO(snapshot.getVersion(), stops);
+        }, request);
+    }
+
+    /**
+     * Stops nearest to a location, optionally with each stop's next arrivals
+     */
+    @GetMapping("/nearby")
+    public ResponseEntity<List<NearbyStopDTO>> getNearbyStops(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(defaultValue = "1000") double radius,
+            @RequestParam(defaultValue = "0") int arrivals) throws IOException {
+
+        List<NearbyStop> nearby = nearbyStopService.findNearby(lat, lon, k, radius);
+
+        Map<String, List<ArrivalDTO>> arrivalsByStop = new HashMap<>();
+        if (arrivals > 0 && !nearby.isEmpty()) {
+            List<String> stopIds = nearby.stream().map(NearbyStop::stopId).toList();
+            stopBoardService.batchForStops(stopIds, LocalDateTime.now(), arrivals)
+                    .forEach(stop -> arrivalsByStop.put(stop.stopId(),
+                            stop.arrivals().stream().map(this::convertToArrivalDTO).toList()));
+        }
+
+        List<NearbyStopDTO> stops = nearby.stream()
+                .map(stop -> new NearbyStopDTO(
+                    stop.stopId(),
+                    stop.stopName(),
+                    stop.latitude(),
+                    stop.longitude(),
+                    stop.distanceMeters(),
+                    arrivals > 0 ? arrivalsByStop.getOrDefault(stop.stopId(), List.of()) : null
+                ))
                 .collect(Collectors.toList());
         return ResponseEntity.ok(stops);
     }
@@ -43,58 +116,116 @@ public class GtfsStopController {
             @PathVariable String stopId,
             @RequestParam(defaultValue = "5") int limit) {
 
-        List<GtfsStopTime> arrivals = simulationService.getUpcomingArrivals(stopId, limit);
-
-        List<ArrivalDTO> arrivalDTOs = arrivals.stream()
-                .map(st -> {
-                    LocalTime scheduledTime = st.getArrivalTime();
-                    String routeId = st.getTrip().getRoute().getRouteId();
-
-                    // Get tidal impact for this route
-                    RouteImpact impact = tidalImpactCalculator.calculateImpact(routeId);
-
-                    // Calculate adjusted arrival time
-                    LocalTime estimatedTime = scheduledTime;
-                    int delayMinutes = 0;
-                    String serviceStatus = "ON_TIME";
-
-                    if (impact.getImpactLevel() != RouteImpact.ImpactLevel.NONE) {
-                        // Calculate delay based on estimated route delay
-                        delayMinutes = impact.getEstimatedDelayMinutes();
-
-                        // Add delay to scheduled time
-                        estimatedTime = scheduledTime.plusMinutes(delayMinutes);
-
-                        if (impact.getImpactLevel() == RouteImpact.ImpactLevel.SHUTDOWN) {
-                            serviceStatus = "SHUTDOWN";
-                        } else if (impact.getImpactLevel() == RouteImpact.ImpactLevel.MAJOR_DELAYS) {
-                            serviceStatus = "MAJOR_DELAY";
-                        } else {
-                            serviceStatus = "MINOR_DELAY";
-                        }
-                    }
-
-                    return new ArrivalDTO(
-                        st.getTrip().getTripId(),
-                        st.getTrip().getRoute().getRouteShortName(),
-                        st.getTrip().getTripHeadsign(),
-                        scheduledTime.toString(),
-                        estimatedTime.toString(),
-                        delayMinutes,
-                        impact.getInundationLevel(),
-                        impact.getInundationRisk(),
-                        serviceStatus
-                    );
-                })
+        List<ArrivalDTO> arrivalDTOs = stopBoardService.getUpcomingArrivals(stopId, LocalDateTime.now(), limit)
+                .stream()
+                .map(this::convertToArrivalDTO)
                 .collect(Collectors.toList());
 
         return ResponseEntity.ok(arrivalDTOs);
     }
 
+    /**
+     * Upcoming arrivals for many stops in one response, streamed stop by stop
+     */
+    @GetMapping("/arrivals")
+    public ResponseEntity<StreamingResponseBody> getUpcomingArrivalsForStops(
+            @RequestParam List<String> ids,
+            @RequestParam(defaultValue = "5") int limit) {
+
+        return streamArrivals(stopBoardService.batchForStops(ids, LocalDateTime.now(), limit));
+    }
+
+    /**
+     * Upcoming arrivals for every stop inside a bounding box, streamed stop by stop
+     */
+    @GetMapping("/arrivals/within")
+    public ResponseEntity<StreamingResponseBody> getUpcomingArrivalsWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(defaultValue = "5") int limit) {
+
+        return streamArrivals(stopBoardService.batchWithin(minLat, minLon, maxLat, maxLon, LocalDateTime.now(), limit));
+    }
+
+    /**
+     * Write a batch as a JSON array of {@link StopArrivalsDTO}, one stop at a time
+     */
+    private ResponseEntity<StreamingResponseBody> streamArrivals(StopBoardService.StopBatch batch) {
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                batch.forEach(stop -> generator.writeObject(new StopArrivalsDTO(
+                        stop.stopId(),
+                        stop.stopName(),
+                        stop.latitude(),
+                        stop.longitude(),
+                        stop.arrivals().stream().map(this::convertToArrivalDTO).toList()
+                )));
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @GetMapping("/{fromStopId}/travel/{toStopId}")
+    public ResponseEntity<StopTravelDTO> getTravel(
+            @PathVariable String fromStopId,
+            @PathVariable String toStopId) {
+
+        return ResponseEntity.ok(new StopTravelDTO(
+            fromStopId,
+            toStopId,
+            travelMatrixService.getDistanceKm(fromStopId, toStopId),
+            travelMatrixService.getRunSeconds(fromStopId, toStopId)
+        ));
+    }
+
     private StopDTO convertToDTO(GtfsStop stop) {
         return new StopDTO(stop.getStopId(), stop.getStopName(), stop.getStopLat(), stop.getStopLon());
     }
 
+    private ArrivalDTO convertToArrivalDTO(UpcomingArrival arrival) {
+        LocalTime scheduledTime = LocalTime.ofSecondOfDay(arrival.scheduledArrivalSeconds() % 86400);
+        RouteImpact impact = arrival.impact();
+
+        // Calculate adjusted arrival time
+        LocalTime estimatedTime = scheduledTime;
+        int delayMinutes = 0;
+        String serviceStatus = "ON_TIME";
+
+        if (impact.getImpactLevel() != RouteImpact.ImpactLevel.NONE) {
+            // Delay accumulated over the affected segments before this stop
+            delayMinutes = (arrival.delaySeconds() + 59) / 60;
+
+            // Add delay to scheduled time
+            estimatedTime = scheduledTime.plusSeconds(arrival.delaySeconds());
+
+            if (impact.getImpactLevel() == RouteImpact.ImpactLevel.SHUTDOWN) {
+                serviceStatus = "SHUTDOWN";
+            } else if (impact.getImpactLevel() == RouteImpact.ImpactLevel.MAJOR_DELAYS) {
+                serviceStatus = "MAJOR_DELAY";
+            } else {
+                serviceStatus = "MINOR_DELAY";
+            }
+        }
+
+        return new ArrivalDTO(
+            arrival.tripId(),
+            arrival.routeShortName(),
+            arrival.headsign(),
+            scheduledTime.toString(),
+            estimatedTime.toString(),
+            delayMinutes,
+            impact.getInundationLevel(),
+            impact.getInundationRisk(),
+            serviceStatus
+        );
+    }
+
     // Inner DTO class for arrivals with tidal impact
     public record ArrivalDTO(
         String tripId,
@@ -106,5 +237,56 @@ public class GtfsStopController {
         String inundationLevel,
         Double inundationRisk,
         String serviceStatus
+    ) implements CompactEncodable {
+        /**
+         * Compact record: u16 tripId, u16 routeName, u16 headsign, i32 scheduled and i32 estimated
+         * arrival in seconds since midnight, i16 tidalDelayMinutes, u16 inundationLevel,
+         * u16 inundationRisk in ten-thousandths, u16 serviceStatus
+         */
+        @Override
+        public void writeCompact(CompactWriter writer) {
+            writer.writeString(tripId);
+            writer.writeString(routeName);
+            writer.writeString(headsign);
+            writer.writeTimeOfDay(scheduledArrivalTime);
+            writer.writeTimeOfDay(estimatedArrivalTime);
+            writer.writeShort(tidalDelayMinutes);
+            writer.writeString(inundationLevel);
+            writer.writeScaled(inundationRisk, 10_000);
+            writer.writeString(serviceStatus);
+        }
+    }
+
+    // Stop near a requested location; arrivals are only included when requested
+    public record NearbyStopDTO(
+        String stopId,
+        String stopName,
+        Double latitude,
+        Double longitude,
+        Double distanceMeters,
+        List<ArrivalDTO> arrivals
+    ) {}
+
+    // Upcoming arrivals at one stop of a batch
+    public record StopArrivalsDTO(
+        String stopId,
+        String stopName,
+        Double latitude,
+        Double longitude,
+        List<ArrivalDTO> arrivals
+    ) {}
+
+    // Stop table of one feed version, in feed index order
+    public record StopTableDTO(
+        long feedVersion,
+        List<StopDTO> stops
+    ) {}
+
+    // Along-route distance and scheduled run time between two stops
+    public record StopTravelDTO(
+        String fromStopId,
+        String toStopId,
+        Double distanceKm,
+        Integer scheduledRunSeconds
     ) {}
 }
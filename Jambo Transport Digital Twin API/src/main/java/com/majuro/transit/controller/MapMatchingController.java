@@ -0,0 +1,47 @@
+package com.majuro.transit.controller;
+
+import com.majuro.transit.service.MapMatchingService;
+import com.majuro.transit.service.MapMatchingService.GpsFix;
+import com.majuro.transit.service.MapMatchingService.GpsTrace;
+import com.majuro.transit.service.MapMatchingService.MatchedPoint;
+import com.majuro.transit.service.MapMatchingService.MatchedTrace;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/match")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class MapMatchingController {
+
+    private final MapMatchingService mapMatchingService;
+
+    /**
+     * Match one or more recorded GPS traces against the route geometries
+     */
+    @PostMapping("/traces")
+    public ResponseEntity<List<MatchedTrace>> matchTraces(@RequestBody List<GpsTrace> traces) {
+        return ResponseEntity.ok(mapMatchingService.matchTraces(traces));
+    }
+
+    /**
+     * Snap a batch of live AVL pings; each vehicle keeps its own matching state between calls
+     */
+    @PostMapping("/pings")
+    public ResponseEntity<List<MatchedPoint>> matchPings(@RequestBody List<VehiclePingDTO> pings) {
+        List<MatchedPoint> matched = pings.stream()
+                .map(ping -> mapMatchingService.matchPing(
+                        ping.vehicleId(),
+                        new GpsFix(ping.latitude(), ping.longitude(), ping.timestamp())))
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(matched);
+    }
+
+    // Inner DTO class
+    public record VehiclePingDTO(String vehicleId, double latitude, double longitude, Instant timestamp) {}
+}
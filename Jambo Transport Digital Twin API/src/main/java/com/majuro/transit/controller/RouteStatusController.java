@@ -3,7 +3,7 @@ package com.majuro.transit.controller;
 import com.majuro.transit.model.RouteImpact;
 import com.majuro.transit.model.TidalReading;
 import com.majuro.transit.service.TidalDataService;
-import com.majuro.transit.service.TidalImpactCalculator;
+import com.majuro.transit.service.RouteImpactCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,12 +17,12 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class RouteStatusController {
 
-    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
     private final TidalDataService tidalDataService;
 
     @GetMapping("/{routeId}/status")
     public ResponseEntity<Map<String, Object>> getRouteStatus(@PathVariable String routeId) {
-        RouteImpact impact = tidalImpactCalculator.calculateImpact(routeId);
+        RouteImpact impact = routeImpactCache.getImpact(routeId);
         TidalReading currentReading = tidalDataService.getCurrentReading();
 
         Map<String, Object> response = new HashMap<>();
@@ -0,0 +1,36 @@
+package com.majuro.transit.controller;
+
+import com.majuro.transit.service.ScenarioService;
+import com.majuro.transit.service.ScenarioService.ScenarioMatrix;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/tidal/scenarios")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ScenarioController {
+
+    private final ScenarioService scenarioService;
+
+    /**
+     * Evaluate route impacts for every combination of wave height, direction and duration
+     */
+    @PostMapping
+    public ResponseEntity<ScenarioMatrix> evaluateScenarios(@RequestBody ScenarioRequestDTO request) {
+        return ResponseEntity.ok(scenarioService.evaluate(
+                request.waveHeights(),
+                request.waveDirections(),
+                request.durationsHours(),
+                request.wavePeriod() != null ? request.wavePeriod() : 12.0));
+    }
+
+    // Inner DTO class
+    public record ScenarioRequestDTO(
+        double[] waveHeights,     // Meters
+        double[] waveDirections,  // Degrees (0-360)
+        double[] durationsHours,  // Optional
+        Double wavePeriod         // Optional, seconds
+    ) {}
+}
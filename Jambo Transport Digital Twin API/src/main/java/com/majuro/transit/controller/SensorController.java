@@ -0,0 +1,71 @@
+package com.majuro.transit.controller;
+
+import com.majuro.transit.service.SensorIngestService;
+import com.majuro.transit.service.SensorIngestService.IngestStats;
+import com.majuro.transit.service.SensorIngestService.Sample;
+import com.majuro.transit.service.SensorIngestService.SegmentWaterLevel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/sensors")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class SensorController {
+
+    private final SensorIngestService sensorIngestService;
+
+    /**
+     * Ingest a batch of water-level samples; aggregation happens asynchronously
+     */
+    @PostMapping("/readings")
+    public ResponseEntity<IngestResultDTO> ingestReadings(@RequestBody List<SensorReadingDTO> readings) {
+        long now = System.currentTimeMillis();
+        List<Sample> samples = new ArrayList<>(readings.size());
+        for (SensorReadingDTO reading : readings) {
+            samples.add(new Sample(
+                    reading.sensorId(),
+                    reading.latitude(),
+                    reading.longitude(),
+                    reading.waterLevelMeters(),
+                    reading.timestamp() != null ? reading.timestamp().toEpochMilli() : now));
+        }
+
+        int accepted = sensorIngestService.ingest(samples);
+        IngestResultDTO result = new IngestResultDTO(accepted, samples.size() - accepted);
+        return accepted < samples.size()
+                ? ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(result)
+                : ResponseEntity.accepted().body(result);
+    }
+
+    /**
+     * Latest closed window per route segment
+     */
+    @GetMapping("/levels")
+    public ResponseEntity<Collection<SegmentWaterLevel>> getObservedLevels() {
+        return ResponseEntity.ok(sensorIngestService.getObservedLevels().levels().values());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<IngestStats> getStats() {
+        return ResponseEntity.ok(sensorIngestService.getStats());
+    }
+
+    // Inner DTO classes
+    public record SensorReadingDTO(
+        String sensorId,
+        double latitude,
+        double longitude,
+        double waterLevelMeters, // Water above the road surface
+        Instant timestamp
+    ) {}
+
+    public record IngestResultDTO(int accepted, int rejected) {}
+}
@@ -2,12 +2,23 @@ package com.majuro.transit.controller;
 
 import com.majuro.transit.model.RouteImpact;
 import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.service.InundationModelService;
+import com.majuro.transit.service.InundationModelService.SegmentInundation;
 import com.majuro.transit.service.TidalDataService;
-import com.majuro.transit.service.TidalImpactCalculator;
+import com.majuro.transit.service.TidalForecastService;
+import com.majuro.transit.service.TidalForecastService.ForecastPoint;
+import com.majuro.transit.service.TidalForecastService.RouteForecast;
+import com.majuro.transit.service.TidalHistoryService;
+import com.majuro.transit.service.TidalHistoryService.TidalAggregate;
+import com.majuro.transit.service.TidalReplayClock;
+import com.majuro.transit.service.TidalReplayClock.ReplayStatus;
+import com.majuro.transit.service.RouteImpactCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
@@ -20,7 +31,11 @@ import java.util.Map;
 public class TidalController {
 
     private final TidalDataService tidalDataService;
-    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
+    private final TidalHistoryService tidalHistoryService;
+    private final TidalReplayClock tidalReplayClock;
+    private final TidalForecastService tidalForecastService;
+    private final InundationModelService inundationModelService;
 
     @GetMapping("/current")
     public ResponseEntity<Map<String, Object>> getCurrentTidalReading() {
@@ -42,7 +57,7 @@ public class TidalController {
 
     @GetMapping("/impact")
     public ResponseEntity<Map<String, Object>> getAllRouteImpacts() {
-        List<RouteImpact> impacts = tidalImpactCalculator.calculateAllRouteImpacts();
+        List<RouteImpact> impacts = routeImpactCache.getAllImpacts();
         TidalReading currentReading = tidalDataService.getCurrentReading();
 
         Map<String, Object> response = new HashMap<>();
@@ -56,7 +71,7 @@ public class TidalController {
 
     @GetMapping("/impact/{routeId}")
     public ResponseEntity<RouteImpact> getRouteImpact(@PathVariable String routeId) {
-        RouteImpact impact = tidalImpactCalculator.calculateImpact(routeId);
+        RouteImpact impact = routeImpactCache.getImpact(routeId);
         return ResponseEntity.ok(impact);
     }
 
@@ -65,4 +80,99 @@ public class TidalController {
         List<TidalReading> historical = tidalDataService.getHistoricalData();
         return ResponseEntity.ok(historical);
     }
+
+    /**
+     * Downsampled wave history between two UTC timestamps
+     * @param step Bucket size in seconds
+     */
+    @GetMapping("/historical/range")
+    public ResponseEntity<Map<String, Object>> getHistoricalRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "3600") long step) {
+
+        List<TidalAggregate> buckets = tidalHistoryService.aggregate(from, to, step);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("from", from.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        response.put("to", to.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        response.put("stepSeconds", step);
+        response.put("buckets", buckets);
+        response.put("storedReadings", tidalHistoryService.getReadingCount());
+        response.put("storedBytes", tidalHistoryService.getSizeBytes());
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Reading interpolated between the bracketing historical readings at any UTC instant
+     */
+    @GetMapping("/interpolated")
+    public ResponseEntity<TidalReading> getInterpolatedReading(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(tidalReplayClock.interpolate(at));
+    }
+
+    @GetMapping("/replay")
+    public ResponseEntity<ReplayStatus> getReplayStatus() {
+        return ResponseEntity.ok(tidalReplayClock.getStatus());
+    }
+
+    /**
+     * Start replaying the historical series, e.g. a storm day at 100x
+     * @param start Replay time to start from; defaults to the first reading
+     * @param speed Replay seconds per wall-clock second
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<ReplayStatus> startReplay(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(defaultValue = "6.0") double speed) {
+        return ResponseEntity.ok(tidalReplayClock.start(start, speed));
+    }
+
+    @DeleteMapping("/replay")
+    public ResponseEntity<ReplayStatus> stopReplay() {
+        return ResponseEntity.ok(tidalReplayClock.stop());
+    }
+
+    @GetMapping("/forecast")
+    public ResponseEntity<Map<String, Object>> getForecast() {
+        List<ForecastPoint> points = tidalForecastService.getForecast();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("forecast", points);
+        response.put("routeOutlooks", tidalForecastService.getAllRouteForecasts().stream()
+                .map(route -> Map.of(
+                        "routeId", route.routeId(),
+                        "peakImpactLevel", route.peakImpactLevel(),
+                        "delaysExpectedFrom", route.delaysExpectedFrom() == null
+                                ? "none" : route.delaysExpectedFrom().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)))
+                .toList());
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/forecast/{routeId}")
+    public ResponseEntity<RouteForecast> getRouteForecast(@PathVariable String routeId) {
+        return ResponseEntity.ok(tidalForecastService.getRouteForecast(routeId));
+    }
+
+    /**
+     * Per-segment flood depth for the current reading from the elevation model
+     */
+    @GetMapping("/inundation")
+    public ResponseEntity<Map<String, Object>> getSegmentInundation() {
+        TidalReading reading = tidalDataService.getCurrentReading();
+        List<SegmentInundation> segments = inundationModelService.isEnabled()
+                ? inundationModelService.assessAll(reading)
+                : List.of();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("elevationModelEnabled", inundationModelService.isEnabled());
+        response.put("waveHeight", reading.getWaveHeight());
+        response.put("waveDirection", reading.getDirectionName());
+        response.put("segments", segments);
+
+        return ResponseEntity.ok(response);
+    }
 }
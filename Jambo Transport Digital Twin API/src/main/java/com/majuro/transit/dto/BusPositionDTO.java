@@ -1,5 +1,7 @@
 package com.majuro.transit.dto;
 
+import com.majuro.transit.codec.CompactEncodable;
+import com.majuro.transit.codec.CompactWriter;
 import com.majuro.transit.model.BusPosition;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,7 +10,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class BusPositionDTO {
+public class BusPositionDTO implements CompactEncodable {
 
     private Long busId;
     private String busLabel;
@@ -52,4 +54,31 @@ public class BusPositionDTO {
         dto.setEstimatedArrivalTime(position.getEstimatedArrivalTime());
         return dto;
     }
+
+    /**
+     * Compact record: i32 busId, u16 busLabel, u16 routeName, i32 currentStop, i32 nextStop,
+     * i32 latitude and i32 longitude in microdegrees, u16 progress in hundredths of a percent,
+     * u16 status, u8 flags (1 on break, 2 operational, 4 tidal delay applied),
+     * i16 minutesToNextStop, i16 estimatedDelayMinutes, u16 tidalImpactLevel,
+     * i32 estimatedArrivalTime in seconds since midnight
+     */
+    @Override
+    public void writeCompact(CompactWriter writer) {
+        writer.writeInt(busId == null ? 0 : busId.intValue());
+        writer.writeString(busLabel);
+        writer.writeString(routeName);
+        writer.writeStop(currentStop == null ? null : currentStop.getId());
+        writer.writeStop(nextStop == null ? null : nextStop.getId());
+        writer.writeCoordinate(currentLatitude);
+        writer.writeCoordinate(currentLongitude);
+        writer.writeScaled(progressPercent, 100);
+        writer.writeString(status);
+        writer.writeByte((Boolean.TRUE.equals(isOnBreak) ? 1 : 0)
+                | (Boolean.TRUE.equals(isOperational) ? 2 : 0)
+                | (Boolean.TRUE.equals(tidalDelayApplied) ? 4 : 0));
+        writer.writeShort(minutesToNextStop);
+        writer.writeShort(estimatedDelayMinutes);
+        writer.writeString(tidalImpactLevel);
+        writer.writeTimeOfDay(estimatedArrivalTime);
+    }
 }
@@ -0,0 +1,16 @@
+package com.majuro.transit.event;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Published after each fleet tick that changed anything. Vehicles are field maps keyed by bus
+ * label; {@code changed} holds only the fields that differ from {@code previous}.
+ */
+public record FleetTickEvent(
+        long version,
+        Map<String, Map<String, Object>> previous,
+        Map<String, Map<String, Object>> vehicles,
+        Map<String, Map<String, Object>> changed,
+        List<String> removed
+) {}
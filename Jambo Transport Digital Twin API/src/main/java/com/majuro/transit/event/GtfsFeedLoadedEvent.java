@@ -0,0 +1,6 @@
+package com.majuro.transit.event;
+
+/**
+ * Published whenever the GTFS feed has been (re)loaded and the feed index rebuilt
+ */
+public record GtfsFeedLoadedEvent(long feedVersion) {}
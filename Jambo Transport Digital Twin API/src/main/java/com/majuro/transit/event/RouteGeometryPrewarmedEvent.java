@@ -0,0 +1,6 @@
+package com.majuro.transit.event;
+
+/**
+ * Published once every stop pattern's road geometry has been computed at startup
+ */
+public record RouteGeometryPrewarmedEvent(int patternCount, long geometryVersion) {}
@@ -0,0 +1,8 @@
+package com.majuro.transit.event;
+
+import com.majuro.transit.model.TidalReading;
+
+/**
+ * Published whenever a new tidal reading becomes the current one
+ */
+public record TidalReadingRotatedEvent(long version, TidalReading reading) {}
@@ -2,6 +2,7 @@ package com.majuro.transit.loader;
 
 import com.majuro.transit.model.gtfs.*;
 import com.majuro.transit.repository.gtfs.*;
+import com.majuro.transit.service.GtfsFeedIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.csv.CSVFormat;
@@ -31,6 +32,8 @@ public class GtfsDataLoader implements CommandLineRunner {
     private final GtfsTripRepository tripRepository;
     private final GtfsStopTimeRepository stopTimeRepository;
     private final GtfsCalendarRepository calendarRepository;
+    private final GtfsCalendarDateRepository calendarDateRepository;
+    private final GtfsFeedIndex feedIndex;
 
     private static final String GTFS_DIR = "gtfs";
 
@@ -47,11 +50,15 @@ public class GtfsDataLoader implements CommandLineRunner {
 
         // Load in correct order due to foreign key dependencies
         loadCalendar();
+        loadCalendarDates();
         loadStops();
         loadRoutes();
         loadTrips();
         loadStopTimes();
 
+        // Build the in-memory feed snapshot used by the derived indexes
+        feedIndex.rebuild();
+
         long endTime = System.currentTimeMillis();
         double deploymentTimeSeconds = (endTime - startTime) / 1000.0;
 
@@ -89,6 +96,43 @@ public class GtfsDataLoader implements CommandLineRunner {
         }
     }
 
+    private void loadCalendarDates() throws Exception {
+        File file = new File(GTFS_DIR, "calendar_dates.txt");
+        if (!file.exists()) {
+            log.info("calendar_dates.txt not found; using calendar.txt only");
+            return;
+        }
+
+        // Services defined only by their dates get a calendar that runs on no weekday
+        Map<String, LocalDate[]> undeclaredServices = new HashMap<>();
+
+        try (Reader reader = new FileReader(file);
+             CSVParser parser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader())) {
+
+            for (CSVRecord record : parser) {
+                GtfsCalendarDate calendarDate = new GtfsCalendarDate();
+                calendarDate.setServiceId(record.get("service_id"));
+                calendarDate.setDate(LocalDate.parse(record.get("date"), DateTimeFormatter.BASIC_ISO_DATE));
+                calendarDate.setExceptionType(Integer.parseInt(record.get("exception_type")));
+
+                if (!calendarRepository.existsById(calendarDate.getServiceId())) {
+                    undeclaredServices.merge(calendarDate.getServiceId(),
+                        new LocalDate[]{calendarDate.getDate(), calendarDate.getDate()},
+                        (range, date) -> new LocalDate[]{
+                            range[0].isBefore(date[0]) ? range[0] : date[0],
+                            range[1].isAfter(date[1]) ? range[1] : date[1]});
+                }
+
+                calendarDateRepository.save(calendarDate);
+            }
+
+            undeclaredServices.forEach((serviceId, range) -> calendarRepository.save(new GtfsCalendar(
+                serviceId, false, false, false, false, false, false, false, range[0], range[1])));
+
+            log.info("Loaded {} calendar date exceptions", calendarDateRepository.count());
+        }
+    }
+
     private void loadStops() throws Exception {
         File file = new File(GTFS_DIR, "stops.txt");
         if (!file.exists()) {
@@ -0,0 +1,137 @@
+package com.majuro.transit.loader;
+
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
+import com.majuro.transit.model.gtfs.GtfsTrip;
+import com.majuro.transit.repository.gtfs.GtfsTripRepository;
+import com.majuro.transit.service.RoutePathService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the road geometry and linear-referencing table of every distinct stop pattern
+ * right after the GTFS feed is loaded, so no user request pays the routing cost.
+ *
+ * Runs before the application reports ready: readiness is held until every pattern is
+ * done or the configured deadline passes, after which the remaining work finishes in
+ * the background.
+ */
+@Component
+@Order(2)
+@RequiredArgsConstructor
+@Slf4j
+public class RouteGeometryPrewarmer implements CommandLineRunner {
+
+    private final GtfsTripRepository tripRepository;
+    private final RoutePathService routePathService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${transit.prewarm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transit.prewarm.parallelism:4}")
+    private int parallelism;
+
+    @Value("${transit.prewarm.deadline-seconds:120}")
+    private long deadlineSeconds;
+
+    private final AtomicInteger totalPatterns = new AtomicInteger();
+    private final AtomicInteger completedPatterns = new AtomicInteger();
+    private final AtomicInteger failedPatterns = new AtomicInteger();
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!enabled) {
+            log.info("Route geometry prewarm disabled");
+            return;
+        }
+
+        Gauge.builder("transit.geometry.prewarm.patterns", totalPatterns, AtomicInteger::get)
+                .description("Distinct stop patterns scheduled for prewarm")
+                .register(meterRegistry);
+        Gauge.builder("transit.geometry.prewarm.completed", completedPatterns, AtomicInteger::get)
+                .description("Stop patterns whose geometry has been computed")
+                .register(meterRegistry);
+        Gauge.builder("transit.geometry.prewarm.failed", failedPatterns, AtomicInteger::get)
+                .description("Stop patterns whose geometry could not be computed")
+                .register(meterRegistry);
+        Timer duration = Timer.builder("transit.geometry.prewarm.duration")
+                .description("Wall-clock time to prewarm all route geometries")
+                .register(meterRegistry);
+
+        List<GtfsTrip> patterns = transactionTemplate.execute(status -> findDistinctPatterns());
+        if (patterns == null || patterns.isEmpty()) {
+            log.warn("No stop patterns found to prewarm");
+            return;
+        }
+
+        totalPatterns.set(patterns.size());
+        log.info("Prewarming route geometry for {} distinct stop patterns (parallelism {})",
+                patterns.size(), parallelism);
+
+        long startNanos = System.nanoTime();
+        AtomicInteger finished = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        for (GtfsTrip trip : patterns) {
+            pool.execute(() -> {
+                try {
+                    routePathService.getRouteGeometry(trip);
+                    completedPatterns.incrementAndGet();
+                } catch (Exception e) {
+                    failedPatterns.incrementAndGet();
+                    log.warn("Failed to prewarm geometry for trip {}: {}", trip.getTripId(), e.getMessage());
+                }
+
+                if (finished.incrementAndGet() == patterns.size()) {
+                    long elapsedNanos = System.nanoTime() - startNanos;
+                    duration.record(elapsedNanos, TimeUnit.NANOSECONDS);
+                    log.info("Route geometry prewarm finished: {}/{} patterns in {} seconds",
+                            completedPatterns.get(), patterns.size(),
+                            String.format("%.3f", elapsedNanos / 1_000_000_000.0));
+
+                    // Let geometry-derived indexes rebuild eagerly instead of on first request
+                    eventPublisher.publishEvent(new RouteGeometryPrewarmedEvent(
+                            completedPatterns.get(), routePathService.getCacheVersion()));
+                }
+            });
+        }
+        pool.shutdown();
+
+        // Block startup (and therefore readiness) until the work is done or the deadline passes
+        if (!pool.awaitTermination(deadlineSeconds, TimeUnit.SECONDS)) {
+            log.warn("Route geometry prewarm exceeded {}s deadline with {}/{} patterns done; continuing in background",
+                    deadlineSeconds, completedPatterns.get(), patterns.size());
+        }
+    }
+
+    /**
+     * One representative trip per distinct stop pattern, with its stop times initialized
+     */
+    private List<GtfsTrip> findDistinctPatterns() {
+        Map<String, GtfsTrip> patterns = new LinkedHashMap<>();
+        for (GtfsTrip trip : tripRepository.findAll()) {
+            if (!trip.getStopTimes().isEmpty()) {
+                patterns.putIfAbsent(RoutePathService.patternKey(trip), trip);
+            }
+        }
+        return new ArrayList<>(patterns.values());
+    }
+}
@@ -0,0 +1,138 @@
+package com.majuro.transit.model;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Immutable, array-backed view of the loaded GTFS feed. Stops, routes, services, trips and
+ * stop patterns each get a dense index so derived structures can use primitive arrays
+ * instead of entity lookups. Times are seconds since midnight.
+ */
+@Getter
+@Builder
+public class FeedSnapshot {
+
+    private final long version;
+
+    // Stops
+    private final String[] stopIds;
+    private final String[] stopNames;
+    private final double[] stopLats;
+    private final double[] stopLons;
+    private final Map<String, Integer> stopIndexById;
+
+    // Routes
+    private final String[] routeIds;
+    private final String[] routeShortNames;
+    private final Map<String, Integer> routeIndexById;
+
+    // Calendar services
+    private final String[] serviceIds;
+    private final Map<String, Integer> serviceIndexById;
+
+    // Trips
+    private final String[] tripIds;
+    private final String[] tripHeadsigns;
+    private final int[] tripDirections;
+    private final int[] tripRoute;
+    private final int[] tripService;
+    private final int[] tripPattern;
+    private final int[][] tripArrivalSeconds;   // Per trip, parallel to its pattern's stops
+    private final int[][] tripDepartureSeconds;
+    private final int[][] tripStopSequences;   // GTFS stop_sequence of each stop time
+    private final Map<String, Integer> tripIndexById;
+
+    // Stop patterns: distinct ordered stop sequences of a route
+    private final String[] patternKeys;
+    private final int[] patternRoute;
+    private final int[][] patternStops;
+    private final int[] patternRepresentativeTrip;
+    private final Map<String, Integer> patternIndexByKey;
+
+    // Service calendar: for each day of the window, bitsets of the services and trips running that day
+    private final LocalDate calendarStart;
+    private final long[][] dayServiceBits;
+    private final long[][] dayTripBits;
+
+    // Stop boards: per stop, every call at it sorted by arrival time
+    private final int[][] stopBoardSeconds;
+    private final int[][] stopBoardTrips;
+    private final int[][] stopBoardPositions;   // Position of the stop within the trip's stop times
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    public int tripCount() {
+        return tripIds.length;
+    }
+
+    public int patternCount() {
+        return patternKeys.length;
+    }
+
+    /**
+     * @return Dense index of the stop, or -1 if it is not in the feed
+     */
+    public int stopIndex(String stopId) {
+        return stopIndexById.getOrDefault(stopId, -1);
+    }
+
+    public int routeIndex(String routeId) {
+        return routeIndexById.getOrDefault(routeId, -1);
+    }
+
+    public int tripIndex(String tripId) {
+        return tripIndexById.getOrDefault(tripId, -1);
+    }
+
+    public int patternIndex(String patternKey) {
+        return patternIndexByKey.getOrDefault(patternKey, -1);
+    }
+
+    /**
+     * @return Position of the first call at a stop arriving at or after the given time; equal to the
+     *         board length if there is none
+     */
+    public int firstBoardEntry(int stopIndex, int seconds) {
+        int[] board = stopBoardSeconds[stopIndex];
+        int low = 0;
+        int high = board.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (board[mid] < seconds) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return Whether the trip runs on the given service date; false outside the calendar window
+     */
+    public boolean isTripActive(int tripIndex, LocalDate date) {
+        int day = calendarDay(date);
+        return day >= 0 && (dayTripBits[day][tripIndex >>> 6] & (1L << tripIndex)) != 0;
+    }
+
+    /**
+     * @return Whether the calendar service runs on the given date; false outside the calendar window
+     */
+    public boolean isServiceActive(int serviceIndex, LocalDate date) {
+        int day = calendarDay(date);
+        return day >= 0 && (dayServiceBits[day][serviceIndex >>> 6] & (1L << serviceIndex)) != 0;
+    }
+
+    private int calendarDay(LocalDate date) {
+        if (calendarStart == null) {
+            return -1;
+        }
+        long day = date.toEpochDay() - calendarStart.toEpochDay();
+        return day < 0 || day >= dayTripBits.length ? -1 : (int) day;
+    }
+}
@@ -16,6 +16,13 @@ public class RouteSegmentOrientation {
     private String toStop;
     private Orientation orientation;
 
+    // Derived from the cached road geometry
+    private String patternKey;
+    private Integer segmentIndex;          // Position of the segment within its stop pattern
+    private Double bearingDegrees;         // Direction of travel from fromStop to toStop (0-360)
+    private Double exposureBearingDegrees; // Direction the ocean-facing side of the road looks towards (0-360)
+    private Double lengthKm;
+
     public enum Orientation {
         NORTH_FACING,  // Exposed to northerly waves (270-90 degrees)
         SOUTH_FACING   // Exposed to southerly waves (90-270 degrees)
@@ -0,0 +1,33 @@
+package com.majuro.transit.model.gtfs;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "gtfs_calendar_dates")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GtfsCalendarDate {
+
+    public static final int SERVICE_ADDED = 1;
+    public static final int SERVICE_REMOVED = 2;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String serviceId;
+
+    @Column(name = "service_date", nullable = false)
+    private LocalDate date;
+
+    // 1 = service added on this date, 2 = service removed
+    @Column(nullable = false)
+    private Integer exceptionType;
+}
@@ -0,0 +1,113 @@
+package com.majuro.transit.realtime;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Minimal protocol buffers encoder writing fields in wire format to a growable byte array.
+ * Nested messages are encoded into their own writer and appended length-delimited.
+ */
+public final class ProtobufWriter {
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private byte[] bytes;
+    private int size;
+
+    public ProtobufWriter() {
+        this(64);
+    }
+
+    public ProtobufWriter(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void writeString(int field, String value) {
+        if (value == null) {
+            return;
+        }
+        writeBytes(field, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeBytes(int field, byte[] value) {
+        writeTag(field, WIRE_LENGTH_DELIMITED);
+        writeVarint(value.length);
+        append(value, 0, value.length);
+    }
+
+    /**
+     * uint32, uint64 and int64 fields
+     */
+    public void writeUInt64(int field, long value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+    }
+
+    /**
+     * int32 fields; negative values are sign-extended to ten bytes as the format requires
+     */
+    public void writeInt32(int field, int value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value);
+    }
+
+    public void writeEnum(int field, int value) {
+        writeInt32(field, value);
+    }
+
+    public void writeBool(int field, boolean value) {
+        writeTag(field, WIRE_VARINT);
+        writeVarint(value ? 1 : 0);
+    }
+
+    public void writeFloat(int field, float value) {
+        writeTag(field, WIRE_FIXED32);
+        int bits = Float.floatToIntBits(value);
+        ensureCapacity(size + 4);
+        bytes[size++] = (byte) bits;
+        bytes[size++] = (byte) (bits >>> 8);
+        bytes[size++] = (byte) (bits >>> 16);
+        bytes[size++] = (byte) (bits >>> 24);
+    }
+
+    public void writeMessage(int field, ProtobufWriter message) {
+        writeTag(field, WIRE_LENGTH_DELIMITED);
+        writeVarint(message.size);
+        append(message.bytes, 0, message.size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private void writeTag(int field, int wireType) {
+        writeVarint(((long) field << 3) | wireType);
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(size + 10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void append(byte[] source, int offset, int length) {
+        ensureCapacity(size + length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.majuro.transit.repository.gtfs;
+
+import com.majuro.transit.model.gtfs.GtfsCalendarDate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface GtfsCalendarDateRepository extends JpaRepository<GtfsCalendarDate, Long> {
+}
@@ -0,0 +1,146 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.TidalReading;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams wave readings for CDIP station 163 from the ERDDAP tabledap CSV endpoint. The response
+ * is decoded line by line and each row is parsed as it arrives, so the full table is never held
+ * in memory. Only rows newer than the requested timestamp are fetched.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CdipWaveClient {
+
+    private final WebClient.Builder webClientBuilder;
+
+    private static final String CDIP_CSV_URL =
+        "https://erddap.cdip.ucsd.edu/erddap/tabledap/wave_agg.csv" +
+        "?station_id,time,waveHs,waveTp,waveDp" +
+        "&station_id=\"163\"" +
+        "&time>{since}" +
+        "&waveFlagPrimary=1";
+
+    private static final DateTimeFormatter ERDDAP_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'");
+
+    /**
+     * Readings strictly after the given UTC timestamp, in the order ERDDAP returns them. ERDDAP
+     * answers 404 when nothing matches, which between station updates is the normal result of an
+     * incremental poll, so that is an empty result rather than an error.
+     */
+    public Flux<TidalReading> fetchSince(LocalDateTime since) {
+        return Flux.defer(() -> {
+            CsvRowParser parser = new CsvRowParser(since);
+            return webClientBuilder.build().get()
+                    .uri(CDIP_CSV_URL, since.format(ERDDAP_TIME))
+                    .retrieve()
+                    .bodyToFlux(String.class)
+                    .mapNotNull(parser::parse)
+                    .onErrorResume(WebClientResponseException.NotFound.class, e -> Flux.empty());
+        });
+    }
+
+    /**
+     * Readings from a local CSV in the same format, for offline runs
+     */
+    public Flux<TidalReading> readFixture(Resource fixture, LocalDateTime since) {
+        return Flux.using(
+                () -> new BufferedReader(new InputStreamReader(fixture.getInputStream(), StandardCharsets.UTF_8)),
+                reader -> {
+                    CsvRowParser parser = new CsvRowParser(since);
+                    return Flux.fromStream(reader.lines()).mapNotNull(parser::parse);
+                },
+                reader -> {
+                    try {
+                        reader.close();
+                    } catch (Exception e) {
+                        log.debug("Failed to close CDIP fixture: {}", e.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Stateful parser for one ERDDAP CSV response: a header row of column names, a row of units,
+     * then one reading per row
+     */
+    private static final class CsvRowParser {
+        private final LocalDateTime since;
+        private Map<String, Integer> columns;
+        private boolean unitsSkipped;
+
+        CsvRowParser(LocalDateTime since) {
+            this.since = since;
+        }
+
+        TidalReading parse(String line) {
+            if (line.isBlank()) {
+                return null;
+            }
+            String[] fields = line.split(",", -1);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int i = 0; i < fields.length; i++) {
+                    columns.put(unquote(fields[i]), i);
+                }
+                return null;
+            }
+            if (!unitsSkipped) {
+                unitsSkipped = true;
+                return null;
+            }
+
+            try {
+                LocalDateTime timestamp = parseTimestamp(field(fields, "time"));
+                if (since != null && !timestamp.isAfter(since)) {
+                    return null;
+                }
+                return TidalReading.builder()
+                        .stationId(unquote(field(fields, "station_id")))
+                        .timestamp(timestamp)
+                        .waveHeight(Double.parseDouble(field(fields, "waveHs")))
+                        .wavePeriod(12.0) // Not using waveTp for now
+                        .waveDirection(Double.parseDouble(field(fields, "waveDp")))
+                        .stationName("Majuro Station 163")
+                        .latitude(7.0897)
+                        .longitude(171.2720)
+                        .build();
+            } catch (Exception e) {
+                log.warn("Failed to parse CDIP row: {} - {}", line.substring(0, Math.min(100, line.length())), e.getMessage());
+                return null;
+            }
+        }
+
+        private String field(String[] fields, String name) {
+            Integer index = columns.get(name);
+            if (index == null || index >= fields.length) {
+                throw new IllegalArgumentException("Missing column " + name);
+            }
+            return fields[index];
+        }
+
+        private static String unquote(String value) {
+            return value.replace("\"", "").trim();
+        }
+
+        private static LocalDateTime parseTimestamp(String timestamp) {
+            // Format: 2025-08-29T00:30:00Z
+            timestamp = unquote(timestamp).replace("Z", "");
+            return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.RouteImpact;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Propagates tidal delays along trips. Each stop pattern gets a delay factor per inter-stop
+ * segment (the route's delay multiplier on affected segments, none elsewhere); the extra run time
+ * of each segment is then accumulated along every trip of the pattern into a per-stop delay.
+ * The tables are rebuilt once per impact and feed version, so reading a trip's delays is an
+ * array lookup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DelayPropagationService {
+
+    private static final int[] NO_DELAYS = new int[0];
+
+    private final GtfsFeedIndex feedIndex;
+    private final RouteImpactCache routeImpactCache;
+    private final StopTravelMatrixService travelMatrix;
+
+    private volatile DelayTable propagation;
+
+    /**
+     * @return Delay in seconds accumulated on arrival at each stop of the trip, parallel to its
+     *         stop times; empty if the trip is not in the feed
+     */
+    public int[] getStopDelaySeconds(String tripId) {
+        DelayTable current = currentPropagation();
+        if (current == null) {
+            return NO_DELAYS;
+        }
+        int trip = current.snapshot.tripIndex(tripId);
+        return trip < 0 ? NO_DELAYS : current.tripDelaySeconds[trip];
+    }
+
+    /**
+     * @return Current delays together with the timetable and impacts they were computed from
+     */
+    public DelayTable getDelayTable() {
+        DelayTable current = currentPropagation();
+        if (current == null) {
+            throw new RuntimeException("GTFS feed has not been loaded yet");
+        }
+        return current;
+    }
+
+    /**
+     * @return Delay factor of a trip's segment from stop {@code segmentIndex} to the next one;
+     *         1.0 if the segment is unaffected
+     */
+    public double getSegmentFactor(String tripId, int segmentIndex) {
+        DelayTable current = currentPropagation();
+        if (current == null) {
+            return 1.0;
+        }
+        int trip = current.snapshot.tripIndex(tripId);
+        if (trip < 0) {
+            return 1.0;
+        }
+        float[] factors = current.patternSegmentFactors[current.snapshot.getTripPattern()[trip]];
+        return segmentIndex >= 0 && segmentIndex < factors.length ? factors[segmentIndex] : 1.0;
+    }
+
+    private DelayTable currentPropagation() {
+        long feedVersion = feedIndex.getVersion();
+        if (feedVersion == 0) {
+            return null;
+        }
+        RouteImpactCache.ImpactSnapshot impacts = routeImpactCache.getImpactSnapshot();
+        DelayTable current = propagation;
+        if (current != null && current.matches(impacts.version(), feedVersion)) {
+            return current;
+        }
+        synchronized (this) {
+            if (propagation == null || !propagation.matches(impacts.version(), feedVersion)) {
+                propagation = build(impacts, feedIndex.getSnapshot());
+            }
+            return propagation;
+        }
+    }
+
+    private DelayTable build(RouteImpactCache.ImpactSnapshot impacts, FeedSnapshot snapshot) {
+        long startTime = System.nanoTime();
+
+        float[][] factors = new float[snapshot.patternCount()][];
+        for (int pattern = 0; pattern < factors.length; pattern++) {
+            factors[pattern] = segmentFactors(snapshot, impacts, pattern);
+        }
+
+        int[][] delays = new int[snapshot.tripCount()][];
+        for (int trip = 0; trip < delays.length; trip++) {
+            delays[trip] = accumulate(snapshot, trip, factors[snapshot.getTripPattern()[trip]]);
+        }
+
+        log.debug("Propagated delays for {} trips over {} patterns (impact version {}) in {} ms",
+                delays.length, factors.length, impacts.version(),
+                String.format("%.1f", (System.nanoTime() - startTime) / 1_000_000.0));
+        return new DelayTable(snapshot, impacts, factors, delays);
+    }
+
+    /**
+     * Delay factor of each segment of a pattern under the current impact of its route
+     */
+    private float[] segmentFactors(FeedSnapshot snapshot, RouteImpactCache.ImpactSnapshot impacts, int pattern) {
+        int[] stops = snapshot.getPatternStops()[pattern];
+        float[] factors = new float[Math.max(0, stops.length - 1)];
+        Arrays.fill(factors, 1.0f);
+
+        int route = snapshot.getPatternRoute()[pattern];
+        if (route < 0) {
+            return factors;
+        }
+        RouteImpact impact = impacts.byRoute().get(snapshot.getRouteIds()[route]);
+        // Shutdown routes do not run, so they accumulate no delay
+        if (impact == null || impact.getImpactLevel() == RouteImpact.ImpactLevel.NONE
+                || impact.getImpactLevel() == RouteImpact.ImpactLevel.SHUTDOWN
+                || impact.getDelayMultiplier() == null || impact.getDelayMultiplier() <= 1.0) {
+            return factors;
+        }
+
+        Set<String> affected = new HashSet<>(impact.getAffectedSegments());
+        String[] stopIds = snapshot.getStopIds();
+        for (int i = 0; i < factors.length; i++) {
+            String label = TidalImpactCalculator.segmentLabel(stopIds[stops[i]], stopIds[stops[i + 1]]);
+            if (affected.contains(label)) {
+                factors[i] = impact.getDelayMultiplier().floatValue();
+            }
+        }
+        return factors;
+    }
+
+    /**
+     * Cumulative delay on arrival at each stop of a trip: the sum of the extra run time of every
+     * affected segment travelled so far
+     */
+    private int[] accumulate(FeedSnapshot snapshot, int trip, float[] factors) {
+        int[] arrivals = snapshot.getTripArrivalSeconds()[trip];
+        int[] departures = snapshot.getTripDepartureSeconds()[trip];
+        int[] stops = snapshot.getPatternStops()[snapshot.getTripPattern()[trip]];
+        int[] delays = new int[arrivals.length];
+
+        double cumulative = 0;
+        for (int i = 0; i < factors.length && i + 1 < arrivals.length; i++) {
+            if (factors[i] > 1.0f) {
+                int runSeconds = arrivals[i + 1] - departures[i];
+                if (runSeconds <= 0) {
+                    // Timepoints without distinct times; use the typical run time between the stops
+                    runSeconds = Math.max(0, travelMatrix.getRunSeconds(stops[i], stops[i + 1]));
+                }
+                cumulative += runSeconds * (factors[i] - 1.0);
+            }
+            delays[i + 1] = (int) Math.round(cumulative);
+        }
+        return delays;
+    }
+
+    /**
+     * Delays of every trip for one feed and impact version
+     */
+    public record DelayTable(
+            FeedSnapshot snapshot,
+            RouteImpactCache.ImpactSnapshot impacts,
+            float[][] patternSegmentFactors,
+            int[][] tripDelaySeconds     // Per trip, parallel to its stop times
+    ) {
+        boolean matches(long impactVersion, long feedVersion) {
+            return impacts.version() == impactVersion && snapshot.getVersion() == feedVersion;
+        }
+    }
+}
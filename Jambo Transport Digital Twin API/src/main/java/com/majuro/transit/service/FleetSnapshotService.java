@@ -0,0 +1,283 @@
+package com.majuro.transit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.majuro.transit.dto.BusPositionDTO;
+import com.majuro.transit.event.FleetTickEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the positions of the whole fleet once per tick and shares the result with every
+ * client. Each tick that changes anything gets the next version and a delta frame holding only
+ * the changed fields of each vehicle; frames are serialized once and broadcast to all SSE
+ * subscribers. A bounded history of recent frames lets clients resume from a Last-Event-ID,
+ * and a subscriber that falls behind skips ahead by catching up from that history (or a full
+ * snapshot) instead of blocking the broadcast.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FleetSnapshotService {
+
+    private static final TypeReference<Map<String, Object>> FIELDS = new TypeReference<>() {};
+
+    // Signal that starts a client's catch-up; tick versions are positive
+    private static final long CONNECTED = -1;
+
+    private final GtfsBusSimulationService simulationService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Number of recent delta frames kept for resuming clients
+    @Value("${transit.fleet.resume-frames:100}")
+    private int resumeFrames;
+
+    // Largest number of vehicles one batch lookup may name
+    @Value("${transit.fleet.max-batch-vehicles:500}")
+    private int maxBatchVehicles;
+
+    private final Sinks.Many<Long> ticks = Sinks.many().multicast().directBestEffort();
+    private volatile FleetState state = new FleetState(0, List.of(), Map.of(), Map.of(), Map.of(), List.of());
+
+    /**
+     * @return Active bus positions as of the latest tick, computing them if no tick has run yet
+     */
+    public List<BusPositionDTO> getActivePositions() {
+        return currentState().positions;
+    }
+
+    /**
+     * @return Active vehicle with the given bus label, or numeric bus ID, as of the latest tick;
+     *         null if no active vehicle matches
+     */
+    public BusPositionDTO findVehicle(String busIdOrLabel) {
+        return lookup(currentState(), busIdOrLabel);
+    }
+
+    /**
+     * @return Active vehicle with the given bus ID as of the latest tick, or null
+     */
+    public BusPositionDTO findVehicle(long busId) {
+        return currentState().byBusId.get(busId);
+    }
+
+    /**
+     * @return Active vehicles named by bus label or bus ID, all from the same tick and in request
+     *         order; names without an active vehicle are skipped
+     */
+    public List<BusPositionDTO> findVehicles(List<String> busIdsOrLabels) {
+        if (busIdsOrLabels.size() > maxBatchVehicles) {
+            throw new RuntimeException("At most " + maxBatchVehicles + " vehicles can be requested at once");
+        }
+        FleetState current = currentState();
+        List<BusPositionDTO> vehicles = new ArrayList<>(busIdsOrLabels.size());
+        for (String busIdOrLabel : busIdsOrLabels) {
+            BusPositionDTO vehicle = lookup(current, busIdOrLabel);
+            if (vehicle != null) {
+                vehicles.add(vehicle);
+            }
+        }
+        return vehicles;
+    }
+
+    public long getVersion() {
+        return state.version;
+    }
+
+    @Scheduled(fixedDelayString = "${transit.fleet.tick-millis:3000}")
+    public synchronized void tick() {
+        List<BusPositionDTO> positions;
+        try {
+            positions = simulationService.getAllActiveBusPositions().stream()
+                    .map(BusPositionDTO::fromEntity)
+                    .toList();
+        } catch (RuntimeException e) {
+            log.warn("Failed to compute fleet positions: {}", e.getMessage());
+            return;
+        }
+
+        Map<String, Map<String, Object>> vehicles = new LinkedHashMap<>();
+        Map<String, BusPositionDTO> byLabel = new HashMap<>();
+        Map<Long, BusPositionDTO> byBusId = new HashMap<>();
+        for (BusPositionDTO position : positions) {
+            vehicles.put(position.getBusLabel(), objectMapper.convertValue(position, FIELDS));
+            byLabel.put(position.getBusLabel(), position);
+            if (position.getBusId() != null) {
+                byBusId.putIfAbsent(position.getBusId(), position);
+            }
+        }
+
+        FleetState previous = state;
+        Map<String, Map<String, Object>> changed = new LinkedHashMap<>();
+        vehicles.forEach((key, fields) -> {
+            Map<String, Object> diff = diff(previous.vehicles.get(key), fields);
+            if (!diff.isEmpty()) {
+                changed.put(key, diff);
+            }
+        });
+        List<String> removed = previous.vehicles.keySet().stream()
+                .filter(key -> !vehicles.containsKey(key))
+                .toList();
+        if (previous.version > 0 && changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        // Start from the clock so versions keep increasing across restarts and stale event IDs
+        // from a previous process resolve to a snapshot
+        long version = previous.version == 0 ? System.currentTimeMillis() : previous.version + 1;
+        List<Frame> frames = new ArrayList<>(previous.frames);
+        frames.add(new Frame(version, toJson(new DeltaFrame(version, changed, removed))));
+        if (frames.size() > resumeFrames) {
+            frames = frames.subList(frames.size() - resumeFrames, frames.size());
+        }
+
+        state = new FleetState(version, positions, vehicles, byLabel, byBusId, List.copyOf(frames));
+        ticks.tryEmitNext(version);
+        eventPublisher.publishEvent(new FleetTickEvent(version, previous.vehicles, vehicles, changed, removed));
+    }
+
+    /**
+     * Event stream for one client: a full snapshot (or the frames missed since {@code lastEventId}),
+     * then one delta frame per changed tick
+     */
+    public Flux<ServerSentEvent<String>> stream(Long lastEventId) {
+        return Flux.defer(() -> {
+            AtomicLong sent = new AtomicLong(lastEventId == null ? 0 : lastEventId);
+            // Subscribe to ticks before catching up, so a tick published meanwhile is not missed
+            return ticks.asFlux()
+                    .onBackpressureLatest()
+                    .mergeWith(Mono.just(CONNECTED))
+                    .concatMapIterable(version -> catchUp(sent, version == CONNECTED));
+        });
+    }
+
+    /**
+     * Events that bring a client from its last sent version to the current one
+     */
+    private List<ServerSentEvent<String>> catchUp(AtomicLong sent, boolean connecting) {
+        FleetState current = state;
+        long from = sent.get();
+        if (current.version == 0 || (from == current.version && !connecting)) {
+            return List.of();
+        }
+
+        List<ServerSentEvent<String>> events = new ArrayList<>();
+        long oldestFrame = current.frames.isEmpty() ? Long.MAX_VALUE : current.frames.get(0).version;
+        if (from <= 0 || from > current.version || from + 1 < oldestFrame) {
+            events.add(ServerSentEvent.<String>builder()
+                    .id(Long.toString(current.version))
+                    .event("snapshot")
+                    .data(toJson(new SnapshotFrame(current.version, current.vehicles)))
+                    .build());
+        } else {
+            for (Frame frame : current.frames) {
+                if (frame.version > from) {
+                    events.add(ServerSentEvent.<String>builder()
+                            .id(Long.toString(frame.version))
+                            .event("delta")
+                            .data(frame.json)
+                            .build());
+                }
+            }
+        }
+        sent.set(current.version);
+        return events;
+    }
+
+    private FleetState currentState() {
+        FleetState current = state;
+        if (current.version == 0) {
+            tick();
+            current = state;
+        }
+        return current;
+    }
+
+    /**
+     * Vehicle with the given bus label in a tick, falling back to a numeric bus ID
+     */
+    private static BusPositionDTO lookup(FleetState current, String busIdOrLabel) {
+        BusPositionDTO vehicle = current.byLabel.get(busIdOrLabel);
+        if (vehicle == null && isBusId(busIdOrLabel)) {
+            vehicle = current.byBusId.get(Long.parseLong(busIdOrLabel));
+        }
+        return vehicle;
+    }
+
+    /**
+     * Whether a name can be a numeric bus ID, checked without parsing so lookups throw nothing
+     */
+    private static boolean isBusId(String name) {
+        int start = name.startsWith("-") ? 1 : 0;
+        if (name.length() == start || name.length() - start > 18) {
+            return false;
+        }
+        for (int i = start; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Map<String, Object> diff(Map<String, Object> before, Map<String, Object> after) {
+        if (before == null) {
+            return after;
+        }
+        Map<String, Object> changed = new LinkedHashMap<>();
+        after.forEach((field, value) -> {
+            if (!Objects.equals(before.get(field), value)) {
+                changed.put(field, value);
+            }
+        });
+        return changed;
+    }
+
+    private String toJson(Object frame) {
+        try {
+            return objectMapper.writeValueAsString(frame);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize fleet frame", e);
+        }
+    }
+
+    private record Frame(long version, String json) {}
+
+    private record FleetState(
+            long version,
+            List<BusPositionDTO> positions,
+            Map<String, Map<String, Object>> vehicles,  // Fields of each vehicle, keyed by bus label
+            Map<String, BusPositionDTO> byLabel,
+            Map<Long, BusPositionDTO> byBusId,
+            List<Frame> frames                          // Recent delta frames, oldest first
+    ) {}
+
+    /**
+     * Full state of every active vehicle
+     */
+    public record SnapshotFrame(long version, Map<String, Map<String, Object>> vehicles) {}
+
+    /**
+     * Changed fields of each vehicle since the previous version; vehicles appearing for the first
+     * time carry all their fields
+     */
+    public record DeltaFrame(long version, Map<String, Map<String, Object>> vehicles, List<String> removed) {}
+}
@@ -0,0 +1,465 @@
+package com.majuro.transit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.majuro.transit.event.FleetTickEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Matches fleet ticks to WebSocket clients by their subscriptions: a route, a single vehicle or a
+ * bounding box. Subscriptions are indexed by route, by vehicle and by the grid cells a box covers,
+ * so each changed vehicle is only checked against clients that could be interested in it.
+ * Every client has a coalescing outbound queue with at most one pending update per vehicle; while
+ * a send is in flight newer values overwrite older ones, so a slow client gets the latest state
+ * instead of a growing backlog.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FleetSubscriptionBroker {
+
+    private static final String LATITUDE = "currentLatitude";
+    private static final String LONGITUDE = "currentLongitude";
+    private static final String ROUTE = "routeName";
+
+    // Replies a client may leave unread before it is dropped
+    private static final int MAX_PENDING_REPLIES = 32;
+
+    private final ObjectMapper objectMapper;
+
+    // Size of the spatial index cells in degrees
+    @Value("${transit.fleet.ws.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    @Value("${transit.fleet.ws.max-subscriptions:20}")
+    private int maxSubscriptions;
+
+    // Largest number of index cells one bounding box subscription may cover
+    @Value("${transit.fleet.ws.max-cells:2500}")
+    private int maxCells;
+
+    // Indexes and the latest fleet state, guarded by this
+    private final Map<String, Set<Client>> byRoute = new HashMap<>();
+    private final Map<String, Set<Client>> byVehicle = new HashMap<>();
+    private final Map<Long, Set<Client>> byCell = new HashMap<>();
+    private final Set<Client> clients = new HashSet<>();
+    private long fleetVersion;
+    private Map<String, Map<String, Object>> fleet = Map.of();
+
+    /**
+     * Register a connected client
+     */
+    public synchronized Client connect(Outbound outbound) {
+        Client client = new Client(outbound);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Drop a client and all its subscriptions
+     */
+    public synchronized void disconnect(Client client) {
+        for (Subscription subscription : client.subscriptions) {
+            unindex(client, subscription);
+        }
+        client.subscriptions.clear();
+        clients.remove(client);
+        synchronized (client) {
+            client.closed = true;
+            client.pending.clear();
+            client.pendingRemoved.clear();
+            client.replies.clear();
+        }
+    }
+
+    public synchronized int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Handle a message from a client: {@code {"action":"subscribe","id":"s1","route":"A"}}, with
+     * {@code "vehicle":"<bus label>"} or {@code "bbox":[minLat,minLon,maxLat,maxLon]} in place of
+     * the route, or {@code {"action":"unsubscribe","id":"s1"}}
+     */
+    public void handle(Client client, String text) {
+        try {
+            JsonNode message = objectMapper.readTree(text);
+            String action = message.path("action").asText("");
+            switch (action) {
+                case "subscribe" -> subscribe(client, message);
+                case "unsubscribe" -> unsubscribe(client, message.path("id").asText(null));
+                default -> throw new RuntimeException("Unknown action: " + action);
+            }
+        } catch (JsonProcessingException e) {
+            reply(client, Map.of("type", "error", "message", "Malformed message"));
+        } catch (RuntimeException e) {
+            reply(client, Map.of("type", "error", "message", String.valueOf(e.getMessage())));
+        }
+        flush(client);
+    }
+
+    @EventListener
+    public synchronized void onFleetTick(FleetTickEvent event) {
+        fleetVersion = event.version();
+        fleet = event.vehicles();
+        if (clients.isEmpty()) {
+            return;
+        }
+
+        Set<Client> touched = new HashSet<>();
+        Set<Client> candidates = new HashSet<>();
+        event.changed().forEach((label, changedFields) -> {
+            Map<String, Object> before = event.previous().get(label);
+            Map<String, Object> after = event.vehicles().get(label);
+            candidates.clear();
+            collectCandidates(candidates, label, before);
+            collectCandidates(candidates, label, after);
+            for (Client client : candidates) {
+                boolean matchedBefore = before != null && client.matches(label, before);
+                if (client.matches(label, after)) {
+                    // Clients that could not see the vehicle before need all of its fields
+                    client.enqueue(event.version(), label, matchedBefore ? changedFields : after);
+                    touched.add(client);
+                } else if (matchedBefore) {
+                    client.enqueueRemoval(event.version(), label);
+                    touched.add(client);
+                }
+            }
+        });
+        for (String label : event.removed()) {
+            Map<String, Object> before = event.previous().get(label);
+            candidates.clear();
+            collectCandidates(candidates, label, before);
+            for (Client client : candidates) {
+                if (client.matches(label, before)) {
+                    client.enqueueRemoval(event.version(), label);
+                    touched.add(client);
+                }
+            }
+        }
+        touched.forEach(this::flush);
+    }
+
+    private synchronized void subscribe(Client client, JsonNode message) {
+        if (!clients.contains(client)) {
+            return;
+        }
+        if (client.subscriptions.size() >= maxSubscriptions) {
+            throw new RuntimeException("At most " + maxSubscriptions + " subscriptions per connection");
+        }
+        String id = message.hasNonNull("id") ? message.get("id").asText() : "s" + (++client.lastGeneratedId);
+        if (client.subscriptions.stream().anyMatch(existing -> existing.id.equals(id))) {
+            throw new RuntimeException("Subscription already exists: " + id);
+        }
+
+        Subscription subscription = parseSubscription(id, message);
+        client.subscriptions.add(subscription);
+        index(client, subscription);
+        reply(client, Map.of("type", "subscribed", "id", id, "version", fleetVersion));
+
+        // Current state of the vehicles the client could not see yet
+        fleet.forEach((label, fields) -> {
+            if (subscription.matches(label, fields) && !client.matchesExcept(label, fields, subscription)) {
+                client.enqueue(fleetVersion, label, fields);
+            }
+        });
+    }
+
+    private synchronized void unsubscribe(Client client, String id) {
+        Subscription subscription = client.subscriptions.stream()
+                .filter(existing -> existing.id.equals(id))
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Subscription not found: " + id));
+        client.subscriptions.remove(subscription);
+        unindex(client, subscription);
+        reply(client, Map.of("type", "unsubscribed", "id", id));
+
+        fleet.forEach((label, fields) -> {
+            if (subscription.matches(label, fields) && !client.matches(label, fields)) {
+                client.enqueueRemoval(fleetVersion, label);
+            }
+        });
+    }
+
+    private Subscription parseSubscription(String id, JsonNode message) {
+        if (message.hasNonNull("route")) {
+            return new Subscription(id, message.get("route").asText(), null, null);
+        }
+        if (message.hasNonNull("vehicle")) {
+            return new Subscription(id, null, message.get("vehicle").asText(), null);
+        }
+        JsonNode bbox = message.path("bbox");
+        if (!bbox.isArray() || bbox.size() != 4) {
+            throw new RuntimeException("Subscription needs a route, a vehicle or a bbox of [minLat, minLon, maxLat, maxLon]");
+        }
+        double[] box = {bbox.get(0).asDouble(), bbox.get(1).asDouble(), bbox.get(2).asDouble(), bbox.get(3).asDouble()};
+        if (!isLatitude(box[0]) || !isLatitude(box[2]) || !isLongitude(box[1]) || !isLongitude(box[3])) {
+            throw new RuntimeException("Bounding box needs latitudes in [-90, 90] and longitudes in [-180, 180]");
+        }
+        if (box[0] > box[2] || box[1] > box[3]) {
+            throw new RuntimeException("Bounding box minimum must not exceed its maximum");
+        }
+        // In double so a degenerate cell size cannot overflow the count
+        double cells = ((double) cellIndex(box[2]) - cellIndex(box[0]) + 1) * ((double) cellIndex(box[3]) - cellIndex(box[1]) + 1);
+        if (cells > maxCells) {
+            throw new RuntimeException("Bounding box is too large");
+        }
+        return new Subscription(id, null, null, box);
+    }
+
+    private static boolean isLatitude(double value) {
+        return Double.isFinite(value) && value >= -90 && value <= 90;
+    }
+
+    private static boolean isLongitude(double value) {
+        return Double.isFinite(value) && value >= -180 && value <= 180;
+    }
+
+    private void index(Client client, Subscription subscription) {
+        if (subscription.route != null) {
+            byRoute.computeIfAbsent(subscription.route, key -> new HashSet<>()).add(client);
+        } else if (subscription.vehicle != null) {
+            byVehicle.computeIfAbsent(subscription.vehicle, key -> new HashSet<>()).add(client);
+        } else {
+            forEachCell(subscription.box, cell -> byCell.computeIfAbsent(cell, key -> new HashSet<>()).add(client));
+        }
+    }
+
+    private void unindex(Client client, Subscription subscription) {
+        // The client may hold another subscription on the same key
+        if (subscription.route != null) {
+            removeFromIndex(byRoute, subscription.route, client,
+                    other -> subscription.route.equals(other.route));
+        } else if (subscription.vehicle != null) {
+            removeFromIndex(byVehicle, subscription.vehicle, client,
+                    other -> subscription.vehicle.equals(other.vehicle));
+        } else {
+            forEachCell(subscription.box, cell -> removeFromIndex(byCell, cell, client,
+                    other -> other.box != null && other.coversCell(cell, cellDegrees)));
+        }
+    }
+
+    private <K> void removeFromIndex(Map<K, Set<Client>> index, K key, Client client,
+                                     Predicate<Subscription> sameKey) {
+        if (client.subscriptions.stream().anyMatch(sameKey)) {
+            return;
+        }
+        Set<Client> indexed = index.get(key);
+        if (indexed != null && indexed.remove(client) && indexed.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private void collectCandidates(Set<Client> candidates, String label, Map<String, Object> fields) {
+        addAll(candidates, byVehicle.get(label));
+        if (fields == null) {
+            return;
+        }
+        if (fields.get(ROUTE) instanceof String route) {
+            addAll(candidates, byRoute.get(route));
+        }
+        if (fields.get(LATITUDE) instanceof Number latitude && fields.get(LONGITUDE) instanceof Number longitude) {
+            addAll(candidates, byCell.get(cellKey(cellIndex(latitude.doubleValue()), cellIndex(longitude.doubleValue()))));
+        }
+    }
+
+    private static void addAll(Set<Client> candidates, Set<Client> indexed) {
+        if (indexed != null) {
+            candidates.addAll(indexed);
+        }
+    }
+
+    private void forEachCell(double[] box, Consumer<Long> action) {
+        for (long row = cellIndex(box[0]); row <= cellIndex(box[2]); row++) {
+            for (long column = cellIndex(box[1]); column <= cellIndex(box[3]); column++) {
+                action.accept(cellKey(row, column));
+            }
+        }
+    }
+
+    private long cellIndex(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long cellKey(long row, long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+
+    private void reply(Client client, Map<String, Object> reply) {
+        boolean overflow;
+        synchronized (client) {
+            client.replies.add(toJson(reply));
+            overflow = client.replies.size() > MAX_PENDING_REPLIES;
+        }
+        if (overflow) {
+            log.debug("Dropping WebSocket client that is not reading its replies");
+            disconnect(client);
+            client.outbound.close();
+        }
+    }
+
+    /**
+     * Send the client's next message unless a send is already in flight; the completion of each
+     * send triggers the next one, carrying everything that coalesced in the meantime
+     */
+    private void flush(Client client) {
+        String text;
+        synchronized (client) {
+            if (client.sending || client.closed) {
+                return;
+            }
+            text = client.replies.poll();
+            if (text == null && (!client.pending.isEmpty() || !client.pendingRemoved.isEmpty())) {
+                text = toJson(new DeltaMessage("delta", client.pendingVersion,
+                        new LinkedHashMap<>(client.pending), new ArrayList<>(client.pendingRemoved)));
+                client.pending.clear();
+                client.pendingRemoved.clear();
+            }
+            if (text == null) {
+                return;
+            }
+            client.sending = true;
+        }
+
+        client.outbound.send(text, failure -> {
+            synchronized (client) {
+                client.sending = false;
+            }
+            if (failure != null) {
+                log.debug("Dropping WebSocket client after failed send: {}", failure.getMessage());
+                disconnect(client);
+                client.outbound.close();
+            } else {
+                flush(client);
+            }
+        });
+    }
+
+    private String toJson(Object message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize fleet message", e);
+        }
+    }
+
+    /**
+     * Transport of one connection
+     */
+    public interface Outbound {
+        /**
+         * Send a text message asynchronously, then call {@code done} with the failure or null
+         */
+        void send(String text, Consumer<Throwable> done);
+
+        void close();
+    }
+
+    /**
+     * One connected client: its subscriptions and its outbound queue
+     */
+    public static final class Client {
+        private final Outbound outbound;
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        private int lastGeneratedId;
+
+        // Outbound queue, guarded by this
+        private final Map<String, Map<String, Object>> pending = new LinkedHashMap<>();
+        private final Set<String> pendingRemoved = new LinkedHashSet<>();
+        private final ArrayDeque<String> replies = new ArrayDeque<>();
+        private long pendingVersion;
+        private boolean sending;
+        private boolean closed;
+
+        private Client(Outbound outbound) {
+            this.outbound = outbound;
+        }
+
+        private boolean matches(String label, Map<String, Object> fields) {
+            for (Subscription subscription : subscriptions) {
+                if (subscription.matches(label, fields)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesExcept(String label, Map<String, Object> fields, Subscription excluded) {
+            for (Subscription subscription : subscriptions) {
+                if (subscription != excluded && subscription.matches(label, fields)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized void enqueue(long version, String label, Map<String, Object> fields) {
+            if (closed) {
+                return;
+            }
+            pendingRemoved.remove(label);
+            pending.computeIfAbsent(label, key -> new LinkedHashMap<>()).putAll(fields);
+            pendingVersion = version;
+        }
+
+        private synchronized void enqueueRemoval(long version, String label) {
+            if (closed) {
+                return;
+            }
+            pending.remove(label);
+            pendingRemoved.add(label);
+            pendingVersion = version;
+        }
+    }
+
+    private record Subscription(String id, String route, String vehicle, double[] box) {
+        boolean matches(String label, Map<String, Object> fields) {
+            if (vehicle != null) {
+                return vehicle.equals(label);
+            }
+            if (route != null) {
+                return route.equals(fields.get(ROUTE));
+            }
+            return fields.get(LATITUDE) instanceof Number latitude
+                    && fields.get(LONGITUDE) instanceof Number longitude
+                    && latitude.doubleValue() >= box[0] && latitude.doubleValue() <= box[2]
+                    && longitude.doubleValue() >= box[1] && longitude.doubleValue() <= box[3];
+        }
+
+        boolean coversCell(long cell, double cellDegrees) {
+            long row = cell >> 32;
+            long column = (int) cell;
+            return row >= (long) Math.floor(box[0] / cellDegrees) && row <= (long) Math.floor(box[2] / cellDegrees)
+                    && column >= (long) Math.floor(box[1] / cellDegrees) && column <= (long) Math.floor(box[3] / cellDegrees);
+        }
+    }
+
+    /**
+     * Vehicles matching the client's subscriptions that changed since its previous delta; vehicles
+     * new to the client carry all their fields
+     */
+    public record DeltaMessage(
+            String type,
+            long version,
+            Map<String, Map<String, Object>> vehicles,
+            List<String> removed
+    ) {}
+}
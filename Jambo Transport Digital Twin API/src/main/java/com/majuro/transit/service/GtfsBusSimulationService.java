@@ -3,16 +3,15 @@ package com.majuro.transit.service;
 import com.majuro.transit.model.BusPosition;
 import com.majuro.transit.model.gtfs.GtfsRoute;
 import com.majuro.transit.model.gtfs.GtfsStop;
-import com.majuro.transit.model.gtfs.GtfsStopTime;
 import com.majuro.transit.model.gtfs.GtfsTrip;
 import com.majuro.transit.repository.gtfs.GtfsRouteRepository;
 import com.majuro.transit.repository.gtfs.GtfsStopRepository;
-import com.majuro.transit.repository.gtfs.GtfsStopTimeRepository;
 import com.majuro.transit.repository.gtfs.GtfsTripRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -24,18 +23,20 @@ public class GtfsBusSimulationService {
     private final GtfsStopRepository stopRepository;
     private final GtfsRouteRepository routeRepository;
     private final GtfsTripRepository tripRepository;
-    private final GtfsStopTimeRepository stopTimeRepository;
     private final GtfsPositionCalculator positionCalculator;
+    private final GtfsFeedIndex feedIndex;
 
     @Transactional(readOnly = true)
     public List<BusPosition> getAllActiveBusPositions() {
+        LocalDate today = LocalDate.now();
         LocalTime currentTime = LocalTime.now();
 
         // Get all trips
         List<GtfsTrip> allTrips = tripRepository.findAll();
 
-        // Calculate positions for all trips
+        // Calculate positions for the trips whose service runs today
         List<BusPosition> allPositions = allTrips.stream()
+                .filter(trip -> feedIndex.isTripActive(trip.getTripId(), today))
                 .map(trip -> positionCalculator.calculatePosition(trip, currentTime))
                 .filter(BusPosition::getIsOperational)
                 .collect(Collectors.toList());
@@ -63,6 +64,15 @@ public class GtfsBusSimulationService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * @return Whether the feed has a trip with this ID
+     */
+    public boolean hasTrip(String tripId) {
+        return feedIndex.getVersion() != 0
+                ? feedIndex.getSnapshot().tripIndex(tripId) >= 0
+                : tripRepository.existsById(tripId);
+    }
+
     @Transactional(readOnly = true)
     public BusPosition getTripPosition(String tripId) {
         LocalTime currentTime = LocalTime.now();
@@ -70,16 +80,21 @@ public class GtfsBusSimulationService {
         GtfsTrip trip = tripRepository.findById(tripId)
                 .orElseThrow(() -> new RuntimeException("Trip not found: " + tripId));
 
+        if (!feedIndex.isTripActive(tripId, LocalDate.now())) {
+            return positionCalculator.createNotOperationalPosition(trip);
+        }
         return positionCalculator.calculatePosition(trip, currentTime);
     }
 
     @Transactional(readOnly = true)
     public List<BusPosition> getActiveTripsForRoute(String routeId) {
+        LocalDate today = LocalDate.now();
         LocalTime currentTime = LocalTime.now();
 
         List<GtfsTrip> trips = tripRepository.findByRouteRouteId(routeId);
 
         return trips.stream()
+                .filter(trip -> feedIndex.isTripActive(trip.getTripId(), today))
                 .map(trip -> positionCalculator.calculatePosition(trip, currentTime))
                 .filter(BusPosition::getIsOperational)
                 .collect(Collectors.toList());
@@ -103,16 +118,6 @@ public class GtfsBusSimulationService {
                 .orElseThrow(() -> new RuntimeException("Stop not found: " + stopId));
     }
 
-    @Transactional(readOnly = true)
-    public List<GtfsStopTime> getUpcomingArrivals(String stopId, int limit) {
-        LocalTime currentTime = LocalTime.now();
-        List<GtfsStopTime> arrivals = stopTimeRepository.findUpcomingArrivals(stopId, currentTime);
-
-        return arrivals.stream()
-                .limit(limit)
-                .collect(Collectors.toList());
-    }
-
     @Transactional(readOnly = true)
     public List<GtfsTrip> getTripsForRoute(String routeId) {
         return tripRepository.findByRouteRouteId(routeId);
@@ -0,0 +1,385 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.gtfs.GtfsCalendar;
+import com.majuro.transit.model.gtfs.GtfsCalendarDate;
+import com.majuro.transit.model.gtfs.GtfsRoute;
+import com.majuro.transit.model.gtfs.GtfsStop;
+import com.majuro.transit.model.gtfs.GtfsStopTime;
+import com.majuro.transit.model.gtfs.GtfsTrip;
+import com.majuro.transit.repository.gtfs.GtfsCalendarDateRepository;
+import com.majuro.transit.repository.gtfs.GtfsCalendarRepository;
+import com.majuro.transit.repository.gtfs.GtfsRouteRepository;
+import com.majuro.transit.repository.gtfs.GtfsStopRepository;
+import com.majuro.transit.repository.gtfs.GtfsStopTimeRepository;
+import com.majuro.transit.repository.gtfs.GtfsTripRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link FeedSnapshot}. The snapshot is rebuilt from the database after every
+ * feed load and published atomically, so readers always see one consistent version of the timetable.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GtfsFeedIndex {
+
+    private final GtfsStopRepository stopRepository;
+    private final GtfsRouteRepository routeRepository;
+    private final GtfsTripRepository tripRepository;
+    private final GtfsStopTimeRepository stopTimeRepository;
+    private final GtfsCalendarRepository calendarRepository;
+    private final GtfsCalendarDateRepository calendarDateRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Calendar window: at most this many days, starting no earlier than this many days ago
+    static final int MAX_CALENDAR_DAYS = 3 * 366;
+    static final int HISTORY_DAYS = 31;
+
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile FeedSnapshot snapshot;
+
+    public FeedSnapshot getSnapshot() {
+        FeedSnapshot current = snapshot;
+        if (current == null) {
+            throw new RuntimeException("GTFS feed has not been loaded yet");
+        }
+        return current;
+    }
+
+    public long getVersion() {
+        FeedSnapshot current = snapshot;
+        return current == null ? 0 : current.getVersion();
+    }
+
+    /**
+     * @return Whether the trip runs on the given date; every trip counts as running until the feed is indexed
+     */
+    public boolean isTripActive(String tripId, LocalDate date) {
+        FeedSnapshot current = snapshot;
+        if (current == null) {
+            return true;
+        }
+        int trip = current.tripIndex(tripId);
+        return trip >= 0 && current.isTripActive(trip, date);
+    }
+
+    /**
+     * Rebuild the snapshot from the database and notify listeners of the new feed version
+     */
+    @Transactional(readOnly = true)
+    public FeedSnapshot rebuild() {
+        long startTime = System.currentTimeMillis();
+
+        // Stops
+        List<GtfsStop> stops = stopRepository.findAll();
+        String[] stopIds = new String[stops.size()];
+        String[] stopNames = new String[stops.size()];
+        double[] stopLats = new double[stops.size()];
+        double[] stopLons = new double[stops.size()];
+        Map<String, Integer> stopIndex = new HashMap<>();
+        for (int i = 0; i < stops.size(); i++) {
+            GtfsStop stop = stops.get(i);
+            stopIds[i] = stop.getStopId();
+            stopNames[i] = stop.getStopName();
+            stopLats[i] = stop.getStopLat();
+            stopLons[i] = stop.getStopLon();
+            stopIndex.put(stop.getStopId(), i);
+        }
+
+        // Routes
+        List<GtfsRoute> routes = routeRepository.findAll();
+        String[] routeIds = new String[routes.size()];
+        String[] routeShortNames = new String[routes.size()];
+        Map<String, Integer> routeIndex = new HashMap<>();
+        for (int i = 0; i < routes.size(); i++) {
+            routeIds[i] = routes.get(i).getRouteId();
+            routeShortNames[i] = routes.get(i).getRouteShortName();
+            routeIndex.put(routeIds[i], i);
+        }
+
+        // Calendar services
+        List<GtfsCalendar> calendars = calendarRepository.findAll();
+        String[] serviceIds = new String[calendars.size()];
+        Map<String, Integer> serviceIndex = new HashMap<>();
+        for (int i = 0; i < calendars.size(); i++) {
+            serviceIds[i] = calendars.get(i).getServiceId();
+            serviceIndex.put(serviceIds[i], i);
+        }
+
+        // Stop times in one query, grouped by trip and ordered by sequence
+        Map<String, List<GtfsStopTime>> stopTimesByTrip = new HashMap<>();
+        for (GtfsStopTime stopTime : stopTimeRepository.findAll()) {
+            stopTimesByTrip.computeIfAbsent(stopTime.getTrip().getTripId(), id -> new ArrayList<>()).add(stopTime);
+        }
+
+        // Trips and their stop patterns
+        List<GtfsTrip> trips = tripRepository.findAll();
+        int tripCount = trips.size();
+        String[] tripIds = new String[tripCount];
+        String[] headsigns = new String[tripCount];
+        int[] directions = new int[tripCount];
+        int[] tripRoute = new int[tripCount];
+        int[] tripService = new int[tripCount];
+        int[] tripPattern = new int[tripCount];
+        int[][] arrivals = new int[tripCount][];
+        int[][] departures = new int[tripCount][];
+        int[][] stopSequences = new int[tripCount][];
+        Map<String, Integer> tripIndex = new HashMap<>();
+        Map<String, Integer> patternIndex = new LinkedHashMap<>();
+        List<int[]> patternStops = new ArrayList<>();
+        List<Integer> patternRoute = new ArrayList<>();
+        List<Integer> patternTrip = new ArrayList<>();
+
+        for (int t = 0; t < tripCount; t++) {
+            GtfsTrip trip = trips.get(t);
+            tripIds[t] = trip.getTripId();
+            headsigns[t] = trip.getTripHeadsign();
+            directions[t] = trip.getDirectionId() == null ? 0 : trip.getDirectionId();
+            tripRoute[t] = routeIndex.getOrDefault(trip.getRoute().getRouteId(), -1);
+            tripService[t] = serviceIndex.getOrDefault(trip.getService().getServiceId(), -1);
+            tripIndex.put(trip.getTripId(), t);
+
+            List<GtfsStopTime> stopTimes = stopTimesByTrip.getOrDefault(trip.getTripId(), new ArrayList<>());
+            stopTimes.sort(Comparator.comparing(GtfsStopTime::getStopSequence));
+
+            int[] sequence = new int[stopTimes.size()];
+            List<String> sequenceIds = new ArrayList<>(stopTimes.size());
+            arrivals[t] = new int[stopTimes.size()];
+            departures[t] = new int[stopTimes.size()];
+            stopSequences[t] = new int[stopTimes.size()];
+            for (int i = 0; i < stopTimes.size(); i++) {
+                GtfsStopTime stopTime = stopTimes.get(i);
+                sequence[i] = stopIndex.get(stopTime.getStop().getStopId());
+                sequenceIds.add(stopTime.getStop().getStopId());
+                arrivals[t][i] = stopTime.getArrivalTime().toSecondOfDay();
+                departures[t][i] = stopTime.getDepartureTime().toSecondOfDay();
+                stopSequences[t][i] = stopTime.getStopSequence();
+            }
+
+            String key = RoutePathService.patternKey(trip.getRoute().getRouteId(), sequenceIds);
+            Integer pattern = patternIndex.get(key);
+            if (pattern == null) {
+                pattern = patternStops.size();
+                patternIndex.put(key, pattern);
+                patternStops.add(sequence);
+                patternRoute.add(tripRoute[t]);
+                patternTrip.add(t);
+            }
+            tripPattern[t] = pattern;
+        }
+
+        // Service calendar
+        List<GtfsCalendarDate> calendarDates = calendarDateRepository.findAll();
+        LocalDate calendarStart = calendarStart(calendars, calendarDates);
+        long[][] dayServiceBits = buildServiceDays(calendarStart, calendars, calendarDates, serviceIndex);
+        long[][] dayTripBits = buildTripDays(dayServiceBits, tripService);
+
+        // Stop boards
+        int[][] boardSeconds = new int[stopIds.length][];
+        int[][] boardTrips = new int[stopIds.length][];
+        int[][] boardPositions = new int[stopIds.length][];
+        buildStopBoards(patternStops, tripPattern, arrivals, boardSeconds, boardTrips, boardPositions);
+
+        FeedSnapshot rebuilt = FeedSnapshot.builder()
+                .version(versionCounter.incrementAndGet())
+                .stopIds(stopIds)
+                .stopNames(stopNames)
+                .stopLats(stopLats)
+                .stopLons(stopLons)
+                .stopIndexById(Map.copyOf(stopIndex))
+                .routeIds(routeIds)
+                .routeShortNames(routeShortNames)
+                .routeIndexById(Map.copyOf(routeIndex))
+                .serviceIds(serviceIds)
+                .serviceIndexById(Map.copyOf(serviceIndex))
+                .tripIds(tripIds)
+                .tripHeadsigns(headsigns)
+                .tripDirections(directions)
+                .tripRoute(tripRoute)
+                .tripService(tripService)
+                .tripPattern(tripPattern)
+                .tripArrivalSeconds(arrivals)
+                .tripDepartureSeconds(departures)
+                .tripStopSequences(stopSequences)
+                .tripIndexById(Map.copyOf(tripIndex))
+                .patternKeys(patternIndex.keySet().toArray(new String[0]))
+                .patternRoute(patternRoute.stream().mapToInt(Integer::intValue).toArray())
+                .patternStops(patternStops.toArray(new int[0][]))
+                .patternRepresentativeTrip(patternTrip.stream().mapToInt(Integer::intValue).toArray())
+                .patternIndexByKey(Map.copyOf(patternIndex))
+                .calendarStart(calendarStart)
+                .dayServiceBits(dayServiceBits)
+                .dayTripBits(dayTripBits)
+                .stopBoardSeconds(boardSeconds)
+                .stopBoardTrips(boardTrips)
+                .stopBoardPositions(boardPositions)
+                .build();
+
+        snapshot = rebuilt;
+        log.info("Indexed GTFS feed version {}: {} stops, {} trips, {} stop patterns in {} ms",
+                rebuilt.getVersion(), stopIds.length, tripCount, rebuilt.patternCount(),
+                System.currentTimeMillis() - startTime);
+
+        eventPublisher.publishEvent(new GtfsFeedLoadedEvent(rebuilt.getVersion()));
+        return rebuilt;
+    }
+
+    /**
+     * First day of the calendar window, or null if the feed has no calendar. Feeds valid for many
+     * years are windowed to start shortly before today.
+     */
+    static LocalDate calendarStart(List<GtfsCalendar> calendars, List<GtfsCalendarDate> calendarDates) {
+        LocalDate start = null;
+        for (GtfsCalendar calendar : calendars) {
+            start = start == null || calendar.getStartDate().isBefore(start) ? calendar.getStartDate() : start;
+        }
+        for (GtfsCalendarDate calendarDate : calendarDates) {
+            start = start == null || calendarDate.getDate().isBefore(start) ? calendarDate.getDate() : start;
+        }
+        LocalDate earliest = LocalDate.now().minusDays(HISTORY_DAYS);
+        return start == null || start.isAfter(earliest) ? start : earliest;
+    }
+
+    /**
+     * Per day from the window start, a bitset of the services running that day: the weekly
+     * pattern within each calendar's date range, then the calendar_dates additions and removals
+     */
+    static long[][] buildServiceDays(LocalDate start, List<GtfsCalendar> calendars,
+                                     List<GtfsCalendarDate> calendarDates, Map<String, Integer> serviceIndex) {
+        if (start == null) {
+            return new long[0][];
+        }
+        LocalDate end = start;
+        for (GtfsCalendar calendar : calendars) {
+            end = calendar.getEndDate().isAfter(end) ? calendar.getEndDate() : end;
+        }
+        for (GtfsCalendarDate calendarDate : calendarDates) {
+            end = calendarDate.getDate().isAfter(end) ? calendarDate.getDate() : end;
+        }
+        int days = (int) Math.min(MAX_CALENDAR_DAYS, end.toEpochDay() - start.toEpochDay() + 1);
+        int words = (serviceIndex.size() + 63) >>> 6;
+        long[][] bits = new long[days][words];
+
+        for (GtfsCalendar calendar : calendars) {
+            int service = serviceIndex.get(calendar.getServiceId());
+            long from = Math.max(0, calendar.getStartDate().toEpochDay() - start.toEpochDay());
+            long to = Math.min(days - 1, calendar.getEndDate().toEpochDay() - start.toEpochDay());
+            for (long day = from; day <= to; day++) {
+                if (runsOn(calendar, start.plusDays(day).getDayOfWeek())) {
+                    bits[(int) day][service >>> 6] |= 1L << service;
+                }
+            }
+        }
+
+        for (GtfsCalendarDate calendarDate : calendarDates) {
+            Integer service = serviceIndex.get(calendarDate.getServiceId());
+            long day = calendarDate.getDate().toEpochDay() - start.toEpochDay();
+            if (service == null || day < 0 || day >= days) {
+                continue;
+            }
+            if (calendarDate.getExceptionType() == GtfsCalendarDate.SERVICE_ADDED) {
+                bits[(int) day][service >>> 6] |= 1L << service;
+            } else if (calendarDate.getExceptionType() == GtfsCalendarDate.SERVICE_REMOVED) {
+                bits[(int) day][service >>> 6] &= ~(1L << service);
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Per day, a bitset of the trips whose service runs that day
+     */
+    static long[][] buildTripDays(long[][] dayServiceBits, int[] tripService) {
+        int words = (tripService.length + 63) >>> 6;
+        long[][] bits = new long[dayServiceBits.length][words];
+        for (int day = 0; day < bits.length; day++) {
+            long[] services = dayServiceBits[day];
+            for (int trip = 0; trip < tripService.length; trip++) {
+                int service = tripService[trip];
+                if (service >= 0 && (services[service >>> 6] & (1L << service)) != 0) {
+                    bits[day][trip >>> 6] |= 1L << trip;
+                }
+            }
+        }
+        return bits;
+    }
+
+    private static boolean runsOn(GtfsCalendar calendar, DayOfWeek day) {
+        return switch (day) {
+            case MONDAY -> calendar.getMonday();
+            case TUESDAY -> calendar.getTuesday();
+            case WEDNESDAY -> calendar.getWednesday();
+            case THURSDAY -> calendar.getThursday();
+            case FRIDAY -> calendar.getFriday();
+            case SATURDAY -> calendar.getSaturday();
+            case SUNDAY -> calendar.getSunday();
+        };
+    }
+
+    /**
+     * Fill the per-stop arrays of calls sorted by arrival time. Each call is packed into a long
+     * (arrival seconds in the high half, trip and position in the low half) so a plain primitive
+     * sort orders them.
+     */
+    private static void buildStopBoards(List<int[]> patternStops, int[] tripPattern, int[][] arrivals,
+                                        int[][] boardSeconds, int[][] boardTrips, int[][] boardPositions) {
+        int[] counts = new int[boardSeconds.length];
+        for (int t = 0; t < tripPattern.length; t++) {
+            for (int stop : patternStops.get(tripPattern[t])) {
+                counts[stop]++;
+            }
+        }
+
+        int[][] tripOfCall = new int[counts.length][];
+        int[][] positionOfCall = new int[counts.length][];
+        long[][] keys = new long[counts.length][];
+        for (int s = 0; s < counts.length; s++) {
+            tripOfCall[s] = new int[counts[s]];
+            positionOfCall[s] = new int[counts[s]];
+            keys[s] = new long[counts[s]];
+        }
+
+        int[] filled = new int[counts.length];
+        for (int t = 0; t < tripPattern.length; t++) {
+            int[] stops = patternStops.get(tripPattern[t]);
+            for (int i = 0; i < stops.length; i++) {
+                int s = stops[i];
+                int call = filled[s]++;
+                tripOfCall[s][call] = t;
+                positionOfCall[s][call] = i;
+                keys[s][call] = ((long) arrivals[t][i] << 32) | call;
+            }
+        }
+
+        for (int s = 0; s < counts.length; s++) {
+            long[] sorted = keys[s];
+            Arrays.sort(sorted);
+            boardSeconds[s] = new int[sorted.length];
+            boardTrips[s] = new int[sorted.length];
+            boardPositions[s] = new int[sorted.length];
+            for (int k = 0; k < sorted.length; k++) {
+                int call = (int) sorted[k];
+                boardSeconds[s][k] = (int) (sorted[k] >>> 32);
+                boardTrips[s][k] = tripOfCall[s][call];
+                boardPositions[s][k] = positionOfCall[s][call];
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.majuro.transit.model.BusPosition;
 import com.majuro.transit.model.RouteImpact;
 import com.majuro.transit.model.gtfs.GtfsStopTime;
 import com.majuro.transit.model.gtfs.GtfsTrip;
+import com.majuro.transit.spatial.RouteGeometry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -18,7 +19,8 @@ import java.util.List;
 public class GtfsPositionCalculator {
 
     private final RoutePathService routePathService;
-    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
+    private final DelayPropagationService delayPropagationService;
 
     public BusPosition calculatePosition(GtfsTrip trip, LocalTime currentTime) {
         List<GtfsStopTime> stopTimes = trip.getStopTimes();
@@ -30,6 +32,7 @@ public class GtfsPositionCalculator {
         // Find current position in schedule
         GtfsStopTime previousStop = null;
         GtfsStopTime nextStop = null;
+        int previousIndex = -1;
 
         for (int i = 0; i < stopTimes.size(); i++) {
             GtfsStopTime stopTime = stopTimes.get(i);
@@ -38,6 +41,7 @@ public class GtfsPositionCalculator {
                 nextStop = stopTime;
                 if (i > 0) {
                     previousStop = stopTimes.get(i - 1);
+                    previousIndex = i - 1;
                 }
                 break;
             }
@@ -59,10 +63,10 @@ public class GtfsPositionCalculator {
         }
 
         // Calculate position between previous and next stop
-        return calculateIntermediatePosition(trip, previousStop, nextStop, currentTime);
+        return calculateIntermediatePosition(trip, previousIndex, previousStop, nextStop, currentTime);
     }
 
-    private BusPosition calculateIntermediatePosition(GtfsTrip trip, GtfsStopTime from, GtfsStopTime to, LocalTime currentTime) {
+    private BusPosition calculateIntermediatePosition(GtfsTrip trip, int fromIndex, GtfsStopTime from, GtfsStopTime to, LocalTime currentTime) {
         BusPosition position = new BusPosition();
         position.setBusId(generateBusId(trip.getTripId()));
         position.setBusLabel(trip.getTripId());
@@ -81,7 +85,7 @@ public class GtfsPositionCalculator {
         position.setProgressPercent(progressRatio * 100);
 
         // Calculate position along road path
-        double[] coordinates = calculatePositionOnRoadPath(trip, from, to, progressRatio);
+        double[] coordinates = calculatePositionOnRoadPath(trip, fromIndex, from, to, progressRatio);
         position.setCurrentLatitude(coordinates[0]);
         position.setCurrentLongitude(coordinates[1]);
 
@@ -94,37 +98,33 @@ public class GtfsPositionCalculator {
         int minutesToNext = (int) Math.max(0, (secondsToNext + 59) / 60); // Round up
 
         // Apply tidal impact (this will set minutesToNextStop and estimatedArrivalTime)
-        applyTidalImpact(position, trip.getRoute().getRouteId(), minutesToNext, currentTime);
+        applyTidalImpact(position, trip, fromIndex, minutesToNext, currentTime);
 
         return position;
     }
 
     /**
-     * Calculate bus position along the road path between two stops
+     * Calculate bus position along the road path between two stops.
+     * The pattern's linear-referencing table gives both stops' distances along the route,
+     * so the position is a single interpolation rather than a walk over the polyline.
      */
-    private double[] calculatePositionOnRoadPath(GtfsTrip trip, GtfsStopTime from, GtfsStopTime to, double progressRatio) {
+    private double[] calculatePositionOnRoadPath(GtfsTrip trip, int fromIndex, GtfsStopTime from, GtfsStopTime to, double progressRatio) {
         try {
-            // Get the full route path
-            List<RoutePathService.RoutePathPoint> fullPath = routePathService.generateRoutePath(trip, null);
+            RouteGeometry geometry = routePathService.getRouteGeometry(trip);
 
-            // Find the segment between these two stops
-            List<RoutePathService.RoutePathPoint> segmentPath = extractSegmentBetweenStops(
-                fullPath,
-                from.getStop().getStopId(),
-                to.getStop().getStopId()
-            );
-
-            if (segmentPath.isEmpty() || segmentPath.size() < 2) {
+            if (geometry == null || geometry.vertexCount() < 2 || fromIndex + 1 >= geometry.stopCount()) {
                 // Fallback to simple linear interpolation
                 return linearInterpolate(from, to, progressRatio);
             }
 
-            // Calculate total distance of segment
-            double totalDistance = calculateSegmentDistance(segmentPath);
+            double startDistance = geometry.stopDistanceKm(fromIndex);
+            double endDistance = geometry.stopDistanceKm(fromIndex + 1);
+            if (endDistance <= startDistance) {
+                return linearInterpolate(from, to, progressRatio);
+            }
 
             // Find position along the path based on progress ratio
-            double targetDistance = totalDistance * progressRatio;
-            return findPositionAtDistance(segmentPath, targetDistance);
+            return geometry.pointAtDistance(startDistance + (endDistance - startDistance) * progressRatio);
 
         } catch (Exception e) {
             log.warn("Error calculating road path position, falling back to linear interpolation: {}", e.getMessage());
@@ -132,82 +132,6 @@ public class GtfsPositionCalculator {
         }
     }
 
-    /**
-     * Extract the path segment between two stops
-     */
-    private List<RoutePathService.RoutePathPoint> extractSegmentBetweenStops(
-            List<RoutePathService.RoutePathPoint> fullPath,
-            String fromStopId,
-            String toStopId) {
-
-        int fromIndex = -1;
-        int toIndex = -1;
-
-        for (int i = 0; i < fullPath.size(); i++) {
-            RoutePathService.RoutePathPoint point = fullPath.get(i);
-            if (fromStopId.equals(point.stopId())) {
-                fromIndex = i;
-            }
-            if (toStopId.equals(point.stopId()) && fromIndex >= 0) {
-                toIndex = i;
-                break;
-            }
-        }
-
-        if (fromIndex >= 0 && toIndex > fromIndex) {
-            return fullPath.subList(fromIndex, toIndex + 1);
-        }
-
-        return List.of();
-    }
-
-    /**
-     * Calculate total distance of a path segment
-     */
-    private double calculateSegmentDistance(List<RoutePathService.RoutePathPoint> segment) {
-        double distance = 0.0;
-        for (int i = 1; i < segment.size(); i++) {
-            RoutePathService.RoutePathPoint prev = segment.get(i - 1);
-            RoutePathService.RoutePathPoint curr = segment.get(i);
-            distance += haversineDistance(
-                prev.latitude(), prev.longitude(),
-                curr.latitude(), curr.longitude()
-            );
-        }
-        return distance;
-    }
-
-    /**
-     * Find position along path at a specific distance
-     */
-    private double[] findPositionAtDistance(List<RoutePathService.RoutePathPoint> segment, double targetDistance) {
-        double accumulatedDistance = 0.0;
-
-        for (int i = 1; i < segment.size(); i++) {
-            RoutePathService.RoutePathPoint prev = segment.get(i - 1);
-            RoutePathService.RoutePathPoint curr = segment.get(i);
-
-            double segmentDist = haversineDistance(
-                prev.latitude(), prev.longitude(),
-                curr.latitude(), curr.longitude()
-            );
-
-            if (accumulatedDistance + segmentDist >= targetDistance) {
-                // Target is within this segment
-                double ratio = (targetDistance - accumulatedDistance) / segmentDist;
-                double lat = prev.latitude() + (curr.latitude() - prev.latitude()) * ratio;
-                double lon = prev.longitude() + (curr.longitude() - prev.longitude()) * ratio;
-                return new double[]{lat, lon};
-            }
-
-            accumulatedDistance += segmentDist;
-        }
-
-        // If we've gone past the end, return the last point
-        RoutePathService.RoutePathPoint lastPoint = segment.get(segment.size() - 1);
-        return new double[]{lastPoint.latitude(), lastPoint.longitude()};
-    }
-
     /**
      * Simple linear interpolation fallback
      */
@@ -222,24 +146,6 @@ public class GtfsPositionCalculator {
         return new double[]{lat, lon};
     }
 
-    /**
-     * Calculate Haversine distance between two points in kilometers
-     */
-    private double haversineDistance(double lat1, double lon1, double lat2, double lon2) {
-        final double EARTH_RADIUS_KM = 6371.0;
-
-        double dLat = Math.toRadians(lat2 - lat1);
-        double dLon = Math.toRadians(lon2 - lon1);
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
-                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return EARTH_RADIUS_KM * c;
-    }
-
     private BusPosition createAtStopPosition(GtfsTrip trip, GtfsStopTime current, GtfsStopTime next) {
         BusPosition position = new BusPosition();
         position.setBusId(generateBusId(trip.getTripId()));
@@ -261,7 +167,7 @@ public class GtfsPositionCalculator {
         int minutesToNext = (int) Math.max(0, (secondsToNext + 59) / 60);
 
         // Apply tidal impact
-        applyTidalImpact(position, trip.getRoute().getRouteId(), minutesToNext, currentTime);
+        applyTidalImpact(position, trip, 0, minutesToNext, currentTime);
 
         return position;
     }
@@ -290,7 +196,10 @@ public class GtfsPositionCalculator {
         return position;
     }
 
-    private BusPosition createNotOperationalPosition(GtfsTrip trip) {
+    /**
+     * Position of a trip that is not running, e.g. because its service does not operate today
+     */
+    public BusPosition createNotOperationalPosition(GtfsTrip trip) {
         BusPosition position = new BusPosition();
         position.setBusId(generateBusId(trip.getTripId()));
         position.setBusLabel(trip.getTripId());
@@ -325,17 +234,22 @@ public class GtfsPositionCalculator {
 
     /**
      * Apply tidal impact to bus position
+     * @param segmentIndex Index of the stop the bus is travelling from within the trip
      */
-    private void applyTidalImpact(BusPosition position, String routeId, int baseMinutesToNext, LocalTime currentTime) {
+    private void applyTidalImpact(BusPosition position, GtfsTrip trip, int segmentIndex, int baseMinutesToNext, LocalTime currentTime) {
         try {
-            RouteImpact impact = tidalImpactCalculator.calculateImpact(routeId);
+            RouteImpact impact = routeImpactCache.getImpact(trip.getRoute().getRouteId());
 
             if (impact.getImpactLevel() != RouteImpact.ImpactLevel.NONE) {
-                // Apply delay multiplier
-                int adjustedMinutes = (int) Math.ceil(baseMinutesToNext * impact.getDelayMultiplier());
+                // Slow the current hop only if its segment is affected; report the delay accumulated by the next stop
+                double segmentFactor = delayPropagationService.getSegmentFactor(trip.getTripId(), segmentIndex);
+                int[] delaySeconds = delayPropagationService.getStopDelaySeconds(trip.getTripId());
+                int nextStopDelay = segmentIndex + 1 < delaySeconds.length ? delaySeconds[segmentIndex + 1] : 0;
+
+                int adjustedMinutes = (int) Math.ceil(baseMinutesToNext * segmentFactor);
                 position.setMinutesToNextStop(adjustedMinutes);
                 position.setTidalDelayApplied(true);
-                position.setEstimatedDelayMinutes(impact.getEstimatedDelayMinutes());
+                position.setEstimatedDelayMinutes((nextStopDelay + 59) / 60);
                 position.setTidalImpactLevel(impact.getImpactLevel().name());
 
                 // Calculate estimated arrival time
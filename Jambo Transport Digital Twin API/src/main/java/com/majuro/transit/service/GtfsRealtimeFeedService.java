@@ -0,0 +1,256 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.dto.BusPositionDTO;
+import com.majuro.transit.dto.StopDTO;
+import com.majuro.transit.event.FleetTickEvent;
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.realtime.ProtobufWriter;
+import com.majuro.transit.service.DelayPropagationService.DelayTable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * GTFS-Realtime VehiclePositions and TripUpdates feeds. Both are encoded to protobuf once per
+ * fleet tick, and again when the propagated tidal delays change, so serving a request only hands
+ * out the current byte array and its ETag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class GtfsRealtimeFeedService {
+
+    private static final String GTFS_REALTIME_VERSION = "2.0";
+
+    // FeedMessage, FeedHeader and FeedEntity field numbers
+    private static final int MESSAGE_HEADER = 1;
+    private static final int MESSAGE_ENTITY = 2;
+    private static final int HEADER_VERSION = 1;
+    private static final int HEADER_INCREMENTALITY = 2;
+    private static final int HEADER_TIMESTAMP = 3;
+    private static final int ENTITY_ID = 1;
+    private static final int ENTITY_TRIP_UPDATE = 3;
+    private static final int ENTITY_VEHICLE = 4;
+
+    // TripDescriptor and VehicleDescriptor
+    private static final int TRIP_ID = 1;
+    private static final int TRIP_START_DATE = 3;
+    private static final int TRIP_SCHEDULE_RELATIONSHIP = 4;
+    private static final int TRIP_ROUTE_ID = 5;
+    private static final int TRIP_DIRECTION_ID = 6;
+    private static final int VEHICLE_DESCRIPTOR_ID = 1;
+    private static final int VEHICLE_DESCRIPTOR_LABEL = 2;
+
+    // VehiclePosition and Position
+    private static final int VEHICLE_TRIP = 1;
+    private static final int VEHICLE_POSITION = 2;
+    private static final int VEHICLE_CURRENT_STATUS = 4;
+    private static final int VEHICLE_TIMESTAMP = 5;
+    private static final int VEHICLE_STOP_ID = 7;
+    private static final int VEHICLE_VEHICLE = 8;
+    private static final int POSITION_LATITUDE = 1;
+    private static final int POSITION_LONGITUDE = 2;
+
+    // TripUpdate, StopTimeUpdate and StopTimeEvent
+    private static final int UPDATE_TRIP = 1;
+    private static final int UPDATE_STOP_TIME_UPDATE = 2;
+    private static final int UPDATE_VEHICLE = 3;
+    private static final int UPDATE_TIMESTAMP = 4;
+    private static final int STOP_TIME_STOP_SEQUENCE = 1;
+    private static final int STOP_TIME_ARRIVAL = 2;
+    private static final int STOP_TIME_DEPARTURE = 3;
+    private static final int STOP_TIME_STOP_ID = 4;
+    private static final int EVENT_DELAY = 1;
+
+    // Enum values
+    private static final int FULL_DATASET = 0;
+    private static final int STOPPED_AT = 1;
+    private static final int IN_TRANSIT_TO = 2;
+    private static final int SCHEDULED = 0;
+    private static final int CANCELED = 3;
+
+    private final FleetSnapshotService fleetSnapshotService;
+    private final DelayPropagationService delayPropagationService;
+
+    private volatile Feeds feeds;
+
+    @EventListener(FleetTickEvent.class)
+    public void onFleetTick() {
+        try {
+            encode();
+        } catch (RuntimeException e) {
+            log.debug("GTFS-Realtime feeds not encoded: {}", e.getMessage());
+        }
+    }
+
+    public EncodedFeed getVehiclePositions() {
+        return currentFeeds().vehiclePositions;
+    }
+
+    public EncodedFeed getTripUpdates() {
+        return currentFeeds().tripUpdates;
+    }
+
+    private Feeds currentFeeds() {
+        Feeds current = feeds;
+        if (current != null && current.fleetVersion == fleetSnapshotService.getVersion()
+                && current.delays == delayPropagationService.getDelayTable()) {
+            return current;
+        }
+        return encode();
+    }
+
+    private synchronized Feeds encode() {
+        List<BusPositionDTO> positions = fleetSnapshotService.getActivePositions();
+        long fleetVersion = fleetSnapshotService.getVersion();
+        DelayTable delays = delayPropagationService.getDelayTable();
+        Feeds current = feeds;
+        if (current != null && current.fleetVersion == fleetVersion && current.delays == delays) {
+            return current;
+        }
+
+        long timestamp = System.currentTimeMillis() / 1000;
+        String startDate = LocalDate.now().format(DateTimeFormatter.BASIC_ISO_DATE);
+        String tag = Long.toHexString(fleetVersion) + "-" + delays.impacts().version() + "-" + delays.snapshot().getVersion();
+
+        ProtobufWriter vehicles = feedMessage(timestamp, positions.size());
+        ProtobufWriter tripUpdates = feedMessage(timestamp, positions.size());
+        for (BusPositionDTO position : positions) {
+            int trip = delays.snapshot().tripIndex(position.getBusLabel());
+            if (trip < 0) {
+                continue;
+            }
+            ProtobufWriter vehicle = vehiclePosition(delays.snapshot(), trip, position, startDate, timestamp);
+            if (vehicle != null) {
+                vehicles.writeMessage(MESSAGE_ENTITY, entity(position.getBusLabel(), ENTITY_VEHICLE, vehicle));
+            }
+            tripUpdates.writeMessage(MESSAGE_ENTITY, entity(position.getBusLabel(), ENTITY_TRIP_UPDATE,
+                    tripUpdate(delays, trip, position, startDate, timestamp)));
+        }
+
+        Feeds encoded = new Feeds(fleetVersion, delays,
+                new EncodedFeed(vehicles.toByteArray(), "\"vp-" + tag + "\"", timestamp),
+                new EncodedFeed(tripUpdates.toByteArray(), "\"tu-" + tag + "\"", timestamp));
+        feeds = encoded;
+        log.debug("Encoded GTFS-Realtime feeds for {} vehicles ({} and {} bytes)", positions.size(),
+                encoded.vehiclePositions.bytes().length, encoded.tripUpdates.bytes().length);
+        return encoded;
+    }
+
+    private static ProtobufWriter feedMessage(long timestamp, int entities) {
+        ProtobufWriter header = new ProtobufWriter();
+        header.writeString(HEADER_VERSION, GTFS_REALTIME_VERSION);
+        header.writeEnum(HEADER_INCREMENTALITY, FULL_DATASET);
+        header.writeUInt64(HEADER_TIMESTAMP, timestamp);
+
+        ProtobufWriter message = new ProtobufWriter(64 + entities * 128);
+        message.writeMessage(MESSAGE_HEADER, header);
+        return message;
+    }
+
+    private static ProtobufWriter entity(String id, int field, ProtobufWriter payload) {
+        ProtobufWriter entity = new ProtobufWriter(payload.size() + 32);
+        entity.writeString(ENTITY_ID, id);
+        entity.writeMessage(field, payload);
+        return entity;
+    }
+
+    private static ProtobufWriter tripDescriptor(FeedSnapshot snapshot, int trip, String startDate, boolean canceled) {
+        ProtobufWriter descriptor = new ProtobufWriter();
+        descriptor.writeString(TRIP_ID, snapshot.getTripIds()[trip]);
+        descriptor.writeString(TRIP_START_DATE, startDate);
+        descriptor.writeEnum(TRIP_SCHEDULE_RELATIONSHIP, canceled ? CANCELED : SCHEDULED);
+        int route = snapshot.getTripRoute()[trip];
+        if (route >= 0) {
+            descriptor.writeString(TRIP_ROUTE_ID, snapshot.getRouteIds()[route]);
+        }
+        if (snapshot.getTripDirections()[trip] >= 0) {
+            descriptor.writeUInt64(TRIP_DIRECTION_ID, snapshot.getTripDirections()[trip]);
+        }
+        return descriptor;
+    }
+
+    private static ProtobufWriter vehicleDescriptor(BusPositionDTO position) {
+        ProtobufWriter descriptor = new ProtobufWriter();
+        if (position.getBusId() != null) {
+            descriptor.writeString(VEHICLE_DESCRIPTOR_ID, position.getBusId().toString());
+        }
+        descriptor.writeString(VEHICLE_DESCRIPTOR_LABEL, position.getBusLabel());
+        return descriptor;
+    }
+
+    private static ProtobufWriter vehiclePosition(FeedSnapshot snapshot, int trip, BusPositionDTO position,
+                                                  String startDate, long timestamp) {
+        if (position.getCurrentLatitude() == null || position.getCurrentLongitude() == null) {
+            return null;
+        }
+        ProtobufWriter coordinates = new ProtobufWriter(16);
+        coordinates.writeFloat(POSITION_LATITUDE, position.getCurrentLatitude().floatValue());
+        coordinates.writeFloat(POSITION_LONGITUDE, position.getCurrentLongitude().floatValue());
+
+        boolean moving = "MOVING".equals(position.getStatus());
+        StopDTO stop = moving ? position.getNextStop() : position.getCurrentStop();
+
+        ProtobufWriter vehicle = new ProtobufWriter();
+        vehicle.writeMessage(VEHICLE_TRIP, tripDescriptor(snapshot, trip, startDate, false));
+        vehicle.writeMessage(VEHICLE_POSITION, coordinates);
+        vehicle.writeEnum(VEHICLE_CURRENT_STATUS, moving ? IN_TRANSIT_TO : STOPPED_AT);
+        vehicle.writeUInt64(VEHICLE_TIMESTAMP, timestamp);
+        if (stop != null) {
+            vehicle.writeString(VEHICLE_STOP_ID, stop.getId());
+        }
+        vehicle.writeMessage(VEHICLE_VEHICLE, vehicleDescriptor(position));
+        return vehicle;
+    }
+
+    /**
+     * Trip update with the propagated tidal delays. Consumers carry a stop's delay forward to the
+     * following stops, so only the stops where the accumulated delay changes are listed; trips on
+     * routes shut down by the tide are canceled. Each stop carries its stop_sequence, since loop
+     * trips visit their terminal twice.
+     */
+    private static ProtobufWriter tripUpdate(DelayTable delays, int trip, BusPositionDTO position,
+                                             String startDate, long timestamp) {
+        FeedSnapshot snapshot = delays.snapshot();
+        int route = snapshot.getTripRoute()[trip];
+        RouteImpact impact = route < 0 ? null : delays.impacts().byRoute().get(snapshot.getRouteIds()[route]);
+        boolean canceled = impact != null && impact.getImpactLevel() == RouteImpact.ImpactLevel.SHUTDOWN;
+
+        ProtobufWriter update = new ProtobufWriter();
+        update.writeMessage(UPDATE_TRIP, tripDescriptor(snapshot, trip, startDate, canceled));
+        if (!canceled) {
+            int[] stops = snapshot.getPatternStops()[snapshot.getTripPattern()[trip]];
+            int[] stopDelays = delays.tripDelaySeconds()[trip];
+            int[] stopSequences = snapshot.getTripStopSequences()[trip];
+            for (int i = 0; i < stopDelays.length && i < stops.length; i++) {
+                if (i > 0 && stopDelays[i] == stopDelays[i - 1]) {
+                    continue;
+                }
+                ProtobufWriter event = new ProtobufWriter(8);
+                event.writeInt32(EVENT_DELAY, stopDelays[i]);
+                ProtobufWriter stopTime = new ProtobufWriter(32);
+                stopTime.writeUInt64(STOP_TIME_STOP_SEQUENCE, stopSequences[i]);
+                stopTime.writeMessage(STOP_TIME_ARRIVAL, event);
+                stopTime.writeMessage(STOP_TIME_DEPARTURE, event);
+                stopTime.writeString(STOP_TIME_STOP_ID, snapshot.getStopIds()[stops[i]]);
+                update.writeMessage(UPDATE_STOP_TIME_UPDATE, stopTime);
+            }
+        }
+        update.writeMessage(UPDATE_VEHICLE, vehicleDescriptor(position));
+        update.writeUInt64(UPDATE_TIMESTAMP, timestamp);
+        return update;
+    }
+
+    /**
+     * Feed bytes with the ETag identifying their content
+     */
+    public record EncodedFeed(byte[] bytes, String etag, long timestamp) {}
+
+    private record Feeds(long fleetVersion, DelayTable delays, EncodedFeed vehiclePositions, EncodedFeed tripUpdates) {}
+}
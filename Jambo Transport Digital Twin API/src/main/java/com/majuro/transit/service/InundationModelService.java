@@ -0,0 +1,253 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.RouteSegmentOrientation;
+import com.majuro.transit.model.RouteSegmentOrientation.Orientation;
+import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.spatial.ElevationGrid;
+import com.majuro.transit.spatial.RouteGeometry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Segment-level inundation model. Ground elevation is sampled from an elevation raster at fixed
+ * spacing along each inter-stop segment of the cached road geometry, once per geometry version.
+ * For each reading the flood depth of every segment is then computed in parallel from those
+ * samples; the result for the latest reading is cached.
+ * <p>
+ * When no raster is configured the model is disabled and impact falls back to comparing wave
+ * height against the atoll's maximum elevation.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InundationModelService {
+
+    private final RouteOrientationService orientationService;
+    private final RoutePathService routePathService;
+
+    @Value("${transit.inundation.grid-path:elevation/majuro.flt}")
+    private String gridPath;
+
+    @Value("${transit.inundation.sample-spacing-meters:20}")
+    private double sampleSpacingMeters;
+
+    // Used where the raster has no data
+    @Value("${transit.inundation.fallback-elevation:3.0}")
+    private double fallbackElevation;
+
+    // Share of the wave height that reaches roads on the side facing away from the waves
+    @Value("${transit.inundation.sheltered-factor:0.5}")
+    private double shelteredFactor;
+
+    // Flood depth at which a segment is considered at full risk
+    @Value("${transit.inundation.full-risk-depth-meters:0.5}")
+    private double fullRiskDepthMeters;
+
+    private volatile ElevationGrid grid;
+    private volatile SegmentProfiles profiles;
+    private volatile Assessment lastAssessment;
+
+    @PostConstruct
+    public void loadGrid() {
+        Path path = Path.of(gridPath);
+        if (!Files.exists(path)) {
+            log.info("No elevation grid at {}; using constant {}m elevation for inundation", gridPath, fallbackElevation);
+            return;
+        }
+        try {
+            grid = ElevationGrid.open(path);
+            log.info("Mapped {}x{} elevation grid from {}", grid.columns(), grid.rows(), gridPath);
+        } catch (Exception e) {
+            log.error("Failed to load elevation grid {}: {}", gridPath, e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return grid != null;
+    }
+
+    /**
+     * Flood assessment of every segment of a route for a reading
+     */
+    public List<SegmentInundation> assessRoute(String routeId, TidalReading reading) {
+        return assess(reading).byRoute.getOrDefault(routeId, List.of());
+    }
+
+    /**
+     * Flood assessment of every segment for a reading, computed in parallel
+     */
+    public List<SegmentInundation> assessAll(TidalReading reading) {
+        return assess(reading).all;
+    }
+
+    /**
+     * Flood assessment of every segment for a hypothetical reading, grouped by route. Unlike
+     * {@link #assessRoute} the result is not cached, so evaluating many readings leaves the cached
+     * assessment of the live reading in place.
+     */
+    public Map<String, List<SegmentInundation>> assessByRoute(TidalReading reading) {
+        return compute(reading, currentProfiles()).byRoute;
+    }
+
+    /**
+     * Whether waves from the given direction reach the exposed side of a segment. Orientations
+     * name the direction the ocean side of the road faces, so north-facing segments take
+     * northerly waves and south-facing segments southerly waves.
+     */
+    static boolean isExposed(Orientation orientation, double waveDegrees) {
+        boolean isNortherlyWave = waveDegrees >= 315 || waveDegrees < 45;
+        boolean isSoutherlyWave = waveDegrees >= 135 && waveDegrees < 225;
+        return (orientation == Orientation.NORTH_FACING && isNortherlyWave)
+                || (orientation == Orientation.SOUTH_FACING && isSoutherlyWave);
+    }
+
+    /**
+     * Water level a reading drives onto a segment: the full wave height on the exposed side, a
+     * sheltered share of it on the other
+     */
+    double waterLevel(Orientation orientation, TidalReading reading) {
+        boolean exposed = isExposed(orientation, reading.getWaveDirection());
+        return reading.getWaveHeight() * (exposed ? 1.0 : shelteredFactor);
+    }
+
+    private Assessment assess(TidalReading reading) {
+        SegmentProfiles currentProfiles = currentProfiles();
+        Assessment current = lastAssessment;
+        if (current != null && current.reading == reading && current.profiles == currentProfiles) {
+            return current;
+        }
+
+        Assessment assessed = compute(reading, currentProfiles);
+        lastAssessment = assessed;
+        return assessed;
+    }
+
+    private Assessment compute(TidalReading reading, SegmentProfiles currentProfiles) {
+        List<SegmentInundation> all = currentProfiles.segments.parallelStream()
+                .map(profile -> profile.assess(reading))
+                .toList();
+        Map<String, List<SegmentInundation>> byRoute = all.stream()
+                .collect(Collectors.groupingBy(SegmentInundation::routeId));
+        return new Assessment(reading, currentProfiles, all, byRoute);
+    }
+
+    private SegmentProfiles currentProfiles() {
+        long version = routePathService.getCacheVersion();
+        SegmentProfiles current = profiles;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (profiles == null || profiles.version != version) {
+                profiles = buildProfiles(version);
+            }
+            return profiles;
+        }
+    }
+
+    private SegmentProfiles buildProfiles(long version) {
+        List<SegmentProfile> segments = new ArrayList<>();
+        ElevationGrid elevation = grid;
+        for (RouteSegmentOrientation segment : orientationService.getAllOrientations()) {
+            RouteGeometry geometry = routePathService.getCachedGeometry(segment.getPatternKey());
+            if (geometry == null || elevation == null) {
+                continue;
+            }
+
+            double startKm = geometry.stopDistanceKm(segment.getSegmentIndex());
+            double endKm = geometry.stopDistanceKm(segment.getSegmentIndex() + 1);
+            int samples = Math.max(2, (int) Math.ceil((endKm - startKm) * 1000.0 / sampleSpacingMeters) + 1);
+            float[] elevations = new float[samples];
+            for (int i = 0; i < samples; i++) {
+                double[] point = geometry.pointAtDistance(startKm + (endKm - startKm) * i / (samples - 1));
+                double ground = elevation.elevation(point[0], point[1]);
+                elevations[i] = (float) (Double.isNaN(ground) ? fallbackElevation : ground);
+            }
+            segments.add(new SegmentProfile(segment, elevations));
+        }
+        log.info("Sampled elevation profiles for {} route segments", segments.size());
+        return new SegmentProfiles(version, segments);
+    }
+
+    private record SegmentProfiles(long version, List<SegmentProfile> segments) {}
+
+    private record Assessment(
+            TidalReading reading,
+            SegmentProfiles profiles,
+            List<SegmentInundation> all,
+            Map<String, List<SegmentInundation>> byRoute
+    ) {}
+
+    /**
+     * Ground elevations sampled along one segment
+     */
+    private final class SegmentProfile {
+        final RouteSegmentOrientation segment;
+        final float[] elevations;
+        final float minElevation;
+
+        SegmentProfile(RouteSegmentOrientation segment, float[] elevations) {
+            this.segment = segment;
+            this.elevations = elevations;
+            float min = Float.POSITIVE_INFINITY;
+            for (float value : elevations) {
+                min = Math.min(min, value);
+            }
+            this.minElevation = min;
+        }
+
+        SegmentInundation assess(TidalReading reading) {
+            boolean exposed = isExposed(segment.getOrientation(), reading.getWaveDirection());
+            double waterLevel = waterLevel(segment.getOrientation(), reading);
+
+            double depth = Math.max(0, waterLevel - minElevation);
+            int flooded = 0;
+            if (depth > 0) {
+                for (float elevation : elevations) {
+                    if (elevation < waterLevel) {
+                        flooded++;
+                    }
+                }
+            }
+
+            return new SegmentInundation(
+                    segment.getRouteId(),
+                    segment.getFromStop(),
+                    segment.getToStop(),
+                    segment.getPatternKey(),
+                    segment.getSegmentIndex(),
+                    exposed,
+                    minElevation,
+                    depth,
+                    (double) flooded / elevations.length,
+                    Math.min(1.0, depth / fullRiskDepthMeters)
+            );
+        }
+    }
+
+    /**
+     * Flood state of one inter-stop segment
+     */
+    public record SegmentInundation(
+            String routeId,
+            String fromStop,
+            String toStop,
+            String patternKey,
+            int segmentIndex,
+            boolean exposed,          // Whether the segment faces the incoming waves
+            double minElevationMeters,
+            double floodDepthMeters,  // Water above the lowest point of the segment
+            double floodedFraction,   // Share of samples below the water level
+            double risk               // 0.0 to 1.0
+    ) {}
+}
@@ -0,0 +1,455 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.spatial.GeoMath;
+import com.majuro.transit.spatial.LocalProjection;
+import com.majuro.transit.spatial.SegmentRTree;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * In-process hidden-Markov map matcher (Newson &amp; Krumm) that snaps GPS fixes onto the cached
+ * route geometries from {@link RoutePathService}.
+ *
+ * Candidates for each fix come from a segment R-tree, emission probabilities follow a Gaussian
+ * on the perpendicular GPS error and transition probabilities an exponential on the difference
+ * between along-route and straight-line distance. Recorded traces are decoded with Viterbi over
+ * overlapping sliding windows; live pings advance a per-vehicle forward recursion by one step.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MapMatchingService {
+
+    private final RoutePathService routePathService;
+
+    @Value("${transit.matching.gps-sigma-meters:10}")
+    private double gpsSigmaMeters;
+
+    @Value("${transit.matching.transition-beta-meters:10}")
+    private double transitionBetaMeters;
+
+    @Value("${transit.matching.search-radius-meters:50}")
+    private double searchRadiusMeters;
+
+    @Value("${transit.matching.max-candidates:8}")
+    private int maxCandidates;
+
+    @Value("${transit.matching.window-size:32}")
+    private int windowSize;
+
+    @Value("${transit.matching.window-overlap:8}")
+    private int windowOverlap;
+
+    @Value("${transit.matching.max-gap-seconds:120}")
+    private long maxGapSeconds;
+
+    // Buses don't reverse along a pattern; allow a little backwards movement for GPS jitter only
+    private static final double BACKTRACK_TOLERANCE_METERS = 15.0;
+    private static final double BACKTRACK_PENALTY_METERS = 500.0;
+    // Cost of hopping onto a different pattern that shares the same road
+    private static final double PATTERN_SWITCH_PENALTY_METERS = 30.0;
+
+    // A live track is dropped once it has been silent for this many maximum fix gaps
+    private static final int STALE_TRACK_GAPS = 10;
+
+    private volatile MatchIndex index;
+    private final Map<String, VehicleTrack> vehicleTracks = new ConcurrentHashMap<>();
+
+    /**
+     * Match a recorded trace. The result has one entry per input fix, in order.
+     */
+    public List<MatchedPoint> matchTrace(List<GpsFix> fixes) {
+        MatchIndex idx = currentIndex();
+        MatchedPoint[] results = new MatchedPoint[fixes.size()];
+
+        // Split the trace into runs that can be decoded as one HMM: every fix needs at least
+        // one candidate and consecutive fixes must not be too far apart in time
+        int runStart = 0;
+        while (runStart < fixes.size()) {
+            List<Candidate[]> run = new ArrayList<>();
+            int i = runStart;
+            while (i < fixes.size()) {
+                GpsFix fix = fixes.get(i);
+                if (i > runStart && isGap(fixes.get(i - 1), fix)) {
+                    break;
+                }
+                Candidate[] candidates = idx.candidates(fix, searchRadiusMeters, maxCandidates);
+                if (candidates.length == 0) {
+                    results[i] = MatchedPoint.unmatched(fix);
+                    i++;
+                    break;
+                }
+                run.add(candidates);
+                i++;
+            }
+
+            if (!run.isEmpty()) {
+                decodeRun(idx, fixes, runStart, run, results);
+            }
+            runStart = i;
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Match many traces at once; traces are independent so they are decoded in parallel
+     */
+    public List<MatchedTrace> matchTraces(List<GpsTrace> traces) {
+        // Build the index once up front rather than racing to build it in every worker
+        currentIndex();
+        return traces.parallelStream()
+                .map(trace -> new MatchedTrace(trace.vehicleId(), matchTrace(trace.points())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Match a single live ping for a vehicle. Keeps only the previous step's Viterbi scores
+     * per vehicle, so memory and CPU per ping are constant.
+     */
+    public MatchedPoint matchPing(String vehicleId, GpsFix fix) {
+        MatchIndex idx = currentIndex();
+        Candidate[] candidates = idx.candidates(fix, searchRadiusMeters, maxCandidates);
+        VehicleTrack track = vehicleTracks.computeIfAbsent(vehicleId, id -> new VehicleTrack());
+
+        synchronized (track) {
+            track.lastSeenMillis = System.currentTimeMillis();
+            if (candidates.length == 0) {
+                track.reset();
+                return MatchedPoint.unmatched(fix);
+            }
+
+            double[] scores = new double[candidates.length];
+            boolean restart = track.candidates == null
+                    || track.indexVersion != idx.version
+                    || isGap(track.lastFix, fix);
+
+            for (int j = 0; j < candidates.length; j++) {
+                double emission = emissionLog(candidates[j]);
+                if (restart) {
+                    scores[j] = emission;
+                    continue;
+                }
+                double straightLine = GeoMath.haversineMeters(
+                        track.lastFix.latitude(), track.lastFix.longitude(), fix.latitude(), fix.longitude());
+                double best = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < track.candidates.length; k++) {
+                    double score = track.scores[k] + transitionLog(track.candidates[k], candidates[j], straightLine);
+                    if (score > best) {
+                        best = score;
+                    }
+                }
+                scores[j] = best + emission;
+            }
+
+            int bestIndex = normalize(scores);
+            track.candidates = candidates;
+            track.scores = scores;
+            track.lastFix = fix;
+            track.indexVersion = idx.version;
+            return idx.toMatchedPoint(fix, candidates[bestIndex]);
+        }
+    }
+
+    /**
+     * Drop live tracks that have not been updated recently
+     */
+    @Scheduled(fixedRate = 300000) // 5 minutes
+    public void evictStaleTracks() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(maxGapSeconds) * STALE_TRACK_GAPS;
+        vehicleTracks.values().removeIf(track -> track.lastSeenMillis < cutoff);
+    }
+
+    private void decodeRun(MatchIndex idx, List<GpsFix> fixes, int offset, List<Candidate[]> run, MatchedPoint[] results) {
+        int length = run.size();
+        int window = Math.max(2, windowSize);
+        int overlap = Math.max(0, Math.min(windowOverlap, window - 2));
+
+        int start = 0;
+        Candidate seed = null;
+        while (start < length) {
+            int end = Math.min(length, start + window);
+            Candidate[] path = viterbi(fixes, offset, run, start, end, seed);
+
+            // Commit everything except the overlap, which the next window re-decodes with more context
+            int commitEnd = end == length ? end : end - overlap;
+            for (int i = seed == null ? start : start + 1; i < commitEnd; i++) {
+                results[offset + i] = idx.toMatchedPoint(fixes.get(offset + i), path[i - start]);
+            }
+            if (end == length) {
+                break;
+            }
+
+            // The last committed state seeds the next window so decisions stay continuous
+            seed = path[commitEnd - 1 - start];
+            start = commitEnd - 1;
+        }
+    }
+
+    private Candidate[] viterbi(List<GpsFix> fixes, int offset, List<Candidate[]> run, int start, int end, Candidate seed) {
+        int steps = end - start;
+        double[][] scores = new double[steps][];
+        int[][] backPointers = new int[steps][];
+        Candidate[][] states = new Candidate[steps][];
+
+        states[0] = seed != null ? new Candidate[]{seed} : run.get(start);
+        scores[0] = new double[states[0].length];
+        for (int j = 0; j < states[0].length; j++) {
+            scores[0][j] = seed != null ? 0.0 : emissionLog(states[0][j]);
+        }
+
+        for (int s = 1; s < steps; s++) {
+            GpsFix previousFix = fixes.get(offset + start + s - 1);
+            GpsFix fix = fixes.get(offset + start + s);
+            double straightLine = GeoMath.haversineMeters(
+                    previousFix.latitude(), previousFix.longitude(), fix.latitude(), fix.longitude());
+
+            states[s] = run.get(start + s);
+            scores[s] = new double[states[s].length];
+            backPointers[s] = new int[states[s].length];
+
+            for (int j = 0; j < states[s].length; j++) {
+                double best = Double.NEGATIVE_INFINITY;
+                int bestK = 0;
+                for (int k = 0; k < states[s - 1].length; k++) {
+                    double score = scores[s - 1][k] + transitionLog(states[s - 1][k], states[s][j], straightLine);
+                    if (score > best) {
+                        best = score;
+                        bestK = k;
+                    }
+                }
+                scores[s][j] = best + emissionLog(states[s][j]);
+                backPointers[s][j] = bestK;
+            }
+            normalize(scores[s]);
+        }
+
+        // Backtrack from the most likely final state
+        Candidate[] path = new Candidate[steps];
+        int state = argMax(scores[steps - 1]);
+        for (int s = steps - 1; s >= 0; s--) {
+            path[s] = states[s][state];
+            if (s > 0) {
+                state = backPointers[s][state];
+            }
+        }
+        return path;
+    }
+
+    private double emissionLog(Candidate candidate) {
+        double z = candidate.offset / gpsSigmaMeters;
+        return -0.5 * z * z;
+    }
+
+    private double transitionLog(Candidate from, Candidate to, double straightLineMeters) {
+        double routeDistance;
+        if (from.pattern == to.pattern) {
+            double advance = to.along - from.along;
+            routeDistance = advance >= -BACKTRACK_TOLERANCE_METERS
+                    ? Math.abs(advance)
+                    : Math.abs(advance) + BACKTRACK_PENALTY_METERS;
+        } else {
+            routeDistance = Math.hypot(to.x - from.x, to.y - from.y) + PATTERN_SWITCH_PENALTY_METERS;
+        }
+        return -Math.abs(routeDistance - straightLineMeters) / transitionBetaMeters;
+    }
+
+    private boolean isGap(GpsFix previous, GpsFix next) {
+        if (previous == null) {
+            return true;
+        }
+        if (previous.timestamp() == null || next.timestamp() == null) {
+            return false;
+        }
+        long seconds = Duration.between(previous.timestamp(), next.timestamp()).getSeconds();
+        return seconds < 0 || seconds > maxGapSeconds;
+    }
+
+    /**
+     * Shift log scores so the best is zero (avoids underflow on long traces) and return its index
+     */
+    private static int normalize(double[] scores) {
+        int best = argMax(scores);
+        double max = scores[best];
+        if (Double.isFinite(max)) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] -= max;
+            }
+        }
+        return best;
+    }
+
+    private static int argMax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private MatchIndex currentIndex() {
+        long version = routePathService.getCacheVersion();
+        MatchIndex current = index;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (index == null || index.version != version) {
+                index = MatchIndex.build(routePathService.getCachedPatternPaths(), version);
+                log.info("Built map-matching index over {} patterns ({} segments)",
+                        index.patterns.length, index.tree.size());
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Immutable segment index over all cached pattern geometries
+     */
+    private static final class MatchIndex {
+        final long version;
+        final LocalProjection projection;
+        final SegmentRTree tree;
+        final RoutePathService.PatternPath[] patterns;
+        final double[][] cumulativeMeters;
+
+        private MatchIndex(long version, LocalProjection projection, SegmentRTree tree,
+                           RoutePathService.PatternPath[] patterns, double[][] cumulativeMeters) {
+            this.version = version;
+            this.projection = projection;
+            this.tree = tree;
+            this.patterns = patterns;
+            this.cumulativeMeters = cumulativeMeters;
+        }
+
+        static MatchIndex build(List<RoutePathService.PatternPath> paths, long version) {
+            RoutePathService.PatternPath[] patterns = paths.stream()
+                    .filter(p -> p.points().size() >= 2)
+                    .toArray(RoutePathService.PatternPath[]::new);
+
+            LocalProjection projection = patterns.length == 0
+                    ? new LocalProjection(0, 0)
+                    : new LocalProjection(patterns[0].points().get(0).latitude(), patterns[0].points().get(0).longitude());
+
+            SegmentRTree.Builder builder = SegmentRTree.builder();
+            double[][] cumulative = new double[patterns.length][];
+            for (int p = 0; p < patterns.length; p++) {
+                List<RoutePathService.RoutePathPoint> points = patterns[p].points();
+                cumulative[p] = new double[points.size()];
+                double prevX = projection.x(points.get(0).longitude());
+                double prevY = projection.y(points.get(0).latitude());
+                for (int i = 1; i < points.size(); i++) {
+                    double x = projection.x(points.get(i).longitude());
+                    double y = projection.y(points.get(i).latitude());
+                    builder.add(p, i - 1, prevX, prevY, x, y);
+                    cumulative[p][i] = cumulative[p][i - 1] + Math.hypot(x - prevX, y - prevY);
+                    prevX = x;
+                    prevY = y;
+                }
+            }
+            return new MatchIndex(version, projection, builder.build(), patterns, cumulative);
+        }
+
+        /**
+         * Candidate states for a fix: the closest point on each nearby pattern
+         */
+        Candidate[] candidates(GpsFix fix, double radius, int maxResults) {
+            double x = projection.x(fix.longitude());
+            double y = projection.y(fix.latitude());
+
+            // Ask for a few extra hits since adjacent segments of one pattern are collapsed below
+            List<SegmentRTree.SegmentHit> hits = tree.nearest(x, y, maxResults * 4, radius);
+            Map<Integer, Candidate> bestPerPattern = new HashMap<>();
+            for (SegmentRTree.SegmentHit hit : hits) {
+                if (bestPerPattern.containsKey(hit.ownerId()) || bestPerPattern.size() >= maxResults) {
+                    continue;
+                }
+                double[] cumulative = cumulativeMeters[hit.ownerId()];
+                int segment = hit.segmentIndex();
+                double along = cumulative[segment] + (cumulative[segment + 1] - cumulative[segment]) * hit.fraction();
+                bestPerPattern.put(hit.ownerId(),
+                        new Candidate(hit.ownerId(), segment, along, hit.distance(), hit.x(), hit.y()));
+            }
+            return bestPerPattern.values().toArray(new Candidate[0]);
+        }
+
+        MatchedPoint toMatchedPoint(GpsFix fix, Candidate candidate) {
+            RoutePathService.PatternPath pattern = patterns[candidate.pattern];
+            return new MatchedPoint(
+                    fix.latitude(),
+                    fix.longitude(),
+                    fix.timestamp(),
+                    true,
+                    projection.lat(candidate.y),
+                    projection.lon(candidate.x),
+                    pattern.routeId(),
+                    pattern.patternKey(),
+                    candidate.segment,
+                    candidate.along,
+                    candidate.offset
+            );
+        }
+    }
+
+    private record Candidate(int pattern, int segment, double along, double offset, double x, double y) {}
+
+    private static final class VehicleTrack {
+        Candidate[] candidates;
+        double[] scores;
+        GpsFix lastFix;
+        long indexVersion;
+        volatile long lastSeenMillis = System.currentTimeMillis();
+
+        void reset() {
+            candidates = null;
+            scores = null;
+        }
+    }
+
+    /**
+     * A raw GPS observation. Timestamp is optional but enables gap detection.
+     */
+    public record GpsFix(double latitude, double longitude, Instant timestamp) {}
+
+    public record GpsTrace(String vehicleId, List<GpsFix> points) {}
+
+    public record MatchedTrace(String vehicleId, List<MatchedPoint> points) {}
+
+    /**
+     * A GPS fix and, when matched, its snapped position on a route pattern
+     */
+    public record MatchedPoint(
+            double latitude,
+            double longitude,
+            Instant timestamp,
+            boolean matched,
+            Double snappedLatitude,
+            Double snappedLongitude,
+            String routeId,
+            String patternKey,
+            Integer segmentIndex,        // Index of the polyline segment within the pattern geometry
+            Double distanceAlongMeters,  // Distance from the start of the pattern
+            Double offsetMeters          // Perpendicular distance between the fix and the route
+    ) {
+        static MatchedPoint unmatched(GpsFix fix) {
+            return new MatchedPoint(fix.latitude(), fix.longitude(), fix.timestamp(), false,
+                    null, null, null, null, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.spatial.GeoMath;
+import com.majuro.transit.spatial.PointGrid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nearest-stop queries over a {@link PointGrid} of the feed's stops, rebuilt once per feed version.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NearbyStopService {
+
+    private final GtfsFeedIndex feedIndex;
+
+    @Value("${transit.stops.max-nearby:100}")
+    private int maxNearby;
+
+    private volatile StopGrid stopGrid;
+
+    @EventListener(GtfsFeedLoadedEvent.class)
+    public void onFeedLoaded() {
+        StopGrid rebuilt = currentGrid();
+        log.info("Indexed {} stops for nearby queries", rebuilt.grid.size());
+    }
+
+    /**
+     * @return Up to {@code k} stops within {@code radiusMeters} of the location, nearest first
+     */
+    public List<NearbyStop> findNearby(double latitude, double longitude, int k, double radiusMeters) {
+        if (k > maxNearby) {
+            throw new RuntimeException("At most " + maxNearby + " nearby stops can be requested");
+        }
+        StopGrid current = currentGrid();
+        FeedSnapshot snapshot = current.snapshot;
+
+        int[] nearest = current.grid.nearest(latitude, longitude, k, radiusMeters);
+        List<NearbyStop> stops = new ArrayList<>(nearest.length);
+        for (int stop : nearest) {
+            stops.add(new NearbyStop(
+                    snapshot.getStopIds()[stop],
+                    snapshot.getStopNames()[stop],
+                    snapshot.getStopLats()[stop],
+                    snapshot.getStopLons()[stop],
+                    GeoMath.haversineMeters(latitude, longitude,
+                            snapshot.getStopLats()[stop], snapshot.getStopLons()[stop])
+            ));
+        }
+        return stops;
+    }
+
+    private StopGrid currentGrid() {
+        FeedSnapshot snapshot = feedIndex.getSnapshot();
+        StopGrid current = stopGrid;
+        if (current != null && current.snapshot == snapshot) {
+            return current;
+        }
+        synchronized (this) {
+            if (stopGrid == null || stopGrid.snapshot != snapshot) {
+                stopGrid = new StopGrid(snapshot, PointGrid.build(snapshot.getStopLats(), snapshot.getStopLons()));
+            }
+            return stopGrid;
+        }
+    }
+
+    private record StopGrid(FeedSnapshot snapshot, PointGrid grid) {}
+
+    public record NearbyStop(
+            String stopId,
+            String stopName,
+            double latitude,
+            double longitude,
+            double distanceMeters
+    ) {}
+}
@@ -0,0 +1,135 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
+import com.majuro.transit.event.TidalReadingRotatedEvent;
+import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.model.RouteSegmentOrientation;
+import com.majuro.transit.model.TidalReading;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Impact of the current tidal reading on every route, computed once per reading version.
+ * The table is rebuilt when the reading rotates, a sensor window closes or the route geometry
+ * changes, so a lookup is a single map read.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteImpactCache {
+
+    private final TidalDataService tidalDataService;
+    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteOrientationService orientationService;
+    private final RoutePathService routePathService;
+    private final GtfsFeedIndex feedIndex;
+    private final SensorIngestService sensorIngestService;
+
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile ImpactTable table;
+
+    @EventListener({TidalReadingRotatedEvent.class, RouteGeometryPrewarmedEvent.class, GtfsFeedLoadedEvent.class})
+    public void onInputsChanged() {
+        ImpactTable rebuilt = currentTable();
+        log.debug("Route impacts computed for tidal reading version {} ({} routes)",
+                rebuilt.readingVersion, rebuilt.byRoute.size());
+    }
+
+    /**
+     * @return Impact of the current reading on a route
+     */
+    public RouteImpact getImpact(String routeId) {
+        ImpactTable current = currentTable();
+        RouteImpact impact = current.byRoute.get(routeId);
+        // Routes outside the feed are not cached; compute them against the same reading
+        return impact != null ? impact : tidalImpactCalculator.calculateImpact(routeId, current.reading, current.sensors.levels());
+    }
+
+    /**
+     * @return The current table as one consistent view, for callers that combine many routes
+     */
+    public ImpactSnapshot getImpactSnapshot() {
+        ImpactTable current = currentTable();
+        return new ImpactSnapshot(current.version, current.byRoute);
+    }
+
+    /**
+     * @return Impacts for every route in the feed, in feed order
+     */
+    public List<RouteImpact> getAllImpacts() {
+        return currentTable().all;
+    }
+
+    private ImpactTable currentTable() {
+        TidalDataService.CurrentReading reading = tidalDataService.getCurrent();
+        long geometryVersion = routePathService.getCacheVersion();
+        long feedVersion = feedIndex.getVersion();
+        SensorIngestService.ObservedLevels sensors = sensorIngestService.getObservedLevels();
+        ImpactTable current = table;
+        if (current != null && current.matches(reading.version(), geometryVersion, feedVersion, sensors)) {
+            return current;
+        }
+        synchronized (this) {
+            if (table == null || !table.matches(reading.version(), geometryVersion, feedVersion, sensors)) {
+                table = build(reading, geometryVersion, feedVersion, sensors);
+            }
+            return table;
+        }
+    }
+
+    private ImpactTable build(TidalDataService.CurrentReading reading, long geometryVersion, long feedVersion,
+                              SensorIngestService.ObservedLevels sensors) {
+        Map<String, RouteImpact> byRoute = new LinkedHashMap<>();
+        for (String routeId : routeIds(feedVersion)) {
+            byRoute.put(routeId, tidalImpactCalculator.calculateImpact(routeId, reading.reading(), sensors.levels()));
+        }
+        return new ImpactTable(versionCounter.incrementAndGet(), reading.version(), geometryVersion, feedVersion, sensors, reading.reading(),
+                Collections.unmodifiableMap(byRoute), List.copyOf(byRoute.values()));
+    }
+
+    private Set<String> routeIds(long feedVersion) {
+        Set<String> routeIds = new LinkedHashSet<>();
+        if (feedVersion > 0) {
+            Collections.addAll(routeIds, feedIndex.getSnapshot().getRouteIds());
+        }
+        for (RouteSegmentOrientation segment : orientationService.getAllOrientations()) {
+            routeIds.add(segment.getRouteId());
+        }
+        return routeIds;
+    }
+
+    /**
+     * Impacts of one table version, keyed by route
+     */
+    public record ImpactSnapshot(long version, Map<String, RouteImpact> byRoute) {}
+
+    private record ImpactTable(
+            long version,
+            long readingVersion,
+            long geometryVersion,
+            long feedVersion,
+            SensorIngestService.ObservedLevels sensors,
+            TidalReading reading,
+            Map<String, RouteImpact> byRoute,
+            List<RouteImpact> all
+    ) {
+        boolean matches(long readingVersion, long geometryVersion, long feedVersion,
+                        SensorIngestService.ObservedLevels sensors) {
+            return this.readingVersion == readingVersion
+                    && this.geometryVersion == geometryVersion
+                    && this.feedVersion == feedVersion
+                    && this.sensors == sensors;
+        }
+    }
+}
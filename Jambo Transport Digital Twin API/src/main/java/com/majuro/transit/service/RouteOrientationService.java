@@ -1,108 +1,173 @@
 package com.majuro.transit.service;
 
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
 import com.majuro.transit.model.RouteSegmentOrientation;
 import com.majuro.transit.model.RouteSegmentOrientation.Orientation;
+import com.majuro.transit.spatial.GeoMath;
+import com.majuro.transit.spatial.RouteGeometry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PostConstruct;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/**
+ * Derives the bearing and coastal exposure of every inter-stop segment from the cached road
+ * geometry. Results are kept in a per-route index (an array per stop pattern and an EnumMap by
+ * orientation) that is rebuilt whenever new geometry is cached, so lookups are O(1).
+ */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class RouteOrientationService {
 
-    private List<RouteSegmentOrientation> orientations = new ArrayList<>();
-
-    @PostConstruct
-    public void initialize() {
-        log.info("Initializing Route Orientation Service - hardcoding Majuro route orientations...");
-
-        // ROUTE A - Hardcoded segment orientations based on Majuro geography
-        // North-facing roads (exposed to northerly waves from ocean side)
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_A")
-                .fromStop("DUD")
-                .toStop("RITA")
-                .orientation(Orientation.NORTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_A")
-                .fromStop("RITA")
-                .toStop("DELAP")
-                .orientation(Orientation.NORTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_A")
-                .fromStop("DELAP")
-                .toStop("ULIGA")
-                .orientation(Orientation.NORTH_FACING)
-                .build());
-
-        // South-facing roads (exposed to southerly waves from lagoon side)
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_A")
-                .fromStop("ULIGA")
-                .toStop("DARRIT")
-                .orientation(Orientation.SOUTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_A")
-                .fromStop("DARRIT")
-                .toStop("LAURA")
-                .orientation(Orientation.SOUTH_FACING)
-                .build());
-
-        // ROUTE B - Hardcoded segment orientations
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_B")
-                .fromStop("DUD")
-                .toStop("RITA")
-                .orientation(Orientation.NORTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_B")
-                .fromStop("RITA")
-                .toStop("AIRPORT")
-                .orientation(Orientation.SOUTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_B")
-                .fromStop("AIRPORT")
-                .toStop("LAURA")
-                .orientation(Orientation.SOUTH_FACING)
-                .build());
-
-        orientations.add(RouteSegmentOrientation.builder()
-                .routeId("ROUTE_B")
-                .fromStop("LAURA")
-                .toStop("MAJURO")
-                .orientation(Orientation.NORTH_FACING)
-                .build());
-
-        log.info("Loaded {} route segment orientations", orientations.size());
+    private final RoutePathService routePathService;
+
+    // Approximate centre of Majuro lagoon; the side of a road facing away from it is the ocean side
+    @Value("${transit.orientation.lagoon-center-lat:7.14}")
+    private double lagoonCenterLat;
+
+    @Value("${transit.orientation.lagoon-center-lon:171.20}")
+    private double lagoonCenterLon;
+
+    private volatile OrientationIndex index;
+
+    @EventListener(RouteGeometryPrewarmedEvent.class)
+    public void onGeometryPrewarmed() {
+        OrientationIndex rebuilt = currentIndex();
+        log.info("Derived {} route segment orientations from road geometry", rebuilt.all.size());
     }
 
     public List<RouteSegmentOrientation> getOrientationsForRoute(String routeId) {
-        return orientations.stream()
-                .filter(o -> o.getRouteId().equals(routeId))
-                .collect(Collectors.toList());
+        return currentIndex().byRoute.getOrDefault(routeId, List.of());
+    }
+
+    public List<RouteSegmentOrientation> getOrientationsForPattern(String patternKey) {
+        RouteSegmentOrientation[] segments = currentIndex().byPattern.get(patternKey);
+        return segments == null ? List.of() : Collections.unmodifiableList(Arrays.asList(segments));
     }
 
     public List<RouteSegmentOrientation> getAllOrientations() {
-        return new ArrayList<>(orientations);
+        return currentIndex().all;
     }
 
     public List<RouteSegmentOrientation> getSegmentsByOrientation(String routeId, Orientation orientation) {
-        return orientations.stream()
-                .filter(o -> o.getRouteId().equals(routeId) && o.getOrientation() == orientation)
-                .collect(Collectors.toList());
+        EnumMap<Orientation, List<RouteSegmentOrientation>> byOrientation =
+                currentIndex().byRouteAndOrientation.get(routeId);
+        return byOrientation == null ? List.of() : byOrientation.getOrDefault(orientation, List.of());
+    }
+
+    private OrientationIndex currentIndex() {
+        long version = routePathService.getCacheVersion();
+        OrientationIndex current = index;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (index == null || index.version != version) {
+                index = buildIndex(routePathService.getCachedPatternPaths(), version);
+            }
+            return index;
+        }
     }
+
+    private OrientationIndex buildIndex(List<RoutePathService.PatternPath> paths, long version) {
+        Map<String, RouteSegmentOrientation[]> byPattern = new HashMap<>();
+        // Patterns of a route share many segments; keep one entry per stop pair
+        Map<String, Map<String, RouteSegmentOrientation>> routeSegments = new LinkedHashMap<>();
+
+        for (RoutePathService.PatternPath path : paths) {
+            RouteGeometry geometry = path.geometry();
+            if (geometry == null || geometry.stopCount() < 2) {
+                continue;
+            }
+
+            RouteSegmentOrientation[] segments = new RouteSegmentOrientation[geometry.stopCount() - 1];
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = deriveSegment(geometry, i);
+                routeSegments.computeIfAbsent(geometry.getRouteId(), id -> new LinkedHashMap<>())
+                        .putIfAbsent(segments[i].getFromStop() + ">" + segments[i].getToStop(), segments[i]);
+            }
+            byPattern.put(geometry.getPatternKey(), segments);
+        }
+
+        Map<String, List<RouteSegmentOrientation>> byRoute = new HashMap<>();
+        Map<String, EnumMap<Orientation, List<RouteSegmentOrientation>>> byRouteAndOrientation = new HashMap<>();
+        List<RouteSegmentOrientation> all = new ArrayList<>();
+
+        routeSegments.forEach((routeId, segments) -> {
+            List<RouteSegmentOrientation> list = List.copyOf(segments.values());
+            byRoute.put(routeId, list);
+            all.addAll(list);
+
+            EnumMap<Orientation, List<RouteSegmentOrientation>> byOrientation = new EnumMap<>(Orientation.class);
+            for (Orientation orientation : Orientation.values()) {
+                byOrientation.put(orientation, list.stream()
+                        .filter(segment -> segment.getOrientation() == orientation)
+                        .toList());
+            }
+            byRouteAndOrientation.put(routeId, byOrientation);
+        });
+
+        return new OrientationIndex(version, byPattern, byRoute, byRouteAndOrientation, List.copyOf(all));
+    }
+
+    /**
+     * Bearing of a segment is the chord between its two stops measured on the road geometry.
+     * Of the two sides of the road, the one facing away from the lagoon centre is the ocean side.
+     */
+    private RouteSegmentOrientation deriveSegment(RouteGeometry geometry, int segmentIndex) {
+        double startKm = geometry.stopDistanceKm(segmentIndex);
+        double endKm = geometry.stopDistanceKm(segmentIndex + 1);
+        double[] start = geometry.pointAtDistance(startKm);
+        double[] end = geometry.pointAtDistance(endKm);
+        double[] middle = geometry.pointAtDistance((startKm + endKm) / 2);
+
+        double bearing = GeoMath.bearingDegrees(start[0], start[1], end[0], end[1]);
+        double towardsLagoon = GeoMath.bearingDegrees(middle[0], middle[1], lagoonCenterLat, lagoonCenterLon);
+
+        double leftNormal = GeoMath.normalizeDegrees(bearing - 90);
+        double rightNormal = GeoMath.normalizeDegrees(bearing + 90);
+        double exposure = angularDistance(leftNormal, towardsLagoon) > angularDistance(rightNormal, towardsLagoon)
+                ? leftNormal
+                : rightNormal;
+
+        Orientation orientation = (exposure >= 270 || exposure < 90)
+                ? Orientation.NORTH_FACING
+                : Orientation.SOUTH_FACING;
+
+        return RouteSegmentOrientation.builder()
+                .routeId(geometry.getRouteId())
+                .fromStop(geometry.stopId(segmentIndex))
+                .toStop(geometry.stopId(segmentIndex + 1))
+                .orientation(orientation)
+                .patternKey(geometry.getPatternKey())
+                .segmentIndex(segmentIndex)
+                .bearingDegrees(bearing)
+                .exposureBearingDegrees(exposure)
+                .lengthKm(Math.max(0.0, endKm - startKm))
+                .build();
+    }
+
+    private static double angularDistance(double a, double b) {
+        double difference = Math.abs(a - b) % 360.0;
+        return difference > 180 ? 360 - difference : difference;
+    }
+
+    private record OrientationIndex(
+            long version,
+            Map<String, RouteSegmentOrientation[]> byPattern,
+            Map<String, List<RouteSegmentOrientation>> byRoute,
+            Map<String, EnumMap<Orientation, List<RouteSegmentOrientation>>> byRouteAndOrientation,
+            List<RouteSegmentOrientation> all
+    ) {}
 }
@@ -2,11 +2,15 @@ package com.majuro.transit.service;
 
 import com.majuro.transit.model.gtfs.GtfsStopTime;
 import com.majuro.transit.model.gtfs.GtfsTrip;
+import com.majuro.transit.spatial.RouteGeometry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
@@ -14,30 +18,89 @@ public class RoutePathService {
 
     private final RoadNetworkRoutingService roadRoutingService;
 
-    // Cache for route paths to avoid repeated OSRM API calls
-    private final java.util.Map<String, List<RoutePathPoint>> routePathCache =
-        new java.util.concurrent.ConcurrentHashMap<>();
+    // Cache for route paths to avoid repeated OSRM API calls.
+    // Trips serving the same stops in the same order share one geometry, so entries are keyed by stop pattern.
+    private final Map<String, PatternPath> routePathCache = new ConcurrentHashMap<>();
+
+    // Bumped whenever a new geometry is cached so derived indexes know to rebuild
+    private final AtomicLong cacheVersion = new AtomicLong();
 
     /**
      * Generates a detailed path for a route that follows the actual road network.
      * Uses OSRM routing service to generate realistic paths between stops.
-     * Results are cached per trip to improve performance.
+     * Results are cached per stop pattern to improve performance.
      *
      * @param trip The GTFS trip
      * @param pointsPerSegment Ignored when using road network routing (kept for API compatibility)
      * @return List of coordinate points representing the route path
      */
     public List<RoutePathPoint> generateRoutePath(GtfsTrip trip, Integer pointsPerSegment) {
+        return getPatternPath(trip).points();
+    }
+
+    /**
+     * Returns the linear-referencing table for the trip's stop pattern, generating the path if needed
+     */
+    public RouteGeometry getRouteGeometry(GtfsTrip trip) {
+        return getPatternPath(trip).geometry();
+    }
+
+    private PatternPath getPatternPath(GtfsTrip trip) {
         // Check cache first
-        String cacheKey = trip.getTripId();
-        if (routePathCache.containsKey(cacheKey)) {
-            return routePathCache.get(cacheKey);
+        String cacheKey = patternKey(trip);
+        PatternPath cached = routePathCache.get(cacheKey);
+        if (cached != null) {
+            return cached;
         }
 
-        // Generate and cache the path
+        // Generate and cache the path together with its linear-referencing table
         List<RoutePathPoint> path = generateRoadBasedPath(trip);
-        routePathCache.put(cacheKey, path);
-        return path;
+        PatternPath patternPath = new PatternPath(
+            cacheKey,
+            trip.getRoute().getRouteId(),
+            path,
+            path.isEmpty() ? null : buildGeometry(cacheKey, trip, path)
+        );
+        routePathCache.put(cacheKey, patternPath);
+        cacheVersion.incrementAndGet();
+        return patternPath;
+    }
+
+    private RouteGeometry buildGeometry(String patternKey, GtfsTrip trip, List<RoutePathPoint> path) {
+        List<double[]> coordinates = path.stream()
+            .map(point -> new double[]{point.latitude(), point.longitude()})
+            .toList();
+        List<String> stopIds = trip.getStopTimes().stream()
+            .map(st -> st.getStop().getStopId())
+            .toList();
+        List<double[]> stops = trip.getStopTimes().stream()
+            .map(st -> new double[]{st.getStop().getStopLat(), st.getStop().getStopLon()})
+            .toList();
+        return RouteGeometry.build(patternKey, trip.getRoute().getRouteId(), coordinates, stopIds, stops);
+    }
+
+    /**
+     * Builds the cache key shared by all trips of a route that visit the same stops in the same order
+     */
+    public static String patternKey(GtfsTrip trip) {
+        return patternKey(trip.getRoute().getRouteId(), trip.getStopTimes().stream()
+            .map(st -> st.getStop().getStopId())
+            .toList());
+    }
+
+    public static String patternKey(String routeId, List<String> stopIds) {
+        return routeId + ":" + String.join(">", stopIds);
+    }
+
+    /**
+     * Snapshot of every geometry generated so far, one entry per stop pattern
+     */
+    public List<PatternPath> getCachedPatternPaths() {
+        return new ArrayList<>(routePathCache.values());
+    }
+
+    public long getCacheVersion() {
+        return cacheVersion.get();
     }
 
     /**
@@ -184,6 +247,24 @@ public class RoutePathService {
     }
 
 
+    /**
+     * Cached road geometry for one stop pattern of a route
+     */
+    public record PatternPath(
+            String patternKey,
+            String routeId,
+            List<RoutePathPoint> points,
+            RouteGeometry geometry    // Null if the pattern has no stops
+    ) {}
+
+    /**
+     * Look up an already generated geometry by its pattern key
+     */
+    public RouteGeometry getCachedGeometry(String patternKey) {
+        PatternPath cached = routePathCache.get(patternKey);
+        return cached == null ? null : cached.geometry();
+    }
+
     /**
      * Represents a point along the route path
      */
@@ -0,0 +1,185 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.spatial.LocalProjection;
+import com.majuro.transit.spatial.RouteGeometry;
+import com.majuro.transit.spatial.SegmentRTree;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves route-relative positions: projects a coordinate onto a route (or one of its stop
+ * patterns) and reports the segment, the distance along the route and the perpendicular offset.
+ * Each pattern geometry gets its own segment R-tree, so a lookup is O(log n) in the number of
+ * polyline segments.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteProjectionService {
+
+    private final RoutePathService routePathService;
+
+    private volatile ProjectionIndex index;
+
+    /**
+     * Project a point onto the closest stop pattern of a route
+     * @param routeId    Route to project onto
+     * @param patternKey Optional pattern key restricting the projection to one stop pattern
+     */
+    public RouteProjection project(String routeId, String patternKey, double latitude, double longitude) {
+        List<PatternIndex> candidates = currentIndex().patternsFor(routeId, patternKey);
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("No route geometry available for: " +
+                    (patternKey != null ? patternKey : routeId));
+        }
+
+        RouteProjection best = null;
+        for (PatternIndex pattern : candidates) {
+            RouteProjection projection = pattern.project(latitude, longitude);
+            if (projection != null && (best == null || projection.offsetMeters() < best.offsetMeters())) {
+                best = projection;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Project many points onto the same route, resolving the index only once
+     */
+    public List<RouteProjection> projectAll(String routeId, String patternKey, List<double[]> latLonPoints) {
+        ProjectionIndex current = currentIndex();
+        List<PatternIndex> candidates = current.patternsFor(routeId, patternKey);
+        if (candidates.isEmpty()) {
+            throw new RuntimeException("No route geometry available for: " +
+                    (patternKey != null ? patternKey : routeId));
+        }
+
+        List<RouteProjection> results = new ArrayList<>(latLonPoints.size());
+        for (double[] point : latLonPoints) {
+            RouteProjection best = null;
+            for (PatternIndex pattern : candidates) {
+                RouteProjection projection = pattern.project(point[0], point[1]);
+                if (projection != null && (best == null || projection.offsetMeters() < best.offsetMeters())) {
+                    best = projection;
+                }
+            }
+            results.add(best);
+        }
+        return results;
+    }
+
+    private ProjectionIndex currentIndex() {
+        long version = routePathService.getCacheVersion();
+        ProjectionIndex current = index;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (index == null || index.version != version) {
+                index = ProjectionIndex.build(routePathService.getCachedPatternPaths(), version);
+                log.info("Built route projection index for {} patterns", index.byPattern.size());
+            }
+            return index;
+        }
+    }
+
+    private static final class ProjectionIndex {
+        final long version;
+        final Map<String, PatternIndex> byPattern;
+        final Map<String, List<PatternIndex>> byRoute;
+
+        private ProjectionIndex(long version, Map<String, PatternIndex> byPattern) {
+            this.version = version;
+            this.byPattern = byPattern;
+            this.byRoute = byPattern.values().stream()
+                    .collect(Collectors.groupingBy(p -> p.geometry.getRouteId()));
+        }
+
+        static ProjectionIndex build(List<RoutePathService.PatternPath> paths, long version) {
+            Map<String, PatternIndex> byPattern = new HashMap<>();
+            for (RoutePathService.PatternPath path : paths) {
+                if (path.geometry() != null && path.geometry().vertexCount() >= 2) {
+                    byPattern.put(path.patternKey(), new PatternIndex(path.geometry()));
+                }
+            }
+            return new ProjectionIndex(version, byPattern);
+        }
+
+        List<PatternIndex> patternsFor(String routeId, String patternKey) {
+            if (patternKey != null) {
+                PatternIndex pattern = byPattern.get(patternKey);
+                return pattern == null ? List.of() : List.of(pattern);
+            }
+            return byRoute.getOrDefault(routeId, List.of());
+        }
+    }
+
+    /**
+     * Segment R-tree over a single pattern geometry
+     */
+    private static final class PatternIndex {
+        final RouteGeometry geometry;
+        final LocalProjection projection;
+        final SegmentRTree tree;
+
+        PatternIndex(RouteGeometry geometry) {
+            this.geometry = geometry;
+            this.projection = new LocalProjection(geometry.latitude(0), geometry.longitude(0));
+
+            SegmentRTree.Builder builder = SegmentRTree.builder();
+            for (int i = 1; i < geometry.vertexCount(); i++) {
+                builder.add(0, i - 1,
+                        projection.x(geometry.longitude(i - 1)), projection.y(geometry.latitude(i - 1)),
+                        projection.x(geometry.longitude(i)), projection.y(geometry.latitude(i)));
+            }
+            this.tree = builder.build();
+        }
+
+        RouteProjection project(double latitude, double longitude) {
+            SegmentRTree.SegmentHit hit = tree.nearest(
+                    projection.x(longitude), projection.y(latitude), Double.POSITIVE_INFINITY);
+            if (hit == null) {
+                return null;
+            }
+
+            int segment = hit.segmentIndex();
+            double startKm = geometry.cumulativeKm(segment);
+            double alongKm = startKm + (geometry.cumulativeKm(segment + 1) - startKm) * hit.fraction();
+            int stopIndex = geometry.stopIndexAtDistance(alongKm);
+
+            return new RouteProjection(
+                    geometry.getRouteId(),
+                    geometry.getPatternKey(),
+                    segment,
+                    alongKm * 1000.0,
+                    hit.distance(),
+                    projection.lat(hit.y()),
+                    projection.lon(hit.x()),
+                    stopIndex,
+                    geometry.stopCount() == 0 ? null : geometry.stopId(stopIndex)
+            );
+        }
+    }
+
+    /**
+     * Position of a coordinate relative to a route pattern
+     */
+    public record RouteProjection(
+            String routeId,
+            String patternKey,
+            int segmentIndex,           // Index of the polyline segment the point projects onto
+            double distanceAlongMeters, // Distance from the start of the pattern
+            double offsetMeters,        // Perpendicular distance from the route
+            double snappedLatitude,
+            double snappedLongitude,
+            int previousStopIndex,      // Last stop of the pattern at or before the projected point
+            String previousStopId
+    ) {}
+}
@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Service for snapping route coordinates to OpenStreetMap roads using OSRM map-matching API
+ * Service for snapping route coordinates to roads.
+ * Traces that fall on our cached route geometries are matched in-process by {@link MapMatchingService};
+ * anything else is sent to the OSRM map-matching API.
  */
 @Service
 @RequiredArgsConstructor
@@ -19,6 +21,7 @@ public class RouteSnappingService {
     private static final String OSRM_MATCH_URL = "https://router.project-osrm.org/match/v1/driving/";
     private final RestTemplate restTemplate = new RestTemplate();
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MapMatchingService mapMatchingService;
 
     /**
      * Snaps a list of coordinates to the nearest roads in OpenStreetMap
@@ -30,6 +33,11 @@ public class RouteSnappingService {
             return coordinates;
         }
 
+        List<double[]> localMatch = snapToCachedRoutes(coordinates);
+        if (localMatch != null) {
+            return localMatch;
+        }
+
         try {
             // Build OSRM match API URL
             StringBuilder coordString = new StringBuilder();
@@ -79,6 +87,26 @@ public class RouteSnappingService {
         }
     }
 
+    /**
+     * Matches against the cached route geometries without leaving the process
+     * @return Snapped [longitude, latitude] pairs, or null if any point is off our routes
+     */
+    private List<double[]> snapToCachedRoutes(List<double[]> coordinates) {
+        List<MapMatchingService.GpsFix> fixes = new ArrayList<>();
+        for (double[] coord : coordinates) {
+            fixes.add(new MapMatchingService.GpsFix(coord[1], coord[0], null));
+        }
+
+        List<double[]> snapped = new ArrayList<>();
+        for (MapMatchingService.MatchedPoint point : mapMatchingService.matchTrace(fixes)) {
+            if (!point.matched()) {
+                return null;
+            }
+            snapped.add(new double[]{point.snappedLongitude(), point.snappedLatitude()});
+        }
+        return snapped;
+    }
+
     /**
      * Generates radiuses parameter for OSRM API
      * Allows matching points within 50 meters of roads
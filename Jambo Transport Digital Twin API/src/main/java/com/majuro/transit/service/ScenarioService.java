@@ -0,0 +1,170 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.model.TidalReading;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates what-if storm scenarios: every combination of wave height, direction and duration
+ * is run through {@link TidalImpactCalculator} for every route on a dedicated parallel pool.
+ * Results are returned as flat per-route arrays rather than one object per cell.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScenarioService {
+
+    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
+    private final GtfsFeedIndex feedIndex;
+
+    @Value("${transit.scenarios.parallelism:4}")
+    private int parallelism;
+
+    @Value("${transit.scenarios.max-cells:100000}")
+    private int maxCells;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(Math.max(1, parallelism));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Evaluate the grid; cell {@code ((h * directions) + d) * durations + t} of each route's arrays
+     * holds the result for height {@code h}, direction {@code d} and duration {@code t}
+     * @param durationsHours Storm durations used to estimate affected trips; a single 1 hour duration if empty
+     */
+    public ScenarioMatrix evaluate(double[] waveHeights, double[] waveDirections, double[] durationsHours,
+                                   double wavePeriod) {
+        double[] durations = durationsHours == null || durationsHours.length == 0 ? new double[]{1.0} : durationsHours;
+        if (waveHeights == null || waveHeights.length == 0 || waveDirections == null || waveDirections.length == 0) {
+            throw new RuntimeException("At least one wave height and one direction are required");
+        }
+        long cells = (long) waveHeights.length * waveDirections.length * durations.length;
+        if (cells > maxCells) {
+            throw new RuntimeException("Scenario grid has " + cells + " cells; the limit is " + maxCells);
+        }
+
+        List<String> routeIds = routeImpactCache.getAllImpacts().stream().map(RouteImpact::getRouteId).toList();
+        double[] tripsPerHour = tripsPerHour(routeIds);
+        int directionCount = waveDirections.length;
+        int durationCount = durations.length;
+        int readingCount = waveHeights.length * directionCount;
+
+        int[][] levels = new int[routeIds.size()][(int) cells];
+        int[][] delays = new int[routeIds.size()][(int) cells];
+        int[][] affectedTrips = new int[routeIds.size()][(int) cells];
+
+        long startTime = System.nanoTime();
+        try {
+            // One task per (height, direction) reading; durations only scale the result
+            pool.submit(() -> IntStream.range(0, readingCount).parallel().forEach(cell -> {
+                TidalReading reading = TidalReading.builder()
+                        .stationId("scenario")
+                        .timestamp(LocalDateTime.now())
+                        .waveHeight(waveHeights[cell / directionCount])
+                        .wavePeriod(wavePeriod)
+                        .waveDirection(waveDirections[cell % directionCount])
+                        .stationName("Scenario")
+                        .build();
+                List<RouteImpact> impacts = tidalImpactCalculator.calculateImpacts(routeIds, reading);
+                for (int r = 0; r < routeIds.size(); r++) {
+                    RouteImpact impact = impacts.get(r);
+                    boolean delayed = impact.getImpactLevel() != RouteImpact.ImpactLevel.NONE;
+                    for (int t = 0; t < durationCount; t++) {
+                        int index = cell * durationCount + t;
+                        levels[r][index] = impact.getImpactLevel().ordinal();
+                        delays[r][index] = impact.getEstimatedDelayMinutes();
+                        affectedTrips[r][index] = delayed ? (int) Math.round(tripsPerHour[r] * durations[t]) : 0;
+                    }
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Scenario evaluation interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Scenario evaluation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        Map<String, RouteScenarioResults> results = new LinkedHashMap<>();
+        for (int r = 0; r < routeIds.size(); r++) {
+            results.put(routeIds.get(r), new RouteScenarioResults(levels[r], delays[r], affectedTrips[r]));
+        }
+        double elapsedMillis = (System.nanoTime() - startTime) / 1_000_000.0;
+        log.info("Evaluated {} scenarios for {} routes in {} ms", cells, routeIds.size(), String.format("%.1f", elapsedMillis));
+
+        return new ScenarioMatrix(
+                waveHeights.clone(),
+                waveDirections.clone(),
+                durations.clone(),
+                Arrays.stream(RouteImpact.ImpactLevel.values()).map(Enum::name).toList(),
+                results,
+                elapsedMillis
+        );
+    }
+
+    /**
+     * Average scheduled departures per service hour of each route
+     */
+    private double[] tripsPerHour(List<String> routeIds) {
+        double[] rates = new double[routeIds.size()];
+        if (feedIndex.getVersion() == 0) {
+            return rates;
+        }
+        FeedSnapshot feed = feedIndex.getSnapshot();
+        for (int r = 0; r < routeIds.size(); r++) {
+            int route = feed.routeIndex(routeIds.get(r));
+            int trips = 0;
+            int first = Integer.MAX_VALUE;
+            int last = Integer.MIN_VALUE;
+            for (int trip = 0; trip < feed.tripCount(); trip++) {
+                int[] departures = feed.getTripDepartureSeconds()[trip];
+                if (feed.getTripRoute()[trip] != route || departures.length == 0) {
+                    continue;
+                }
+                trips++;
+                first = Math.min(first, departures[0]);
+                last = Math.max(last, departures[0]);
+            }
+            double spanHours = Math.max(1.0, (last - first) / 3600.0);
+            rates[r] = trips == 0 ? 0 : trips / spanHours;
+        }
+        return rates;
+    }
+
+    /**
+     * Per-route result arrays, indexed as described on {@link #evaluate}
+     */
+    public record RouteScenarioResults(int[] impactLevels, int[] delayMinutes, int[] affectedTrips) {}
+
+    public record ScenarioMatrix(
+            double[] waveHeights,
+            double[] waveDirections,
+            double[] durationsHours,
+            List<String> impactLevels, // Legend for the codes in impactLevels arrays
+            Map<String, RouteScenarioResults> routes,
+            double elapsedMillis
+    ) {}
+}
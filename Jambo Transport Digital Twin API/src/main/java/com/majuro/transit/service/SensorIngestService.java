@@ -0,0 +1,246 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.RouteSegmentOrientation;
+import com.majuro.transit.service.RouteProjectionService.RouteProjection;
+import com.majuro.transit.spatial.RouteGeometry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingests water-level samples from inundation sensors. Requests only enqueue samples on a
+ * lock-free queue; a scheduled drainer resolves each sensor to the route segment it sits on and
+ * aggregates samples into per-segment tumbling windows (max and mean level). Each closed window
+ * is published as an immutable snapshot, so impact calculations read sensor state without locks.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SensorIngestService {
+
+    private final RouteProjectionService projectionService;
+    private final RouteOrientationService orientationService;
+    private final RoutePathService routePathService;
+
+    @Value("${transit.sensors.window-seconds:60}")
+    private int windowSeconds;
+
+    // Samples arriving more than this many windows late are dropped
+    @Value("${transit.sensors.allowed-lateness-windows:1}")
+    private int allowedLatenessWindows;
+
+    @Value("${transit.sensors.max-queue-size:100000}")
+    private int maxQueueSize;
+
+    // Sensors further than this from every route are ignored
+    @Value("${transit.sensors.max-offset-meters:100}")
+    private double maxOffsetMeters;
+
+    // Windows older than this no longer count as current observations
+    @Value("${transit.sensors.stale-seconds:600}")
+    private int staleSeconds;
+
+    // Sensors whose resolved segment is remembered; the least recently reporting are forgotten
+    @Value("${transit.sensors.max-sensors:10000}")
+    private int maxSensors;
+
+    private final ConcurrentLinkedQueue<Sample> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // Only touched by the drainer thread
+    private final Map<String, SensorLocation> sensorLocations = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SensorLocation> eldest) {
+            return size() > maxSensors;
+        }
+    };
+    private final TreeMap<Long, Map<String, WindowAccumulator>> openWindows = new TreeMap<>();
+
+    private volatile ObservedLevels observed = new ObservedLevels(0, Map.of());
+
+    /**
+     * Enqueue a batch of samples
+     * @return Number of samples accepted; the rest were rejected because the queue is full
+     */
+    public int ingest(List<Sample> samples) {
+        int accepted = 0;
+        for (Sample sample : samples) {
+            if (queued.incrementAndGet() > maxQueueSize) {
+                queued.decrementAndGet();
+                rejected.incrementAndGet();
+                continue;
+            }
+            queue.offer(sample);
+            accepted++;
+        }
+        return accepted;
+    }
+
+    /**
+     * @return Latest closed window per segment that is not yet stale, keyed by {@link #segmentKey}
+     */
+    public ObservedLevels getObservedLevels() {
+        return observed;
+    }
+
+    public IngestStats getStats() {
+        ObservedLevels current = observed;
+        return new IngestStats(queued.get(), rejected.get(), dropped.get(), current.levels.size(), current.version);
+    }
+
+    public static String segmentKey(String routeId, String fromStop, String toStop) {
+        return routeId + ":" + fromStop + ">" + toStop;
+    }
+
+    @Scheduled(fixedDelayString = "${transit.sensors.drain-interval-millis:200}")
+    public void drain() {
+        long windowMillis = windowSeconds * 1000L;
+        long currentWindow = System.currentTimeMillis() / windowMillis;
+        long oldestOpen = currentWindow - allowedLatenessWindows;
+
+        Sample sample;
+        while ((sample = queue.poll()) != null) {
+            queued.decrementAndGet();
+            long window = sample.timestampMillis() / windowMillis;
+            // Drop late samples, and samples from clocks running more than a window ahead, which
+            // would otherwise hold windows open until their time comes
+            if (window < oldestOpen || window > currentWindow + 1) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            String segment = resolveSegment(sample);
+            if (segment == null) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            openWindows.computeIfAbsent(window, w -> new HashMap<>())
+                    .computeIfAbsent(segment, s -> new WindowAccumulator())
+                    .add(sample.waterLevelMeters());
+        }
+
+        closeWindows(oldestOpen, windowMillis);
+    }
+
+    /**
+     * Publish windows that can no longer receive samples and expire stale observations
+     */
+    private void closeWindows(long oldestOpen, long windowMillis) {
+        Map<Long, Map<String, WindowAccumulator>> closed = openWindows.headMap(oldestOpen);
+        long cutoff = System.currentTimeMillis() - staleSeconds * 1000L;
+        boolean anyStale = observed.levels.values().stream().anyMatch(level -> level.windowEndMillis() < cutoff);
+        if (closed.isEmpty() && !anyStale) {
+            return;
+        }
+
+        Map<String, SegmentWaterLevel> levels = new HashMap<>(observed.levels);
+        levels.values().removeIf(level -> level.windowEndMillis() < cutoff);
+        closed.forEach((window, segments) -> segments.forEach((segment, accumulator) ->
+                levels.put(segment, new SegmentWaterLevel(
+                        segment,
+                        window * windowMillis,
+                        (window + 1) * windowMillis,
+                        accumulator.count,
+                        accumulator.max,
+                        accumulator.sum / accumulator.count))));
+        closed.clear();
+
+        observed = new ObservedLevels(observed.version + 1, Map.copyOf(levels));
+    }
+
+    /**
+     * Segment a sensor sits on, cached per sensor until the route geometry changes
+     */
+    private String resolveSegment(Sample sample) {
+        long geometryVersion = routePathService.getCacheVersion();
+        SensorLocation location = sensorLocations.get(sample.sensorId());
+        if (location != null && location.geometryVersion == geometryVersion
+                && location.latitude == sample.latitude() && location.longitude == sample.longitude()) {
+            return location.segmentKey;
+        }
+
+        Set<String> routeIds = new LinkedHashSet<>();
+        for (RouteSegmentOrientation segment : orientationService.getAllOrientations()) {
+            routeIds.add(segment.getRouteId());
+        }
+
+        RouteProjection best = null;
+        for (String routeId : routeIds) {
+            try {
+                RouteProjection projection = projectionService.project(routeId, null, sample.latitude(), sample.longitude());
+                if (projection != null && (best == null || projection.offsetMeters() < best.offsetMeters())) {
+                    best = projection;
+                }
+            } catch (RuntimeException e) {
+                // Route without geometry yet
+            }
+        }
+
+        String segmentKey = null;
+        if (best != null && best.offsetMeters() <= maxOffsetMeters) {
+            RouteGeometry geometry = routePathService.getCachedGeometry(best.patternKey());
+            int from = best.previousStopIndex();
+            if (geometry != null && from + 1 < geometry.stopCount()) {
+                segmentKey = segmentKey(best.routeId(), geometry.stopId(from), geometry.stopId(from + 1));
+            }
+        }
+        sensorLocations.put(sample.sensorId(),
+                new SensorLocation(geometryVersion, sample.latitude(), sample.longitude(), segmentKey));
+        if (segmentKey == null) {
+            log.debug("Sensor {} is not on any route", sample.sensorId());
+        }
+        return segmentKey;
+    }
+
+    private static final class WindowAccumulator {
+        long count;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum;
+
+        void add(double level) {
+            count++;
+            max = Math.max(max, level);
+            sum += level;
+        }
+    }
+
+    private record SensorLocation(long geometryVersion, double latitude, double longitude, String segmentKey) {}
+
+    /**
+     * One water-level sample from a sensor
+     */
+    public record Sample(String sensorId, double latitude, double longitude, double waterLevelMeters, long timestampMillis) {}
+
+    /**
+     * Aggregate of one tumbling window on a segment
+     */
+    public record SegmentWaterLevel(
+            String segmentKey,
+            long windowStartMillis,
+            long windowEndMillis,
+            long samples,
+            double maxLevelMeters,
+            double meanLevelMeters
+    ) {}
+
+    /**
+     * Immutable snapshot of observed levels; the version changes whenever a window closes
+     */
+    public record ObservedLevels(long version, Map<String, SegmentWaterLevel> levels) {}
+
+    public record IngestStats(int queued, long rejected, long dropped, int observedSegments, long version) {}
+}
@@ -0,0 +1,146 @@
+package com.majuro.transit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON of responses that only change when the feed is reloaded (or, for path
+ * responses, when route geometry is generated). Each body is serialized and gzip-compressed once
+ * per version and served with a strong ETag, so repeat requests cost a map lookup and a client
+ * with a current copy gets a 304.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StaticResponseCache {
+
+    private final ObjectMapper objectMapper;
+    private final GtfsFeedIndex feedIndex;
+    private final RoutePathService routePathService;
+
+    @Value("${transit.static-cache.max-entries:2000}")
+    private int maxEntries;
+
+    // Bodies smaller than this are not worth compressing
+    @Value("${transit.static-cache.min-gzip-bytes:1024}")
+    private int minGzipBytes;
+
+    @Value("${transit.static-cache.max-age-seconds:60}")
+    private long maxAgeSeconds;
+
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+    @EventListener({GtfsFeedLoadedEvent.class, RouteGeometryPrewarmedEvent.class})
+    public void invalidate() {
+        entries.clear();
+    }
+
+    /**
+     * Serve the cached body for {@code key}, building it with {@code body} if the cached copy is
+     * from an older version
+     * @param geometry Whether the body depends on generated route geometry as well as the feed
+     * @param request The request, for If-None-Match and Accept-Encoding
+     */
+    public ResponseEntity<byte[]> serve(String key, boolean geometry, Supplier<?> body, WebRequest request) {
+        CachedResponse response = get(key, geometry, body);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean compressed = response.gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        String etag = compressed ? response.gzipEtag() : response.etag;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).mustRevalidate());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (request.checkNotModified(etag)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (compressed) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(response.gzip, headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(response.json, headers, HttpStatus.OK);
+    }
+
+    private CachedResponse get(String key, boolean geometry, Supplier<?> body) {
+        String version = version(geometry);
+        CachedResponse cached = entries.get(key);
+        if (cached != null && cached.version.equals(version)) {
+            return cached;
+        }
+
+        CachedResponse built = build(version, body.get());
+        // Not cached while the feed is loading, or if the feed or geometry changed while building
+        // (generating a path adds geometry, so the next request caches it)
+        if (feedIndex.getVersion() == 0 || !version.equals(version(geometry))) {
+            return built;
+        }
+        if (entries.size() >= maxEntries) {
+            log.debug("Static response cache full ({} entries), clearing", entries.size());
+            entries.clear();
+        }
+        entries.put(key, built);
+        return built;
+    }
+
+    private String version(boolean geometry) {
+        long feedVersion = feedIndex.getVersion();
+        return geometry ? feedVersion + "." + routePathService.getCacheVersion() : Long.toString(feedVersion);
+    }
+
+    private CachedResponse build(String version, Object body) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize response", e);
+        }
+
+        // Digest of the content, so an unchanged body keeps its ETag across reloads and restarts
+        String tag = DigestUtils.md5DigestAsHex(json);
+        return new CachedResponse(version, json, json.length >= minGzipBytes ? gzip(json) : null, "\"" + tag + "\"");
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compress response", e);
+        }
+        return out.toByteArray();
+    }
+
+    private record CachedResponse(String version, byte[] json, byte[] gzip, String etag) {
+        /**
+         * The compressed representation gets its own strong ETag
+         */
+        String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.service.DelayPropagationService.DelayTable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Upcoming arrivals at a stop, answered from the per-stop boards of the {@link FeedSnapshot}:
+ * a binary search for the current time followed by reading calls until {@code limit} trips
+ * running on the service date are found.
+ * Batch lookups resolve every stop against the same timetable and impact version.
+ */
+@Service
+@RequiredArgsConstructor
+public class StopBoardService {
+
+    private final DelayPropagationService delayPropagationService;
+    private final RouteImpactCache routeImpactCache;
+
+    @Value("${transit.stops.max-batch-stops:500}")
+    private int maxBatchStops;
+
+    /**
+     * @return Next calls at the stop arriving at or after the given time, in arrival order, counting
+     *         only trips whose service runs on that date
+     */
+    public List<UpcomingArrival> getUpcomingArrivals(String stopId, LocalDateTime now, int limit) {
+        DelayTable table = delayPropagationService.getDelayTable();
+        int stop = table.snapshot().stopIndex(stopId);
+        if (stop < 0) {
+            throw new RuntimeException("Stop not found: " + stopId);
+        }
+        return upcoming(table, stop, now, limit);
+    }
+
+    /**
+     * Prepare a batch for several stops; unknown stop IDs are skipped
+     */
+    public StopBatch batchForStops(List<String> stopIds, LocalDateTime now, int limit) {
+        checkBatchSize(stopIds.size());
+        DelayTable table = delayPropagationService.getDelayTable();
+        int[] stops = stopIds.stream()
+                .mapToInt(table.snapshot()::stopIndex)
+                .filter(stop -> stop >= 0)
+                .toArray();
+        return new StopBatch(table, stops, now, limit);
+    }
+
+    /**
+     * Prepare a batch for every stop inside a bounding box
+     */
+    public StopBatch batchWithin(double minLat, double minLon, double maxLat, double maxLon,
+                                 LocalDateTime now, int limit) {
+        DelayTable table = delayPropagationService.getDelayTable();
+        FeedSnapshot snapshot = table.snapshot();
+        int[] stops = IntStream.range(0, snapshot.stopCount())
+                .filter(stop -> snapshot.getStopLats()[stop] >= minLat && snapshot.getStopLats()[stop] <= maxLat
+                        && snapshot.getStopLons()[stop] >= minLon && snapshot.getStopLons()[stop] <= maxLon)
+                .toArray();
+        checkBatchSize(stops.length);
+        return new StopBatch(table, stops, now, limit);
+    }
+
+    private void checkBatchSize(int stops) {
+        if (stops > maxBatchStops) {
+            throw new RuntimeException("Request covers " + stops + " stops; the limit is " + maxBatchStops);
+        }
+    }
+
+    private StopArrivals stopArrivals(DelayTable table, int stop, LocalDateTime now, int limit) {
+        FeedSnapshot snapshot = table.snapshot();
+        return new StopArrivals(
+                snapshot.getStopIds()[stop],
+                snapshot.getStopNames()[stop],
+                snapshot.getStopLats()[stop],
+                snapshot.getStopLons()[stop],
+                upcoming(table, stop, now, limit)
+        );
+    }
+
+    private List<UpcomingArrival> upcoming(DelayTable table, int stop, LocalDateTime now, int limit) {
+        FeedSnapshot snapshot = table.snapshot();
+        LocalDate serviceDate = now.toLocalDate();
+        int[] board = snapshot.getStopBoardSeconds()[stop];
+        int[] trips = snapshot.getStopBoardTrips()[stop];
+        int[] positions = snapshot.getStopBoardPositions()[stop];
+
+        List<UpcomingArrival> arrivals = new ArrayList<>(Math.max(0, Math.min(limit, board.length)));
+        for (int k = snapshot.firstBoardEntry(stop, now.toLocalTime().toSecondOfDay());
+             k < board.length && arrivals.size() < limit; k++) {
+            int trip = trips[k];
+            if (!snapshot.isTripActive(trip, serviceDate)) {
+                continue;
+            }
+            int route = snapshot.getTripRoute()[trip];
+            String routeId = route < 0 ? null : snapshot.getRouteIds()[route];
+            int[] delays = table.tripDelaySeconds()[trip];
+            arrivals.add(new UpcomingArrival(
+                    snapshot.getTripIds()[trip],
+                    routeId,
+                    route < 0 ? null : snapshot.getRouteShortNames()[route],
+                    snapshot.getTripHeadsigns()[trip],
+                    board[k],
+                    positions[k] < delays.length ? delays[positions[k]] : 0,
+                    impact(table, routeId)
+            ));
+        }
+        return arrivals;
+    }
+
+    private RouteImpact impact(DelayTable table, String routeId) {
+        RouteImpact impact = routeId == null ? null : table.impacts().byRoute().get(routeId);
+        return impact != null ? impact : routeImpactCache.getImpact(routeId);
+    }
+
+    /**
+     * Stops resolved against one timetable and impact version. Arrivals are computed stop by stop
+     * as the batch is walked, so a response can be written while it is being resolved.
+     */
+    public final class StopBatch {
+        private final DelayTable table;
+        private final int[] stops;
+        private final LocalDateTime now;
+        private final int limit;
+
+        private StopBatch(DelayTable table, int[] stops, LocalDateTime now, int limit) {
+            this.table = table;
+            this.stops = stops;
+            this.now = now;
+            this.limit = limit;
+        }
+
+        public int size() {
+            return stops.length;
+        }
+
+        public void forEach(StopArrivalsConsumer consumer) throws IOException {
+            for (int stop : stops) {
+                consumer.accept(stopArrivals(table, stop, now, limit));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface StopArrivalsConsumer {
+        void accept(StopArrivals stop) throws IOException;
+    }
+
+    /**
+     * Upcoming arrivals at one stop
+     */
+    public record StopArrivals(
+            String stopId,
+            String stopName,
+            double latitude,
+            double longitude,
+            List<UpcomingArrival> arrivals
+    ) {}
+
+    /**
+     * One call at a stop; times are seconds since midnight
+     */
+    public record UpcomingArrival(
+            String tripId,
+            String routeId,
+            String routeShortName,
+            String headsign,
+            int scheduledArrivalSeconds,
+            int delaySeconds,          // Tidal delay propagated up to this stop
+            RouteImpact impact         // Impact of the version the delay was computed from
+    ) {}
+}
@@ -0,0 +1,199 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.spatial.GeoMath;
+import com.majuro.transit.spatial.RouteGeometry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Dense stop-to-stop matrix of along-route distance and scheduled run time. Every ordered stop
+ * pair served by a stop pattern gets an entry; when several patterns serve the same pair the
+ * shortest one wins. Entries are stored in flat primitive arrays indexed by
+ * {@code from * stopCount + to}, so lookups are O(1).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StopTravelMatrixService {
+
+    private static final int SECONDS_PER_DAY = 24 * 3600;
+
+    private final GtfsFeedIndex feedIndex;
+    private final RoutePathService routePathService;
+
+    private volatile TravelMatrix matrix;
+
+    @EventListener({GtfsFeedLoadedEvent.class, RouteGeometryPrewarmedEvent.class})
+    public void onFeedOrGeometryChanged() {
+        if (feedIndex.getVersion() == 0) {
+            return;
+        }
+        TravelMatrix rebuilt = currentMatrix();
+        log.info("Built stop travel matrix: {} stops, {} served pairs", rebuilt.stopCount, rebuilt.servedPairs);
+    }
+
+    /**
+     * @return Along-route distance in km between two stops
+     */
+    public double getDistanceKm(String fromStopId, String toStopId) {
+        TravelMatrix current = currentMatrix();
+        return current.distanceKm(current.cell(fromStopId, toStopId));
+    }
+
+    /**
+     * @return Scheduled run time in seconds between departing one stop and arriving at the other
+     */
+    public int getRunSeconds(String fromStopId, String toStopId) {
+        TravelMatrix current = currentMatrix();
+        return current.runSeconds(current.cell(fromStopId, toStopId));
+    }
+
+    public double getDistanceKm(int fromStopIndex, int toStopIndex) {
+        TravelMatrix current = currentMatrix();
+        return current.distanceKm(current.cell(fromStopIndex, toStopIndex));
+    }
+
+    public int getRunSeconds(int fromStopIndex, int toStopIndex) {
+        TravelMatrix current = currentMatrix();
+        return current.runSeconds(current.cell(fromStopIndex, toStopIndex));
+    }
+
+    /**
+     * @return Whether some stop pattern travels from the first stop to the second
+     */
+    public boolean isServed(String fromStopId, String toStopId) {
+        TravelMatrix current = currentMatrix();
+        int from = current.snapshot.stopIndex(fromStopId);
+        int to = current.snapshot.stopIndex(toStopId);
+        return from >= 0 && to >= 0 && current.runSeconds[from * current.stopCount + to] >= 0;
+    }
+
+    private TravelMatrix currentMatrix() {
+        FeedSnapshot snapshot = feedIndex.getSnapshot();
+        long geometryVersion = routePathService.getCacheVersion();
+        TravelMatrix current = matrix;
+        if (current != null && current.snapshot == snapshot && current.geometryVersion == geometryVersion) {
+            return current;
+        }
+        synchronized (this) {
+            if (matrix == null || matrix.snapshot != snapshot || matrix.geometryVersion != geometryVersion) {
+                matrix = build(snapshot, geometryVersion);
+            }
+            return matrix;
+        }
+    }
+
+    private TravelMatrix build(FeedSnapshot snapshot, long geometryVersion) {
+        int n = snapshot.stopCount();
+        float[] distances = new float[n * n];
+        int[] runSeconds = new int[n * n];
+        Arrays.fill(distances, Float.NaN);
+        Arrays.fill(runSeconds, -1);
+
+        for (int p = 0; p < snapshot.patternCount(); p++) {
+            int[] stops = snapshot.getPatternStops()[p];
+            int trip = snapshot.getPatternRepresentativeTrip()[p];
+            int[] arrivals = snapshot.getTripArrivalSeconds()[trip];
+            int[] departures = snapshot.getTripDepartureSeconds()[trip];
+            double[] along = alongRouteKm(snapshot, p, stops);
+
+            for (int i = 0; i < stops.length; i++) {
+                for (int j = i + 1; j < stops.length; j++) {
+                    if (stops[i] == stops[j]) {
+                        continue; // Loop back to the same stop
+                    }
+                    int cell = stops[i] * n + stops[j];
+                    int seconds = arrivals[j] - departures[i];
+                    if (seconds < 0) {
+                        seconds += SECONDS_PER_DAY; // Trip runs past midnight
+                    }
+                    float distance = (float) (along[j] - along[i]);
+                    if (runSeconds[cell] < 0 || distance < distances[cell]) {
+                        distances[cell] = distance;
+                        runSeconds[cell] = seconds;
+                    }
+                }
+            }
+        }
+
+        int served = 0;
+        for (int seconds : runSeconds) {
+            if (seconds >= 0) {
+                served++;
+            }
+        }
+        return new TravelMatrix(snapshot, geometryVersion, n, distances, runSeconds, served);
+    }
+
+    /**
+     * Cumulative distance of every stop along a pattern, from the road geometry when it has been
+     * cached, otherwise from straight lines between consecutive stops.
+     */
+    private double[] alongRouteKm(FeedSnapshot snapshot, int pattern, int[] stops) {
+        double[] along = new double[stops.length];
+        RouteGeometry geometry = routePathService.getCachedGeometry(snapshot.getPatternKeys()[pattern]);
+        if (geometry != null && geometry.stopCount() == stops.length) {
+            for (int i = 0; i < stops.length; i++) {
+                along[i] = geometry.stopDistanceKm(i);
+            }
+            return along;
+        }
+
+        double[] lats = snapshot.getStopLats();
+        double[] lons = snapshot.getStopLons();
+        for (int i = 1; i < stops.length; i++) {
+            along[i] = along[i - 1] + GeoMath.haversineKm(
+                    lats[stops[i - 1]], lons[stops[i - 1]], lats[stops[i]], lons[stops[i]]);
+        }
+        return along;
+    }
+
+    private record TravelMatrix(
+            FeedSnapshot snapshot,
+            long geometryVersion,
+            int stopCount,
+            float[] distancesKm,
+            int[] runSeconds,
+            int servedPairs
+    ) {
+        int cell(String fromStopId, String toStopId) {
+            int from = snapshot.stopIndex(fromStopId);
+            if (from < 0) {
+                throw new RuntimeException("Stop not found: " + fromStopId);
+            }
+            int to = snapshot.stopIndex(toStopId);
+            if (to < 0) {
+                throw new RuntimeException("Stop not found: " + toStopId);
+            }
+            return cell(from, to);
+        }
+
+        int cell(int from, int to) {
+            if (from < 0 || from >= stopCount || to < 0 || to >= stopCount) {
+                throw new RuntimeException("Stop index out of range: " + from + " -> " + to);
+            }
+            int cell = from * stopCount + to;
+            if (from != to && runSeconds[cell] < 0) {
+                throw new RuntimeException("No stop pattern travels from " + snapshot.getStopIds()[from] +
+                        " to " + snapshot.getStopIds()[to]);
+            }
+            return cell;
+        }
+
+        double distanceKm(int cell) {
+            float distance = distancesKm[cell];
+            return Float.isNaN(distance) ? 0.0 : distance;
+        }
+
+        int runSeconds(int cell) {
+            return Math.max(0, runSeconds[cell]);
+        }
+    }
+}
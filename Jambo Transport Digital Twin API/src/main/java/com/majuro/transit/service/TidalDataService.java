@@ -1,133 +1,201 @@
 package com.majuro.transit.service;
 
+import com.majuro.transit.event.TidalReadingRotatedEvent;
 import com.majuro.transit.model.TidalReading;
 import com.majuro.transit.repository.TidalReadingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ResourceLoader;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serves the current tidal reading from memory. The reading is published through an atomic
+ * holder by {@link #rotateData()}; the database only receives an append-only history of
+ * rotations, written asynchronously so readers never wait on SQL.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TidalDataService {
 
     private final TidalReadingRepository tidalReadingRepository;
-    private final WebClient.Builder webClientBuilder;
+    private final CdipWaveClient cdipWaveClient;
+    private final ResourceLoader resourceLoader;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TidalHistoryService tidalHistoryService;
+
+    @Value("${transit.tidal.persist-history:true}")
+    private boolean persistHistory;
+
+    // First timestamp requested from CDIP when nothing has been stored yet
+    @Value("${transit.tidal.cdip.initial-start:2025-08-08T00:00:00}")
+    private String initialStart;
+
+    // Read the local fixture instead of calling ERDDAP
+    @Value("${transit.tidal.cdip.offline:false}")
+    private boolean offline;
+
+    @Value("${transit.tidal.cdip.fixture:classpath:cdip/wave_agg_163.csv}")
+    private String fixtureLocation;
 
-    private List<TidalReading> historicalData = new ArrayList<>();
-    private int currentIndex = 0;
+    @Value("${transit.tidal.cdip.timeout-seconds:60}")
+    private int fetchTimeoutSeconds;
 
-    private static final String CDIP_API_URL =
-        "https://erddap.cdip.ucsd.edu/erddap/tabledap/wave_agg.xhtml" +
-        "?station_id,time,waveHs,waveTp,waveTa,waveDp,metaStationName,latitude,longitude" +
-        "&station_id=\"163\"" +
-        "&time>2025-08-08T00:30:00Z" +
-        "&waveFlagPrimary=1";
+    // Readings kept in memory for rotation and replay
+    @Value("${transit.tidal.max-replay-readings:8760}")
+    private int maxReplayReadings;
+
+    private volatile boolean replayActive;
+    private final AtomicBoolean fetching = new AtomicBoolean();
+
+    // Replay data and the reading published from it, swapped together so an index always refers
+    // to the list it was taken from
+    private final AtomicReference<ReadingState> state = new AtomicReference<>(
+            new ReadingState(List.of(), new CurrentReading(0, -1, defaultReading())));
+
+    // Single writer keeps the audit log in rotation order
+    private final ExecutorService historyWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tidal-history-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @PostConstruct
     public void initialize() {
-        log.info("Initializing Tidal Data Service - fetching Aug 29 historical data...");
-        fetchHistoricalData();
+        log.info("Initializing Tidal Data Service - fetching historical data since {}...", initialStart);
+        List<TidalReading> readings = new ArrayList<>(fetchSince(LocalDateTime.parse(initialStart)));
+        if (readings.isEmpty()) {
+            // Create mock data for testing if neither the API nor the fixture has readings
+            createMockData(readings);
+        }
+        readings.sort(Comparator.comparing(TidalReading::getTimestamp));
+        tidalHistoryService.appendAll(readings);
+        ReadingState loaded = state.updateAndGet(previous -> extend(previous, readings));
 
-        if (!historicalData.isEmpty()) {
-            // Save first reading to database
-            TidalReading firstReading = historicalData.get(0);
-            tidalReadingRepository.save(firstReading);
+        if (!loaded.readings().isEmpty()) {
+            TidalReading firstReading = rotate(true).current().reading();
             log.info("Loaded {} historical tidal readings. Starting with wave height: {}m",
-                     historicalData.size(), firstReading.getWaveHeight());
+                     loaded.readings().size(), firstReading.getWaveHeight());
         }
     }
 
-    private void fetchHistoricalData() {
-        try {
-            WebClient webClient = webClientBuilder.build();
-
-            String htmlData = webClient.get()
-                    .uri(CDIP_API_URL)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-
-            if (htmlData != null) {
-                parseHTMLTableData(htmlData);
-            }
-        } catch (Exception e) {
-            log.error("Failed to fetch historical tidal data: {}", e.getMessage());
-            // Create mock data for testing if API fails
-            createMockData();
+    /**
+     * Fetch readings newer than the last stored one and append them to the history. The request
+     * is subscribed to rather than blocked on, so a slow CDIP response never holds a scheduler
+     * thread; a poll is skipped while the previous one is still in flight.
+     */
+    @Scheduled(fixedDelayString = "${transit.tidal.cdip.poll-millis:1800000}",
+               initialDelayString = "${transit.tidal.cdip.poll-millis:1800000}")
+    public void fetchNewReadings() {
+        if (offline || !fetching.compareAndSet(false, true)) {
+            return;
         }
+        LocalDateTime latest = tidalHistoryService.getLatestTimestamp();
+        cdipWaveClient.fetchSince(latest != null ? latest : LocalDateTime.parse(initialStart))
+                .collectList()
+                .timeout(Duration.ofSeconds(fetchTimeoutSeconds))
+                .doFinally(signal -> fetching.set(false))
+                .subscribe(this::appendFetched,
+                           e -> log.error("Failed to fetch tidal data from CDIP: {}", e.getMessage()));
     }
 
-    private void parseHTMLTableData(String htmlData) {
-        // Parse HTML table format from CDIP API
-        // Each row starts with <tr>, data cells are <td>...</td>
-        // Skip first 2 rows (headers), then from row 3 onwards:
-        // 2nd <td> = timestamp, 3rd <td> = wave height, 6th <td> = direction
-
-        String[] lines = htmlData.split("<tr>");
-
-        // Start from row 3 (index 3) - skip headers
-        for (int i = 3; i < lines.length; i++) {
-            String row = lines[i];
-            if (!row.contains("<td>")) continue;
-
-            try {
-                // Extract all <td> values
-                List<String> tdValues = new ArrayList<>();
-                String[] tdSplit = row.split("<td>");
-
-                for (int j = 1; j < tdSplit.length; j++) {
-                    String td = tdSplit[j];
-                    int endIndex = td.indexOf("</td>");
-                    if (endIndex > 0) {
-                        String value = td.substring(0, endIndex).trim();
-                        tdValues.add(value);
-                    }
-                }
+    /**
+     * Append fetched readings to the compressed history and the newer ones, sorted, to the tail
+     * of the replay data, dropping the oldest beyond {@code max-replay-readings}
+     */
+    private void appendFetched(List<TidalReading> fetched) {
+        if (fetched.isEmpty()) {
+            return;
+        }
+        int appended = tidalHistoryService.appendAll(fetched);
 
-                // Need at least 6 td values (timestamp=2nd, waveHeight=3rd, direction=6th)
-                if (tdValues.size() < 6) continue;
+        List<TidalReading> sorted = fetched.stream()
+                .sorted(Comparator.comparing(TidalReading::getTimestamp))
+                .toList();
+        state.updateAndGet(previous -> extend(previous, sorted));
+        log.info("Fetched {} new tidal readings from CDIP ({} stored)", fetched.size(), appended);
+    }
 
-                String timestamp = tdValues.get(1);  // 2nd td (index 1)
-                String waveHeight = tdValues.get(2); // 3rd td (index 2)
-                String waveDirection = tdValues.get(5); // 6th td (index 5)
+    /**
+     * Replay data with the sorted readings newer than its last one appended, keeping the most
+     * recent {@code max-replay-readings}; older ones remain queryable through
+     * {@link TidalHistoryService}
+     */
+    private ReadingState extend(ReadingState previous, List<TidalReading> sorted) {
+        List<TidalReading> readings = previous.readings();
+        LocalDateTime last = readings.isEmpty() ? null : readings.get(readings.size() - 1).getTimestamp();
+        List<TidalReading> extended = new ArrayList<>(readings.size() + sorted.size());
+        extended.addAll(readings);
+        for (TidalReading reading : sorted) {
+            if (last == null || reading.getTimestamp().isAfter(last)) {
+                extended.add(reading);
+            }
+        }
+        if (extended.size() == readings.size()) {
+            return previous;
+        }
 
-                TidalReading reading = TidalReading.builder()
-                        .stationId("163")
-                        .timestamp(parseTimestamp(timestamp))
-                        .waveHeight(Double.parseDouble(waveHeight))
-                        .wavePeriod(12.0) // Not using waveTp for now
-                        .waveDirection(Double.parseDouble(waveDirection))
-                        .stationName("Majuro Station 163")
-                        .latitude(7.0897)
-                        .longitude(171.2720)
-                        .build();
+        int dropped = Math.max(0, extended.size() - maxReplayReadings);
+        CurrentReading current = previous.current();
+        // Keep the rotation on the same reading after the head is dropped
+        return new ReadingState(List.copyOf(extended.subList(dropped, extended.size())),
+                new CurrentReading(current.version(), Math.max(-1, current.index() - dropped), current.reading()));
+    }
 
-                historicalData.add(reading);
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        historyWriter.shutdown();
+        if (!historyWriter.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Tidal history writer did not drain before shutdown");
+        }
+    }
 
+    /**
+     * Stream readings after a timestamp from CDIP, or from the local fixture when offline or
+     * when the API is unreachable
+     */
+    private List<TidalReading> fetchSince(LocalDateTime since) {
+        if (!offline) {
+            try {
+                List<TidalReading> readings = cdipWaveClient.fetchSince(since)
+                        .collectList()
+                        .block(Duration.ofSeconds(fetchTimeoutSeconds));
+                log.info("Fetched {} tidal readings from CDIP API", readings == null ? 0 : readings.size());
+                return readings == null ? List.of() : readings;
             } catch (Exception e) {
-                log.warn("Failed to parse HTML row: {} - {}", row.substring(0, Math.min(100, row.length())), e.getMessage());
+                log.error("Failed to fetch tidal data from CDIP: {}", e.getMessage());
             }
         }
-
-        log.info("Successfully parsed {} tidal readings from CDIP API", historicalData.size());
-    }
-
-    private LocalDateTime parseTimestamp(String timestamp) {
-        // Format: 2025-08-29T00:30:00Z
-        timestamp = timestamp.replace("\"", "").replace("Z", "");
-        return LocalDateTime.parse(timestamp, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        try {
+            List<TidalReading> readings = cdipWaveClient.readFixture(resourceLoader.getResource(fixtureLocation), since)
+                    .collectList()
+                    .block();
+            log.info("Loaded {} tidal readings from fixture {}", readings == null ? 0 : readings.size(), fixtureLocation);
+            return readings == null ? List.of() : readings;
+        } catch (Exception e) {
+            log.warn("Failed to read tidal fixture {}: {}", fixtureLocation, e.getMessage());
+            return List.of();
+        }
     }
 
-    private void createMockData() {
+    private void createMockData(List<TidalReading> historicalData) {
         log.info("Creating mock tidal data for testing...");
 
         // Create 24 hours of mock data with varying wave heights and directions
@@ -158,45 +226,143 @@ public class TidalDataService {
     // Rotate through historical data every 10 minutes (simulates 1 hour of real time)
     @Scheduled(fixedRate = 600000) // 10 minutes
     public void rotateData() {
-        if (historicalData.isEmpty()) {
+        if (state.get().readings().isEmpty()) {
             log.warn("No historical data available for rotation");
             return;
         }
+        if (replayActive) {
+            // TidalReplayClock publishes interpolated readings instead
+            return;
+        }
 
-        currentIndex = (currentIndex + 1) % historicalData.size();
-        TidalReading currentReading = historicalData.get(currentIndex);
-
-        // Update database with new "current" reading
-        tidalReadingRepository.deleteAll();
-        tidalReadingRepository.save(currentReading);
+        ReadingState rotated = rotate(false);
+        TidalReading currentReading = rotated.current().reading();
 
         log.info("Rotated to reading {}/{}: Wave Height: {}m, Direction: {} ({})",
-                 currentIndex + 1,
-                 historicalData.size(),
+                 rotated.current().index() + 1,
+                 rotated.readings().size(),
                  currentReading.getWaveHeight(),
                  currentReading.getWaveDirection(),
                  currentReading.getDirectionName());
     }
 
+    /**
+     * @return The current reading, served from memory
+     */
     public TidalReading getCurrentReading() {
-        return tidalReadingRepository.findFirstByOrderByTimestampDesc()
-                .orElseGet(() -> {
-                    if (!historicalData.isEmpty()) {
-                        return historicalData.get(currentIndex);
-                    }
-                    // Fallback default reading
-                    return TidalReading.builder()
-                            .stationId("163")
-                            .timestamp(LocalDateTime.now())
-                            .waveHeight(3.0)
-                            .wavePeriod(12.0)
-                            .waveDirection(180.0)
-                            .stationName("Default")
-                            .build();
-                });
+        return state.get().current().reading();
+    }
+
+    /**
+     * @return Version of the current reading, incremented on every rotation
+     */
+    public long getCurrentVersion() {
+        return state.get().current().version();
+    }
+
+    /**
+     * @return The current reading together with its version, read atomically
+     */
+    public CurrentReading getCurrent() {
+        return state.get().current();
     }
 
     public List<TidalReading> getHistoricalData() {
-        return new ArrayList<>(historicalData);
+        return state.get().readings();
+    }
+
+    /**
+     * Hand control of the current reading to the replay clock, or back to the 10 minute rotation
+     */
+    public void setReplayActive(boolean replayActive) {
+        this.replayActive = replayActive;
+    }
+
+    public boolean isReplayActive() {
+        return replayActive;
+    }
+
+    /**
+     * Publish a reading interpolated by the replay clock as the current one. Only the first
+     * reading within each historical interval is appended to the history table.
+     * @param index Index of the historical reading at or before the replay time
+     */
+    public void publishReplayed(TidalReading reading, int index) {
+        ReadingState previous = state.getAndUpdate(current -> new ReadingState(current.readings(),
+                new CurrentReading(current.current().version() + 1, index, reading)));
+        announce(previous.current().version() + 1, reading, previous.current().index() != index);
+    }
+
+    /**
+     * Publish the next historical reading, or the first one, as the current one and queue it for
+     * the history table. The index and the reading come from the same list in one update.
+     */
+    private ReadingState rotate(boolean fromStart) {
+        ReadingState rotated = state.updateAndGet(previous -> {
+            List<TidalReading> readings = previous.readings();
+            int index = fromStart ? 0 : (previous.current().index() + 1) % readings.size();
+            return new ReadingState(readings,
+                    new CurrentReading(previous.current().version() + 1, index, copyOf(readings.get(index))));
+        });
+        announce(rotated.current().version(), rotated.current().reading(), true);
+        return rotated;
     }
+
+    private void announce(long version, TidalReading reading, boolean appendToHistory) {
+        if (appendToHistory) {
+            appendHistory(reading);
+        }
+        eventPublisher.publishEvent(new TidalReadingRotatedEvent(version, reading));
+    }
+
+    private void appendHistory(TidalReading reading) {
+        if (!persistHistory) {
+            return;
+        }
+        // Save a detached copy so each rotation inserts a new row
+        TidalReading row = copyOf(reading);
+        try {
+            historyWriter.execute(() -> {
+                try {
+                    tidalReadingRepository.save(row);
+                } catch (Exception e) {
+                    log.warn("Failed to append tidal reading to history: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Tidal history writer is shut down, skipping reading at {}", reading.getTimestamp());
+        }
+    }
+
+    private static TidalReading copyOf(TidalReading reading) {
+        return TidalReading.builder()
+                .stationId(reading.getStationId())
+                .timestamp(reading.getTimestamp())
+                .waveHeight(reading.getWaveHeight())
+                .wavePeriod(reading.getWavePeriod())
+                .waveDirection(reading.getWaveDirection())
+                .stationName(reading.getStationName())
+                .latitude(reading.getLatitude())
+                .longitude(reading.getLongitude())
+                .build();
+    }
+
+    private static TidalReading defaultReading() {
+        // Fallback default reading until historical data is loaded
+        return TidalReading.builder()
+                .stationId("163")
+                .timestamp(LocalDateTime.now())
+                .waveHeight(3.0)
+                .wavePeriod(12.0)
+                .waveDirection(180.0)
+                .stationName("Default")
+                .build();
+    }
+
+    /**
+     * Immutable holder for the published reading and its position in the historical data
+     */
+    public record CurrentReading(long version, int index, TidalReading reading) {}
+
+    private record ReadingState(List<TidalReading> readings, CurrentReading current) {}
 }
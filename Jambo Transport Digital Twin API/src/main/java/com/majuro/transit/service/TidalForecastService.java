@@ -0,0 +1,228 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.event.GtfsFeedLoadedEvent;
+import com.majuro.transit.event.RouteGeometryPrewarmedEvent;
+import com.majuro.transit.model.RouteImpact;
+import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.service.TidalHistoryService.TidalAggregate;
+import com.majuro.transit.timeseries.AutoRegressiveModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short-range wave forecast. On a schedule an autoregressive model is fitted to the stored
+ * history (resampled to a fixed step) for wave height and for the two components of wave
+ * direction, and the next hours are forecast. Every forecast step is run through the impact
+ * calculator for each route, so forecast queries are served entirely from the cached result.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TidalForecastService {
+
+    private final TidalHistoryService tidalHistoryService;
+    private final TidalImpactCalculator tidalImpactCalculator;
+    private final RouteImpactCache routeImpactCache;
+
+    @Value("${transit.tidal.forecast.horizon-hours:48}")
+    private int horizonHours;
+
+    @Value("${transit.tidal.forecast.step-minutes:60}")
+    private int stepMinutes;
+
+    @Value("${transit.tidal.forecast.training-days:30}")
+    private int trainingDays;
+
+    @Value("${transit.tidal.forecast.max-order:24}")
+    private int maxOrder;
+
+    private volatile Forecast forecast;
+
+    /**
+     * Refit once the routes and their geometry are known, then on the configured schedule
+     */
+    @EventListener({GtfsFeedLoadedEvent.class, RouteGeometryPrewarmedEvent.class})
+    public void onRoutesChanged() {
+        refit();
+    }
+
+    @Scheduled(fixedRateString = "${transit.tidal.forecast.refit-millis:3600000}",
+               initialDelayString = "${transit.tidal.forecast.refit-millis:3600000}")
+    public void refit() {
+        try {
+            Forecast refitted = fit();
+            if (refitted != null) {
+                forecast = refitted;
+                log.info("Refitted wave forecast from {} samples: AR({}) height model, {} steps to {}",
+                        refitted.trainingSamples, refitted.heightModelOrder, refitted.points.size(),
+                        refitted.points.get(refitted.points.size() - 1).time());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refit wave forecast: {}", e.getMessage());
+        }
+    }
+
+    public List<ForecastPoint> getForecast() {
+        return currentForecast().points;
+    }
+
+    /**
+     * @return Forecast impacts for a route, with the first time delays are expected
+     */
+    public RouteForecast getRouteForecast(String routeId) {
+        RouteForecast routeForecast = currentForecast().byRoute.get(routeId);
+        if (routeForecast == null) {
+            throw new RuntimeException("No forecast available for route: " + routeId);
+        }
+        return routeForecast;
+    }
+
+    public List<RouteForecast> getAllRouteForecasts() {
+        return List.copyOf(currentForecast().byRoute.values());
+    }
+
+    private Forecast currentForecast() {
+        Forecast current = forecast;
+        if (current == null) {
+            throw new RuntimeException("Wave forecast is not available yet");
+        }
+        return current;
+    }
+
+    private Forecast fit() {
+        LocalDateTime latest = tidalHistoryService.getLatestTimestamp();
+        if (latest == null) {
+            return null;
+        }
+        long step = stepMinutes * 60L;
+        LocalDateTime from = latest.minusDays(trainingDays);
+        List<TidalAggregate> buckets = tidalHistoryService.aggregate(from, latest.plusSeconds(1), step);
+        if (buckets.isEmpty()) {
+            return null;
+        }
+
+        // Resample onto a regular grid, filling gaps from the previous bucket
+        long start = buckets.get(0).start().toEpochSecond(ZoneOffset.UTC);
+        long end = buckets.get(buckets.size() - 1).start().toEpochSecond(ZoneOffset.UTC);
+        int samples = (int) ((end - start) / step) + 1;
+        double[] heights = new double[samples];
+        double[] directionSin = new double[samples];
+        double[] directionCos = new double[samples];
+        int next = 0;
+        for (int i = 0; i < samples; i++) {
+            long time = start + i * step;
+            if (next < buckets.size() && buckets.get(next).start().toEpochSecond(ZoneOffset.UTC) == time) {
+                TidalAggregate bucket = buckets.get(next++);
+                double direction = Math.toRadians(bucket.meanWaveDirection());
+                heights[i] = bucket.avgWaveHeight();
+                directionSin[i] = Math.sin(direction);
+                directionCos[i] = Math.cos(direction);
+            } else {
+                heights[i] = heights[i - 1];
+                directionSin[i] = directionSin[i - 1];
+                directionCos[i] = directionCos[i - 1];
+            }
+        }
+        double period = buckets.get(buckets.size() - 1).avgWavePeriod();
+
+        AutoRegressiveModel heightModel = AutoRegressiveModel.fit(heights, maxOrder);
+        AutoRegressiveModel sinModel = AutoRegressiveModel.fit(directionSin, maxOrder);
+        AutoRegressiveModel cosModel = AutoRegressiveModel.fit(directionCos, maxOrder);
+
+        int steps = Math.max(1, horizonHours * 60 / stepMinutes);
+        double[] forecastHeights = heightModel.forecast(heights, steps);
+        double[] forecastSin = sinModel.forecast(directionSin, steps);
+        double[] forecastCos = cosModel.forecast(directionCos, steps);
+
+        List<String> routeIds = routeImpactCache.getAllImpacts().stream().map(RouteImpact::getRouteId).toList();
+        Map<String, List<RouteImpactForecast>> impactsByRoute = new LinkedHashMap<>();
+        routeIds.forEach(routeId -> impactsByRoute.put(routeId, new ArrayList<>()));
+
+        List<ForecastPoint> points = new ArrayList<>(steps);
+        for (int h = 0; h < steps; h++) {
+            LocalDateTime time = LocalDateTime.ofEpochSecond(end + (h + 1) * step, 0, ZoneOffset.UTC);
+            double height = Math.max(0.0, forecastHeights[h]);
+            double direction = Math.toDegrees(Math.atan2(forecastSin[h], forecastCos[h]));
+            if (direction < 0) {
+                direction += 360;
+            }
+            points.add(new ForecastPoint(time, height, direction));
+
+            TidalReading reading = TidalReading.builder()
+                    .stationId("163")
+                    .timestamp(time)
+                    .waveHeight(height)
+                    .wavePeriod(period)
+                    .waveDirection(direction)
+                    .stationName("Forecast")
+                    .build();
+            List<RouteImpact> impacts = tidalImpactCalculator.calculateImpacts(routeIds, reading);
+            for (int r = 0; r < routeIds.size(); r++) {
+                RouteImpact impact = impacts.get(r);
+                impactsByRoute.get(routeIds.get(r)).add(new RouteImpactForecast(
+                        time, impact.getImpactLevel(), impact.getEstimatedDelayMinutes(),
+                        impact.isServiceable(), height, impact.getInundationLevel()));
+            }
+        }
+
+        Map<String, RouteForecast> byRoute = new LinkedHashMap<>();
+        impactsByRoute.forEach((routeId, impacts) -> byRoute.put(routeId, summarize(routeId, impacts)));
+
+        return new Forecast(LocalDateTime.now(), samples, heightModel.order(), List.copyOf(points), byRoute);
+    }
+
+    private RouteForecast summarize(String routeId, List<RouteImpactForecast> impacts) {
+        LocalDateTime delaysExpectedFrom = null;
+        RouteImpactForecast peak = null;
+        for (RouteImpactForecast impact : impacts) {
+            if (impact.impactLevel() != RouteImpact.ImpactLevel.NONE && delaysExpectedFrom == null) {
+                delaysExpectedFrom = impact.time();
+            }
+            if (peak == null || impact.impactLevel().ordinal() > peak.impactLevel().ordinal()) {
+                peak = impact;
+            }
+        }
+        return new RouteForecast(routeId, delaysExpectedFrom,
+                peak == null ? RouteImpact.ImpactLevel.NONE : peak.impactLevel(),
+                peak == null ? null : peak.time(),
+                List.copyOf(impacts));
+    }
+
+    private record Forecast(
+            LocalDateTime fittedAt,
+            int trainingSamples,
+            int heightModelOrder,
+            List<ForecastPoint> points,
+            Map<String, RouteForecast> byRoute
+    ) {}
+
+    public record ForecastPoint(LocalDateTime time, double waveHeight, double waveDirection) {}
+
+    public record RouteImpactForecast(
+            LocalDateTime time,
+            RouteImpact.ImpactLevel impactLevel,
+            Integer estimatedDelayMinutes,
+            boolean serviceable,
+            double waveHeight,
+            String inundationLevel
+    ) {}
+
+    public record RouteForecast(
+            String routeId,
+            LocalDateTime delaysExpectedFrom, // First forecast step with any impact, null if none
+            RouteImpact.ImpactLevel peakImpactLevel,
+            LocalDateTime peakAt,
+            List<RouteImpactForecast> impacts
+    ) {}
+}
@@ -0,0 +1,153 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.timeseries.GorillaSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compressed, append-only history of every tidal reading the service has seen. Range queries
+ * are downsampled server-side into min/max/avg buckets. Wave direction is additionally stored
+ * as a unit vector so bucket averages are circular means.
+ */
+@Service
+@Slf4j
+public class TidalHistoryService {
+
+    private static final int WAVE_HEIGHT = 0;
+    private static final int WAVE_PERIOD = 1;
+    private static final int WAVE_DIRECTION = 2;
+    private static final int DIRECTION_SIN = 3;
+    private static final int DIRECTION_COS = 4;
+
+    private final GorillaSeries series;
+    private final int maxBuckets;
+
+    public TidalHistoryService(@Value("${transit.tidal.history.block-size:256}") int blockSize,
+                               @Value("${transit.tidal.history.max-buckets:10000}") int maxBuckets) {
+        this.series = new GorillaSeries(5, blockSize);
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Append a reading
+     * @return false if it is not newer than the last stored reading
+     */
+    public boolean append(TidalReading reading) {
+        double direction = Math.toRadians(reading.getWaveDirection());
+        return series.append(toEpochSeconds(reading.getTimestamp()),
+                reading.getWaveHeight(),
+                reading.getWavePeriod(),
+                reading.getWaveDirection(),
+                Math.sin(direction),
+                Math.cos(direction));
+    }
+
+    /**
+     * Append readings in timestamp order, skipping any already covered by the history
+     * @return Number of readings stored
+     */
+    public int appendAll(List<TidalReading> readings) {
+        List<TidalReading> ordered = new ArrayList<>(readings);
+        ordered.sort(Comparator.comparing(TidalReading::getTimestamp));
+        int appended = 0;
+        for (TidalReading reading : ordered) {
+            if (append(reading)) {
+                appended++;
+            }
+        }
+        log.info("Stored {} tidal readings in history ({} total, {} bytes)", appended, series.count(), series.sizeBytes());
+        return appended;
+    }
+
+    /**
+     * @return Timestamp of the newest reading in the history, or null if it is empty
+     */
+    public LocalDateTime getLatestTimestamp() {
+        long last = series.lastTimestamp();
+        return last == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(last, 0, ZoneOffset.UTC);
+    }
+
+    public long getReadingCount() {
+        return series.count();
+    }
+
+    public long getSizeBytes() {
+        return series.sizeBytes();
+    }
+
+    /**
+     * Raw readings in {@code [from, to)}
+     */
+    public List<TidalReading> getReadings(LocalDateTime from, LocalDateTime to) {
+        List<TidalReading> readings = new ArrayList<>();
+        series.scan(toEpochSeconds(from), toEpochSeconds(to), (epochSeconds, values) ->
+                readings.add(TidalReading.builder()
+                        .stationId("163")
+                        .timestamp(LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC))
+                        .waveHeight(values[WAVE_HEIGHT])
+                        .wavePeriod(values[WAVE_PERIOD])
+                        .waveDirection(values[WAVE_DIRECTION])
+                        .build()));
+        return readings;
+    }
+
+    /**
+     * Downsample {@code [from, to)} into buckets of {@code stepSeconds}
+     */
+    public List<TidalAggregate> aggregate(LocalDateTime from, LocalDateTime to, long stepSeconds) {
+        long start = toEpochSeconds(from);
+        long end = toEpochSeconds(to);
+        if (stepSeconds <= 0 || end <= start) {
+            throw new RuntimeException("Range must be non-empty and step must be positive");
+        }
+        if ((end - start + stepSeconds - 1) / stepSeconds > maxBuckets) {
+            throw new RuntimeException("Range would produce more than " + maxBuckets + " buckets; increase step");
+        }
+
+        return series.aggregate(start, end, stepSeconds).stream()
+                .map(bucket -> new TidalAggregate(
+                        LocalDateTime.ofEpochSecond(bucket.startEpochSeconds(), 0, ZoneOffset.UTC),
+                        bucket.count(),
+                        bucket.min(WAVE_HEIGHT),
+                        bucket.max(WAVE_HEIGHT),
+                        bucket.avg(WAVE_HEIGHT),
+                        bucket.min(WAVE_PERIOD),
+                        bucket.max(WAVE_PERIOD),
+                        bucket.avg(WAVE_PERIOD),
+                        meanDirection(bucket.avg(DIRECTION_SIN), bucket.avg(DIRECTION_COS))))
+                .toList();
+    }
+
+    private static double meanDirection(double sin, double cos) {
+        double degrees = Math.toDegrees(Math.atan2(sin, cos));
+        return degrees < 0 ? degrees + 360 : degrees;
+    }
+
+    private static long toEpochSeconds(LocalDateTime timestamp) {
+        // CDIP timestamps are UTC
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Wave statistics for one step of a range query
+     */
+    public record TidalAggregate(
+            LocalDateTime start,
+            long readings,
+            double minWaveHeight,
+            double maxWaveHeight,
+            double avgWaveHeight,
+            double minWavePeriod,
+            double maxWavePeriod,
+            double avgWavePeriod,
+            double meanWaveDirection
+    ) {}
+}
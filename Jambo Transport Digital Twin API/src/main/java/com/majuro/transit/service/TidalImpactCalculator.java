@@ -3,34 +3,94 @@ package com.majuro.transit.service;
 import com.majuro.transit.model.RouteImpact;
 import com.majuro.transit.model.RouteImpact.ImpactLevel;
 import com.majuro.transit.model.RouteSegmentOrientation;
-import com.majuro.transit.model.RouteSegmentOrientation.Orientation;
 import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.service.InundationModelService.SegmentInundation;
+import com.majuro.transit.service.SensorIngestService.SegmentWaterLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
 
+/**
+ * Computes the impact of a tidal reading on a route, optionally raised by water levels observed
+ * by inundation sensors. Results are pure functions of their inputs and the route geometry;
+ * consumers read them precomputed from {@link RouteImpactCache}.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class TidalImpactCalculator {
 
-    private final TidalDataService tidalDataService;
     private final RouteOrientationService orientationService;
+    private final InundationModelService inundationModel;
 
     // Majuro's highest land elevation is 3 meters
     private static final double MAJURO_MAX_ELEVATION = 3.0;
 
-    public RouteImpact calculateImpact(String routeId) {
-        TidalReading currentReading = tidalDataService.getCurrentReading();
+    // Flood depth on the worst segment that triggers each impact level (elevation model and sensors)
+    private static final double SHUTDOWN_DEPTH_METERS = 0.3;
+    private static final double MAJOR_DELAY_DEPTH_METERS = 0.15;
+
+    // Sensor water level above which a segment counts as flooded
+    private static final double SENSOR_FLOOD_LEVEL_METERS = 0.05;
+
+    public RouteImpact calculateImpact(String routeId, TidalReading currentReading) {
+        return calculateImpact(routeId, currentReading, Map.of());
+    }
+
+    /**
+     * @param observedLevels Latest sensor window per segment, keyed by {@link SensorIngestService#segmentKey}
+     */
+    public RouteImpact calculateImpact(String routeId, TidalReading currentReading,
+                                       Map<String, SegmentWaterLevel> observedLevels) {
+        RouteImpact impact = calculateModelImpact(routeId, currentReading);
+        return observedLevels.isEmpty() ? impact : applySensorObservations(impact, observedLevels);
+    }
+
+    /**
+     * Impact of a hypothetical reading on each of the given routes, in order. The elevation model
+     * is assessed once for all routes, and routes without segments get no impact silently.
+     */
+    public List<RouteImpact> calculateImpacts(List<String> routeIds, TidalReading reading) {
+        Map<String, List<SegmentInundation>> inundation = inundationModel.isEnabled()
+                ? inundationModel.assessByRoute(reading)
+                : null;
+        List<RouteImpact> impacts = new ArrayList<>(routeIds.size());
+        for (String routeId : routeIds) {
+            List<RouteSegmentOrientation> routeSegments = orientationService.getOrientationsForRoute(routeId);
+            impacts.add(routeSegments.isEmpty()
+                    ? createNoImpact(routeId, reading)
+                    : calculateModelImpact(routeId, reading, routeSegments,
+                            inundation == null ? null : inundation.getOrDefault(routeId, List.of())));
+        }
+        return impacts;
+    }
+
+    private RouteImpact calculateModelImpact(String routeId, TidalReading currentReading) {
         List<RouteSegmentOrientation> routeSegments = orientationService.getOrientationsForRoute(routeId);
 
         if (routeSegments.isEmpty()) {
             log.warn("No segments found for route: {}", routeId);
-            return createNoImpact(routeId);
+            return createNoImpact(routeId, currentReading);
+        }
+
+        return calculateModelImpact(routeId, currentReading, routeSegments,
+                inundationModel.isEnabled() ? inundationModel.assessRoute(routeId, currentReading) : null);
+    }
+
+    /**
+     * @param assessed Assessed segments of the route, or null when the elevation model is disabled
+     */
+    private RouteImpact calculateModelImpact(String routeId, TidalReading currentReading,
+                                             List<RouteSegmentOrientation> routeSegments,
+                                             List<SegmentInundation> assessed) {
+        if (assessed != null) {
+            return calculateSegmentImpact(routeId, currentReading, assessed, routeSegments.size());
         }
 
         double waveHeight = currentReading.getWaveHeight();
@@ -66,12 +126,12 @@ public class TidalImpactCalculator {
             serviceable = true;
         } else {
             // < 3m = No impact
-            return createNoImpact(routeId);
+            return createNoImpact(routeId, currentReading);
         }
 
         // Only apply impact if affected segments exist
         if (affectedSegments.isEmpty()) {
-            return createNoImpact(routeId);
+            return createNoImpact(routeId, currentReading);
         }
 
         String reason = String.format(
@@ -100,6 +160,139 @@ public class TidalImpactCalculator {
                 .build();
     }
 
+    /**
+     * Impact localized to the segments that flood according to the elevation model
+     */
+    private RouteImpact calculateSegmentImpact(String routeId, TidalReading currentReading,
+                                               List<SegmentInundation> segments, int segmentCount) {
+        double waveHeight = currentReading.getWaveHeight();
+        List<SegmentInundation> flooded = segments.stream()
+                .filter(segment -> segment.floodDepthMeters() > 0)
+                .toList();
+        if (flooded.isEmpty()) {
+            return createNoImpact(routeId, currentReading);
+        }
+
+        double maxDepth = 0;
+        double maxRisk = 0;
+        for (SegmentInundation segment : flooded) {
+            maxDepth = Math.max(maxDepth, segment.floodDepthMeters());
+            maxRisk = Math.max(maxRisk, segment.risk());
+        }
+
+        ImpactLevel impactLevel;
+        double delayMultiplier;
+        int estimatedDelayMinutes;
+        boolean serviceable;
+        String inundationLevel;
+
+        if (maxDepth >= SHUTDOWN_DEPTH_METERS) {
+            impactLevel = ImpactLevel.SHUTDOWN;
+            delayMultiplier = 0.0;
+            estimatedDelayMinutes = 0;
+            serviceable = false;
+            inundationLevel = "CRITICAL";
+        } else if (maxDepth >= MAJOR_DELAY_DEPTH_METERS) {
+            impactLevel = ImpactLevel.MAJOR_DELAYS;
+            delayMultiplier = 1.5;
+            estimatedDelayMinutes = calculateDelayMinutes(routeId, 0.5);
+            serviceable = true;
+            inundationLevel = "HIGH_RISK";
+        } else {
+            impactLevel = ImpactLevel.SLIGHT_DELAYS;
+            delayMultiplier = 1.2;
+            estimatedDelayMinutes = calculateDelayMinutes(routeId, 0.2);
+            serviceable = true;
+            inundationLevel = "LOW_RISK";
+        }
+
+        String reason = String.format(
+            "%d of %d segments flooded by %s %.1fm waves (up to %.2fm deep)",
+            flooded.size(),
+            segmentCount,
+            currentReading.getDirectionName().toLowerCase(),
+            waveHeight,
+            maxDepth
+        );
+
+        return RouteImpact.builder()
+                .routeId(routeId)
+                .impactLevel(impactLevel)
+                .delayMultiplier(delayMultiplier)
+                .estimatedDelayMinutes(estimatedDelayMinutes)
+                .reason(reason)
+                .affectedSegments(flooded.stream()
+                        .map(segment -> segmentLabel(segment.fromStop(), segment.toStop()))
+                        .toList())
+                .serviceable(serviceable)
+                .currentWaveHeight(waveHeight)
+                .inundationRisk(maxRisk)
+                .inundationLevel(inundationLevel)
+                .inundationDescription(String.format(
+                    "Elevation model: %d road segment(s) below the %.1fm wave run-up, deepest flooding %.2fm.",
+                    flooded.size(), waveHeight, maxDepth))
+                .build();
+    }
+
+    /**
+     * Raise an impact to what the sensors on the route's segments actually observe
+     */
+    private RouteImpact applySensorObservations(RouteImpact impact, Map<String, SegmentWaterLevel> observedLevels) {
+        List<RouteSegmentOrientation> routeSegments = orientationService.getOrientationsForRoute(impact.getRouteId());
+        Set<String> affected = new LinkedHashSet<>(impact.getAffectedSegments());
+        int observedFlooded = 0;
+        double maxLevel = 0;
+        for (RouteSegmentOrientation segment : routeSegments) {
+            SegmentWaterLevel level = observedLevels.get(SensorIngestService.segmentKey(
+                    segment.getRouteId(), segment.getFromStop(), segment.getToStop()));
+            if (level != null && level.maxLevelMeters() >= SENSOR_FLOOD_LEVEL_METERS) {
+                affected.add(segmentLabel(segment.getFromStop(), segment.getToStop()));
+                maxLevel = Math.max(maxLevel, level.maxLevelMeters());
+                observedFlooded++;
+            }
+        }
+        if (observedFlooded == 0) {
+            return impact;
+        }
+
+        ImpactLevel observedLevel = maxLevel >= SHUTDOWN_DEPTH_METERS ? ImpactLevel.SHUTDOWN
+                : maxLevel >= MAJOR_DELAY_DEPTH_METERS ? ImpactLevel.MAJOR_DELAYS
+                : ImpactLevel.SLIGHT_DELAYS;
+        String observation = String.format("sensors report %d segment(s) flooded up to %.2fm",
+                observedFlooded, maxLevel);
+
+        RouteImpact.RouteImpactBuilder raised = impact.toBuilder()
+                .affectedSegments(List.copyOf(affected))
+                .reason(impact.getImpactLevel() == ImpactLevel.NONE
+                        ? capitalize(observation)
+                        : impact.getReason() + "; " + observation);
+        if (observedLevel.ordinal() > impact.getImpactLevel().ordinal()) {
+            raised.impactLevel(observedLevel);
+            switch (observedLevel) {
+                case SHUTDOWN -> raised.delayMultiplier(0.0).estimatedDelayMinutes(0).serviceable(false)
+                        .inundationLevel("CRITICAL").inundationRisk(1.0);
+                case MAJOR_DELAYS -> raised.delayMultiplier(1.5)
+                        .estimatedDelayMinutes(calculateDelayMinutes(impact.getRouteId(), 0.5))
+                        .inundationLevel("HIGH_RISK").inundationRisk(Math.max(0.7, impact.getInundationRisk()));
+                default -> raised.delayMultiplier(1.2)
+                        .estimatedDelayMinutes(calculateDelayMinutes(impact.getRouteId(), 0.2))
+                        .inundationLevel("LOW_RISK").inundationRisk(Math.max(0.4, impact.getInundationRisk()));
+            }
+        }
+        return raised.build();
+    }
+
+    /**
+     * Label of a segment in {@link RouteImpact#getAffectedSegments()}
+     */
+    public static String segmentLabel(String fromStop, String toStop) {
+        return fromStop + " → " + toStop;
+    }
+
+    private static String capitalize(String text) {
+        return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+    }
+
     private InundationAssessment calculateInundation(double waveHeight) {
         // Majuro's max elevation is 3m
         // Calculate risk based on how close wave height is to this threshold
@@ -155,22 +348,10 @@ public class TidalImpactCalculator {
     }
 
     private List<String> getAffectedSegments(List<RouteSegmentOrientation> segments, double waveDegrees) {
-        boolean isNortherlyWave = waveDegrees >= 315 || waveDegrees < 45;
-        boolean isSoutherlyWave = waveDegrees >= 135 && waveDegrees < 225;
-
         return segments.stream()
-                .filter(segment -> {
-                    if (segment.getOrientation() == Orientation.NORTH_FACING && isSoutherlyWave) {
-                        // North-facing roads affected by southerly waves
-                        return true;
-                    } else if (segment.getOrientation() == Orientation.SOUTH_FACING && isNortherlyWave) {
-                        // South-facing roads affected by northerly waves
-                        return true;
-                    }
-                    return false;
-                })
-                .map(segment -> segment.getFromStop() + " → " + segment.getToStop())
-                .collect(Collectors.toList());
+                .filter(segment -> InundationModelService.isExposed(segment.getOrientation(), waveDegrees))
+                .map(segment -> segmentLabel(segment.getFromStop(), segment.getToStop()))
+                .toList();
     }
 
     private int calculateDelayMinutes(String routeId, double delayPercentage) {
@@ -179,8 +360,7 @@ public class TidalImpactCalculator {
         return (int) Math.ceil(averageRouteDuration * delayPercentage);
     }
 
-    private RouteImpact createNoImpact(String routeId) {
-        TidalReading currentReading = tidalDataService.getCurrentReading();
+    private RouteImpact createNoImpact(String routeId, TidalReading currentReading) {
         double waveHeight = currentReading.getWaveHeight();
         InundationAssessment inundation = calculateInundation(waveHeight);
 
@@ -190,7 +370,7 @@ public class TidalImpactCalculator {
                 .delayMultiplier(1.0)
                 .estimatedDelayMinutes(0)
                 .reason("No tidal impact - normal operations")
-                .affectedSegments(new ArrayList<>())
+                .affectedSegments(List.of())
                 .serviceable(true)
                 .currentWaveHeight(waveHeight)
                 .inundationRisk(inundation.risk)
@@ -198,11 +378,4 @@ public class TidalImpactCalculator {
                 .inundationDescription(inundation.description)
                 .build();
     }
-
-    public List<RouteImpact> calculateAllRouteImpacts() {
-        List<RouteImpact> impacts = new ArrayList<>();
-        impacts.add(calculateImpact("ROUTE_A"));
-        impacts.add(calculateImpact("ROUTE_B"));
-        return impacts;
-    }
 }
@@ -0,0 +1,216 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.TidalReading;
+import com.majuro.transit.spatial.GeoMath;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Replays the historical tidal series continuously. Replay time advances at a configurable
+ * multiple of wall-clock time and loops over the series; the reading at any instant is
+ * interpolated between the two bracketing readings (linearly for height and period, along the
+ * shorter arc for direction) and published as the current reading on every tick.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TidalReplayClock {
+
+    private final TidalDataService tidalDataService;
+
+    @Value("${transit.tidal.replay.enabled:false}")
+    private boolean enabledOnStartup;
+
+    // 6x matches the original rotation: one hourly reading every 10 minutes
+    @Value("${transit.tidal.replay.speed:6.0}")
+    private double defaultSpeed;
+
+    private volatile ReplayState state;
+    private volatile Series series;
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void onStartup() {
+        if (enabledOnStartup) {
+            start(null, defaultSpeed);
+        }
+    }
+
+    /**
+     * Start (or restart) replay
+     * @param start Replay time to start from, or null for the beginning of the series
+     * @param speed Replay seconds per wall-clock second
+     */
+    public synchronized ReplayStatus start(LocalDateTime start, double speed) {
+        if (speed <= 0) {
+            throw new RuntimeException("Replay speed must be positive");
+        }
+        Series current = currentSeries();
+        long startEpoch = start != null ? toEpochSeconds(start) : current.times[0];
+        state = new ReplayState(System.currentTimeMillis(), startEpoch, speed);
+        tidalDataService.setReplayActive(true);
+        tick();
+        log.info("Tidal replay started at {} ({}x)", toDateTime(startEpoch), speed);
+        return getStatus();
+    }
+
+    public synchronized ReplayStatus stop() {
+        state = null;
+        tidalDataService.setReplayActive(false);
+        log.info("Tidal replay stopped, returning to scheduled rotation");
+        return getStatus();
+    }
+
+    public ReplayStatus getStatus() {
+        ReplayState current = state;
+        return current == null
+                ? new ReplayStatus(false, defaultSpeed, null)
+                : new ReplayStatus(true, current.speed, toDateTime(replayEpochSeconds(current, currentSeries())));
+    }
+
+    @Scheduled(fixedRateString = "${transit.tidal.replay.tick-millis:10000}")
+    public void tick() {
+        ReplayState current = state;
+        if (current == null || tidalDataService.getHistoricalData().isEmpty()) {
+            return;
+        }
+        Series data = currentSeries();
+        long replayTime = replayEpochSeconds(current, data);
+        tidalDataService.publishReplayed(data.interpolate(replayTime), data.sourceIndexAt(replayTime));
+    }
+
+    /**
+     * Reading interpolated at an arbitrary instant; clamped to the ends of the series
+     */
+    public TidalReading interpolate(LocalDateTime at) {
+        return currentSeries().interpolate(toEpochSeconds(at));
+    }
+
+    private long replayEpochSeconds(ReplayState replay, Series data) {
+        double elapsed = (System.currentTimeMillis() - replay.wallStartMillis) / 1000.0 * replay.speed;
+        long span = data.times[data.times.length - 1] - data.times[0];
+        long offset = replay.startEpochSeconds - data.times[0] + (long) elapsed;
+        if (span <= 0) {
+            return data.times[0];
+        }
+        // Loop over the series like the scheduled rotation does
+        return data.times[0] + Math.floorMod(offset, span);
+    }
+
+    private Series currentSeries() {
+        List<TidalReading> readings = tidalDataService.getHistoricalData();
+        if (readings.isEmpty()) {
+            throw new RuntimeException("No historical tidal data available for replay");
+        }
+        Series current = series;
+        if (current != null && current.source == readings) {
+            return current;
+        }
+        synchronized (this) {
+            if (series == null || series.source != readings) {
+                series = Series.of(readings);
+            }
+            return series;
+        }
+    }
+
+    private static long toEpochSeconds(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toDateTime(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+    }
+
+    private record ReplayState(long wallStartMillis, long startEpochSeconds, double speed) {}
+
+    public record ReplayStatus(boolean active, double speed, LocalDateTime replayTime) {}
+
+    /**
+     * Time-sorted columns of the historical readings
+     */
+    private static final class Series {
+        final List<TidalReading> source;
+        final int[] sourceIndex;
+        final long[] times;
+        final double[] heights;
+        final double[] periods;
+        final double[] directions;
+
+        private Series(List<TidalReading> source, int[] sourceIndex) {
+            this.source = source;
+            this.sourceIndex = sourceIndex;
+            int n = sourceIndex.length;
+            this.times = new long[n];
+            this.heights = new double[n];
+            this.periods = new double[n];
+            this.directions = new double[n];
+            for (int i = 0; i < n; i++) {
+                TidalReading reading = source.get(sourceIndex[i]);
+                times[i] = toEpochSeconds(reading.getTimestamp());
+                heights[i] = reading.getWaveHeight();
+                periods[i] = reading.getWavePeriod();
+                directions[i] = reading.getWaveDirection();
+            }
+        }
+
+        static Series of(List<TidalReading> readings) {
+            int[] order = IntStream.range(0, readings.size())
+                    .boxed()
+                    .sorted(Comparator.comparing(i -> readings.get(i).getTimestamp()))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Series(readings, order);
+        }
+
+        /**
+         * @return Position of the last reading at or before the given time, clamped to the series
+         */
+        int floor(long epochSeconds) {
+            int position = Arrays.binarySearch(times, epochSeconds);
+            if (position < 0) {
+                position = -position - 2;
+            }
+            return Math.max(0, Math.min(times.length - 1, position));
+        }
+
+        int sourceIndexAt(long epochSeconds) {
+            return sourceIndex[floor(epochSeconds)];
+        }
+
+        TidalReading interpolate(long epochSeconds) {
+            int lower = floor(epochSeconds);
+            int upper = Math.min(lower + 1, times.length - 1);
+            double fraction = 0;
+            if (upper != lower && epochSeconds > times[lower]) {
+                fraction = Math.min(1.0, (double) (epochSeconds - times[lower]) / (times[upper] - times[lower]));
+            }
+
+            // Interpolate direction along the shorter arc so 350 -> 10 passes through 0
+            double turn = ((directions[upper] - directions[lower]) % 360 + 540) % 360 - 180;
+            TidalReading template = source.get(sourceIndex[lower]);
+
+            return TidalReading.builder()
+                    .stationId(template.getStationId())
+                    .timestamp(toDateTime(Math.max(epochSeconds, times[0])))
+                    .waveHeight(heights[lower] + (heights[upper] - heights[lower]) * fraction)
+                    .wavePeriod(periods[lower] + (periods[upper] - periods[lower]) * fraction)
+                    .waveDirection(GeoMath.normalizeDegrees(directions[lower] + turn * fraction))
+                    .stationName(template.getStationName())
+                    .latitude(template.getLatitude())
+                    .longitude(template.getLongitude())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.majuro.transit.spatial;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Elevation raster in ESRI GridFloat format: a raw float32 grid ({@code .flt}) memory-mapped
+ * from disk, described by a text header ({@code .hdr}) with {@code ncols}, {@code nrows},
+ * {@code xllcorner}, {@code yllcorner}, {@code cellsize}, {@code NODATA_value} and
+ * {@code byteorder}. Coordinates are WGS84 degrees; rows are stored north to south.
+ */
+public final class ElevationGrid {
+
+    private final int columns;
+    private final int rows;
+    private final double westLon;
+    private final double southLat;
+    private final double cellSize;
+    private final float noData;
+    private final FloatBuffer cells;
+
+    private ElevationGrid(int columns, int rows, double westLon, double southLat, double cellSize,
+                          float noData, FloatBuffer cells) {
+        this.columns = columns;
+        this.rows = rows;
+        this.westLon = westLon;
+        this.southLat = southLat;
+        this.cellSize = cellSize;
+        this.noData = noData;
+        this.cells = cells;
+    }
+
+    /**
+     * Map a GridFloat raster
+     * @param floatFile Path to the {@code .flt} file; the header is read from the sibling {@code .hdr}
+     */
+    public static ElevationGrid open(Path floatFile) throws IOException {
+        String name = floatFile.getFileName().toString();
+        String base = name.contains(".") ? name.substring(0, name.lastIndexOf('.')) : name;
+        Map<String, String> header = readHeader(floatFile.resolveSibling(base + ".hdr"));
+
+        int columns = Integer.parseInt(require(header, "ncols"));
+        int rows = Integer.parseInt(require(header, "nrows"));
+        double cellSize = Double.parseDouble(require(header, "cellsize"));
+        double westLon = corner(header, "xll", cellSize);
+        double southLat = corner(header, "yll", cellSize);
+        float noData = Float.parseFloat(header.getOrDefault("nodata_value", "-9999"));
+        ByteOrder order = header.getOrDefault("byteorder", "lsbfirst").startsWith("msb")
+                ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN;
+
+        long expectedBytes = (long) columns * rows * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(floatFile, StandardOpenOption.READ)) {
+            if (channel.size() < expectedBytes) {
+                throw new IOException("Elevation grid " + floatFile + " is smaller than its header describes");
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, expectedBytes);
+            return new ElevationGrid(columns, rows, westLon, southLat, cellSize, noData,
+                    mapped.order(order).asFloatBuffer());
+        }
+    }
+
+    /**
+     * Bilinearly interpolated elevation in metres, or NaN outside the grid or over no-data cells
+     */
+    public double elevation(double latitude, double longitude) {
+        // Position in cell-centre coordinates, row 0 at the north edge
+        double x = (longitude - westLon) / cellSize - 0.5;
+        double y = (southLat + rows * cellSize - latitude) / cellSize - 0.5;
+        if (x < -0.5 || y < -0.5 || x > columns - 0.5 || y > rows - 0.5) {
+            return Double.NaN;
+        }
+
+        int x0 = clamp((int) Math.floor(x), columns);
+        int y0 = clamp((int) Math.floor(y), rows);
+        int x1 = clamp(x0 + 1, columns);
+        int y1 = clamp(y0 + 1, rows);
+        double fx = Math.min(1, Math.max(0, x - x0));
+        double fy = Math.min(1, Math.max(0, y - y0));
+
+        double v00 = cell(x0, y0);
+        double v10 = cell(x1, y0);
+        double v01 = cell(x0, y1);
+        double v11 = cell(x1, y1);
+        if (Double.isNaN(v00) || Double.isNaN(v10) || Double.isNaN(v01) || Double.isNaN(v11)) {
+            return nearest(x, y);
+        }
+        double top = v00 + (v10 - v00) * fx;
+        double bottom = v01 + (v11 - v01) * fx;
+        return top + (bottom - top) * fy;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    private double nearest(double x, double y) {
+        return cell(clamp((int) Math.round(x), columns), clamp((int) Math.round(y), rows));
+    }
+
+    private double cell(int column, int row) {
+        float value = cells.get(row * columns + column);
+        return value == noData || Float.isNaN(value) ? Double.NaN : value;
+    }
+
+    private static int clamp(int value, int size) {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private static Map<String, String> readHeader(Path headerFile) throws IOException {
+        Map<String, String> header = new HashMap<>();
+        for (String line : Files.readAllLines(headerFile)) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length >= 2) {
+                header.put(parts[0].toLowerCase(Locale.ROOT), parts[1].toLowerCase(Locale.ROOT));
+            }
+        }
+        return header;
+    }
+
+    /**
+     * Lower-left corner from either the corner or the cell-centre form of the header
+     */
+    private static double corner(Map<String, String> header, String prefix, double cellSize) throws IOException {
+        String corner = header.get(prefix + "corner");
+        if (corner != null) {
+            return Double.parseDouble(corner);
+        }
+        return Double.parseDouble(require(header, prefix + "center")) - cellSize / 2;
+    }
+
+    private static String require(Map<String, String> header, String key) throws IOException {
+        String value = header.get(key);
+        if (value == null) {
+            throw new IOException("Elevation grid header is missing " + key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,58 @@
+package com.majuro.transit.spatial;
+
+/**
+ * Spherical geometry helpers shared by the routing, matching and projection code
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+    public static final double EARTH_RADIUS_M = EARTH_RADIUS_KM * 1000.0;
+
+    private GeoMath() {
+    }
+
+    /**
+     * Calculate Haversine distance between two points in kilometers
+     */
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(dLon / 2) * Math.sin(dLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return EARTH_RADIUS_KM * c;
+    }
+
+    /**
+     * Calculate Haversine distance between two points in meters
+     */
+    public static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        return haversineKm(lat1, lon1, lat2, lon2) * 1000.0;
+    }
+
+    /**
+     * Initial bearing from the first point to the second, in degrees clockwise from north (0-360)
+     */
+    public static double bearingDegrees(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double dLon = Math.toRadians(lon2 - lon1);
+
+        double y = Math.sin(dLon) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLon);
+
+        return normalizeDegrees(Math.toDegrees(Math.atan2(y, x)));
+    }
+
+    /**
+     * Wraps an angle into the 0-360 range
+     */
+    public static double normalizeDegrees(double degrees) {
+        double normalized = degrees % 360.0;
+        return normalized < 0 ? normalized + 360.0 : normalized;
+    }
+}
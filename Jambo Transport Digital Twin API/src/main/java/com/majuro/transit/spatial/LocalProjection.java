@@ -0,0 +1,37 @@
+package com.majuro.transit.spatial;
+
+/**
+ * Equirectangular projection onto a local plane in meters.
+ * Majuro spans a few tens of kilometers, so distortion against the true
+ * great-circle distance stays well below GPS noise.
+ */
+public final class LocalProjection {
+
+    private final double originLat;
+    private final double originLon;
+    private final double metersPerDegreeLat;
+    private final double metersPerDegreeLon;
+
+    public LocalProjection(double originLat, double originLon) {
+        this.originLat = originLat;
+        this.originLon = originLon;
+        this.metersPerDegreeLat = Math.toRadians(1.0) * GeoMath.EARTH_RADIUS_M;
+        this.metersPerDegreeLon = metersPerDegreeLat * Math.cos(Math.toRadians(originLat));
+    }
+
+    public double x(double lon) {
+        return (lon - originLon) * metersPerDegreeLon;
+    }
+
+    public double y(double lat) {
+        return (lat - originLat) * metersPerDegreeLat;
+    }
+
+    public double lon(double x) {
+        return originLon + x / metersPerDegreeLon;
+    }
+
+    public double lat(double y) {
+        return originLat + y / metersPerDegreeLat;
+    }
+}
@@ -0,0 +1,182 @@
+package com.majuro.transit.spatial;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over points projected onto a local plane, for nearest-neighbour queries. Points are
+ * bucketed into square cells sized for about one point per cell and stored in flat arrays
+ * (cell offsets plus point indexes), so a k-nearest query only visits the rings of cells around
+ * the query point until the k-th best distance is closer than the next unvisited ring.
+ */
+public final class PointGrid {
+
+    private static final double MIN_CELL_METERS = 25.0;
+
+    private final LocalProjection projection;
+    private final double[] xs;
+    private final double[] ys;
+    private final double minX;
+    private final double minY;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;   // Offsets into cellPoints, one extra entry at the end
+    private final int[] cellPoints;
+
+    private PointGrid(LocalProjection projection, double[] xs, double[] ys, double minX, double minY,
+                      double cellSize, int columns, int rows, int[] cellStart, int[] cellPoints) {
+        this.projection = projection;
+        this.xs = xs;
+        this.ys = ys;
+        this.minX = minX;
+        this.minY = minY;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.cellPoints = cellPoints;
+    }
+
+    /**
+     * Index points given as parallel latitude and longitude arrays; results refer to their positions
+     */
+    public static PointGrid build(double[] latitudes, double[] longitudes) {
+        int count = latitudes.length;
+        double originLat = count == 0 ? 0 : Arrays.stream(latitudes).average().orElse(0);
+        double originLon = count == 0 ? 0 : Arrays.stream(longitudes).average().orElse(0);
+        LocalProjection projection = new LocalProjection(originLat, originLon);
+
+        double[] xs = new double[count];
+        double[] ys = new double[count];
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            xs[i] = projection.x(longitudes[i]);
+            ys[i] = projection.y(latitudes[i]);
+            minX = Math.min(minX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxX = Math.max(maxX, xs[i]);
+            maxY = Math.max(maxY, ys[i]);
+        }
+        if (count == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        double width = maxX - minX;
+        double height = maxY - minY;
+        double cellSize = Math.max(MIN_CELL_METERS, Math.sqrt(Math.max(width * height, 1.0) / Math.max(1, count)));
+        int columns = (int) (width / cellSize) + 1;
+        int rows = (int) (height / cellSize) + 1;
+
+        // Counting sort of points into cells
+        int[] cellStart = new int[columns * rows + 1];
+        int[] pointCell = new int[count];
+        for (int i = 0; i < count; i++) {
+            int column = (int) ((xs[i] - minX) / cellSize);
+            int row = (int) ((ys[i] - minY) / cellSize);
+            pointCell[i] = row * columns + column;
+            cellStart[pointCell[i] + 1]++;
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] filled = Arrays.copyOf(cellStart, cellStart.length - 1);
+        int[] cellPoints = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellPoints[filled[pointCell[i]]++] = i;
+        }
+
+        return new PointGrid(projection, xs, ys, minX, minY, cellSize, columns, rows, cellStart, cellPoints);
+    }
+
+    public int size() {
+        return xs.length;
+    }
+
+    /**
+     * @return Indexes of up to {@code k} points within {@code maxMeters} of the location, nearest first
+     */
+    public int[] nearest(double latitude, double longitude, int k, double maxMeters) {
+        if (k <= 0 || xs.length == 0) {
+            return new int[0];
+        }
+        double x = projection.x(longitude);
+        double y = projection.y(latitude);
+        double maxSquared = maxMeters * maxMeters;
+
+        // Best candidates so far, kept sorted by squared distance
+        int[] best = new int[k];
+        double[] bestSquared = new double[k];
+        int found = 0;
+
+        // Cell of the query, which may lie outside the grid
+        int queryColumn = (int) Math.floor((x - minX) / cellSize);
+        int queryRow = (int) Math.floor((y - minY) / cellSize);
+        int firstRing = Math.max(outside(queryColumn, columns), outside(queryRow, rows));
+        int lastRing = Math.max(
+                Math.max(Math.abs(queryColumn), Math.abs(columns - 1 - queryColumn)),
+                Math.max(Math.abs(queryRow), Math.abs(rows - 1 - queryRow)));
+
+        for (int ring = firstRing; ring <= lastRing; ring++) {
+            // Points in this ring or beyond are at least (ring - 1) cells away
+            double ringDistance = Math.max(0, ring - 1) * cellSize;
+            if (ringDistance > maxMeters || (found == k && ringDistance * ringDistance >= bestSquared[k - 1])) {
+                break;
+            }
+            int firstRow = Math.max(0, queryRow - ring);
+            int lastRow = Math.min(rows - 1, queryRow + ring);
+            for (int row = firstRow; row <= lastRow; row++) {
+                if (row == queryRow - ring || row == queryRow + ring) {
+                    int firstColumn = Math.max(0, queryColumn - ring);
+                    int lastColumn = Math.min(columns - 1, queryColumn + ring);
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        found = scanCell(row * columns + column, x, y, maxSquared, best, bestSquared, found);
+                    }
+                } else {
+                    if (queryColumn - ring >= 0 && queryColumn - ring < columns) {
+                        found = scanCell(row * columns + queryColumn - ring, x, y, maxSquared, best, bestSquared, found);
+                    }
+                    if (queryColumn + ring >= 0 && queryColumn + ring < columns) {
+                        found = scanCell(row * columns + queryColumn + ring, x, y, maxSquared, best, bestSquared, found);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(best, found);
+    }
+
+    /**
+     * Offer the points of one cell to the sorted candidates
+     * @return Number of candidates after the scan
+     */
+    private int scanCell(int cell, double x, double y, double maxSquared, int[] best, double[] bestSquared, int found) {
+        int k = best.length;
+        for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+            int point = cellPoints[p];
+            double dx = xs[point] - x;
+            double dy = ys[point] - y;
+            double squared = dx * dx + dy * dy;
+            if (squared > maxSquared || (found == k && squared >= bestSquared[k - 1])) {
+                continue;
+            }
+            int slot = found < k ? found++ : k - 1;
+            while (slot > 0 && bestSquared[slot - 1] > squared) {
+                best[slot] = best[slot - 1];
+                bestSquared[slot] = bestSquared[slot - 1];
+                slot--;
+            }
+            best[slot] = point;
+            bestSquared[slot] = squared;
+        }
+        return found;
+    }
+
+    /**
+     * Cells between an index and the range [0, size)
+     */
+    private static int outside(int index, int size) {
+        return index < 0 ? -index : Math.max(0, index - (size - 1));
+    }
+}
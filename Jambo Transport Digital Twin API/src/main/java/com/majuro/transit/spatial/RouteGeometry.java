@@ -0,0 +1,208 @@
+package com.majuro.transit.spatial;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable linear-referencing table for one stop pattern: the road polyline, the cumulative
+ * distance at each vertex and the along-route distance of every stop. Positions along the route
+ * resolve with a binary search instead of walking the polyline.
+ */
+public final class RouteGeometry {
+
+    // A stop this close to the polyline is taken at its first such pass, which keeps loops ordered
+    private static final double STOP_SNAP_TOLERANCE_KM = 0.025;
+
+    private final String patternKey;
+    private final String routeId;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] cumulativeKm;
+    private final String[] stopIds;
+    private final double[] stopDistanceKm;
+
+    private RouteGeometry(String patternKey, String routeId, double[] latitudes, double[] longitudes,
+                          double[] cumulativeKm, String[] stopIds, double[] stopDistanceKm) {
+        this.patternKey = patternKey;
+        this.routeId = routeId;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cumulativeKm = cumulativeKm;
+        this.stopIds = stopIds;
+        this.stopDistanceKm = stopDistanceKm;
+    }
+
+    /**
+     * @param path     Polyline as [latitude, longitude] pairs
+     * @param stopIds  Stops of the pattern, in visiting order
+     * @param stops    Stop coordinates as [latitude, longitude] pairs, parallel to stopIds
+     */
+    public static RouteGeometry build(String patternKey, String routeId, List<double[]> path,
+                                      List<String> stopIds, List<double[]> stops) {
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Route geometry needs at least one point: " + patternKey);
+        }
+        int n = path.size();
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        double[] cumulative = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = path.get(i)[0];
+            lons[i] = path.get(i)[1];
+            if (i > 0) {
+                cumulative[i] = cumulative[i - 1] + GeoMath.haversineKm(lats[i - 1], lons[i - 1], lats[i], lons[i]);
+            }
+        }
+
+        // Stops are located in order, each searching forward from the previous one
+        double[] stopDistances = new double[stops.size()];
+        int fromSegment = 0;
+        double fromDistance = 0.0;
+        for (int s = 0; s < stops.size(); s++) {
+            double[] stop = stops.get(s);
+            int bestSegment = -1;
+            double bestOffset = Double.POSITIVE_INFINITY;
+            double bestAlong = fromDistance;
+
+            for (int seg = fromSegment; seg < n - 1; seg++) {
+                double t = projectOnSegment(lats, lons, seg, stop[0], stop[1]);
+                double along = cumulative[seg] + (cumulative[seg + 1] - cumulative[seg]) * t;
+                if (along < fromDistance) {
+                    continue;
+                }
+                double lat = lats[seg] + (lats[seg + 1] - lats[seg]) * t;
+                double lon = lons[seg] + (lons[seg + 1] - lons[seg]) * t;
+                double offset = GeoMath.haversineKm(lat, lon, stop[0], stop[1]);
+                if (offset < bestOffset) {
+                    bestOffset = offset;
+                    bestSegment = seg;
+                    bestAlong = along;
+                }
+                if (bestOffset <= STOP_SNAP_TOLERANCE_KM && offset > STOP_SNAP_TOLERANCE_KM) {
+                    // Left the neighbourhood of a close match; later passes belong to later stops
+                    break;
+                }
+            }
+
+            stopDistances[s] = bestAlong;
+            if (bestSegment >= 0) {
+                fromSegment = bestSegment;
+                fromDistance = bestAlong;
+            }
+        }
+
+        return new RouteGeometry(patternKey, routeId, lats, lons, cumulative,
+                stopIds.toArray(new String[0]), stopDistances);
+    }
+
+    public String getPatternKey() {
+        return patternKey;
+    }
+
+    public String getRouteId() {
+        return routeId;
+    }
+
+    public int vertexCount() {
+        return latitudes.length;
+    }
+
+    public double latitude(int vertex) {
+        return latitudes[vertex];
+    }
+
+    public double longitude(int vertex) {
+        return longitudes[vertex];
+    }
+
+    /**
+     * Distance in kilometers from the start of the pattern to a vertex
+     */
+    public double cumulativeKm(int vertex) {
+        return cumulativeKm[vertex];
+    }
+
+    public double lengthKm() {
+        return cumulativeKm.length == 0 ? 0.0 : cumulativeKm[cumulativeKm.length - 1];
+    }
+
+    public int stopCount() {
+        return stopIds.length;
+    }
+
+    public String stopId(int stopIndex) {
+        return stopIds[stopIndex];
+    }
+
+    /**
+     * Distance in kilometers from the start of the pattern to a stop
+     */
+    public double stopDistanceKm(int stopIndex) {
+        return stopDistanceKm[stopIndex];
+    }
+
+    /**
+     * Index of the last stop at or before the given along-route distance (0 if before the first stop)
+     */
+    public int stopIndexAtDistance(double distanceKm) {
+        int low = 0;
+        int high = stopDistanceKm.length - 1;
+        int result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (stopDistanceKm[mid] <= distanceKm) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Index of the polyline segment containing the given along-route distance
+     */
+    public int segmentAtDistance(double distanceKm) {
+        if (cumulativeKm.length < 2) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(cumulativeKm, distanceKm);
+        int vertex = index >= 0 ? index : -index - 2;
+        return Math.max(0, Math.min(cumulativeKm.length - 2, vertex));
+    }
+
+    /**
+     * Interpolated [latitude, longitude] at an along-route distance, clamped to the ends
+     */
+    public double[] pointAtDistance(double distanceKm) {
+        if (cumulativeKm.length == 1) {
+            return new double[]{latitudes[0], longitudes[0]};
+        }
+        int segment = segmentAtDistance(distanceKm);
+        double segmentLength = cumulativeKm[segment + 1] - cumulativeKm[segment];
+        double ratio = segmentLength > 0 ? (distanceKm - cumulativeKm[segment]) / segmentLength : 0.0;
+        ratio = Math.max(0, Math.min(1, ratio));
+        return new double[]{
+                latitudes[segment] + (latitudes[segment + 1] - latitudes[segment]) * ratio,
+                longitudes[segment] + (longitudes[segment + 1] - longitudes[segment]) * ratio
+        };
+    }
+
+    /**
+     * Fraction (0-1) of the closest point on a segment, using a locally scaled planar approximation
+     */
+    private static double projectOnSegment(double[] lats, double[] lons, int segment, double lat, double lon) {
+        double scale = Math.cos(Math.toRadians(lat));
+        double ax = lons[segment] * scale;
+        double ay = lats[segment];
+        double dx = lons[segment + 1] * scale - ax;
+        double dy = lats[segment + 1] - ay;
+        double lengthSq = dx * dx + dy * dy;
+        if (lengthSq == 0) {
+            return 0.0;
+        }
+        double t = ((lon * scale - ax) * dx + (lat - ay) * dy) / lengthSq;
+        return Math.max(0.0, Math.min(1.0, t));
+    }
+}
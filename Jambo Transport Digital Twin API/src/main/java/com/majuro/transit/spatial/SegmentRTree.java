@@ -0,0 +1,409 @@
+package com.majuro.transit.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static R-tree over line segments in a planar (projected, meters) coordinate system.
+ * The tree is bulk loaded with Sort-Tile-Recursive packing and is immutable once built,
+ * so it can be shared between request threads without locking.
+ *
+ * Each segment carries an owner id (e.g. the polyline it belongs to) and its index
+ * within that owner, so hits can be mapped back to route geometry.
+ */
+public final class SegmentRTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    // Segment storage
+    private final double[] ax;
+    private final double[] ay;
+    private final double[] bx;
+    private final double[] by;
+    private final int[] ownerIds;
+    private final int[] segmentIndexes;
+
+    // Node storage: children of node i are childRefs[childStart[i] .. childStart[i] + childCount[i])
+    // and refer to segments when leaf[i] is set, otherwise to other nodes
+    private final double[] nodeMinX;
+    private final double[] nodeMinY;
+    private final double[] nodeMaxX;
+    private final double[] nodeMaxY;
+    private final int[] childStart;
+    private final int[] childCount;
+    private final boolean[] leaf;
+    private final int[] childRefs;
+    private final int root;
+
+    private SegmentRTree(Builder builder) {
+        int n = builder.size;
+        this.ax = Arrays.copyOf(builder.ax, n);
+        this.ay = Arrays.copyOf(builder.ay, n);
+        this.bx = Arrays.copyOf(builder.bx, n);
+        this.by = Arrays.copyOf(builder.by, n);
+        this.ownerIds = Arrays.copyOf(builder.ownerIds, n);
+        this.segmentIndexes = Arrays.copyOf(builder.segmentIndexes, n);
+
+        NodeBuffer nodes = new NodeBuffer();
+        if (n == 0) {
+            this.root = -1;
+        } else {
+            // Leaf level: pack segments by their bounding box centers
+            double[] minX = new double[n];
+            double[] minY = new double[n];
+            double[] maxX = new double[n];
+            double[] maxY = new double[n];
+            for (int i = 0; i < n; i++) {
+                minX[i] = Math.min(ax[i], bx[i]);
+                minY[i] = Math.min(ay[i], by[i]);
+                maxX[i] = Math.max(ax[i], bx[i]);
+                maxY[i] = Math.max(ay[i], by[i]);
+            }
+            int[] level = packLevel(nodes, n, minX, minY, maxX, maxY, null, true);
+
+            // Upper levels: pack nodes until a single root remains
+            while (level.length > 1) {
+                int count = level.length;
+                double[] lMinX = new double[count];
+                double[] lMinY = new double[count];
+                double[] lMaxX = new double[count];
+                double[] lMaxY = new double[count];
+                for (int i = 0; i < count; i++) {
+                    lMinX[i] = nodes.minX[level[i]];
+                    lMinY[i] = nodes.minY[level[i]];
+                    lMaxX[i] = nodes.maxX[level[i]];
+                    lMaxY[i] = nodes.maxY[level[i]];
+                }
+                level = packLevel(nodes, count, lMinX, lMinY, lMaxX, lMaxY, level, false);
+            }
+            this.root = level[0];
+        }
+
+        this.nodeMinX = Arrays.copyOf(nodes.minX, nodes.count);
+        this.nodeMinY = Arrays.copyOf(nodes.minY, nodes.count);
+        this.nodeMaxX = Arrays.copyOf(nodes.maxX, nodes.count);
+        this.nodeMaxY = Arrays.copyOf(nodes.maxY, nodes.count);
+        this.childStart = Arrays.copyOf(nodes.childStart, nodes.count);
+        this.childCount = Arrays.copyOf(nodes.childCount, nodes.count);
+        this.leaf = Arrays.copyOf(nodes.leaf, nodes.count);
+        this.childRefs = Arrays.copyOf(nodes.refs, nodes.refCount);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return ax.length;
+    }
+
+    public int ownerId(int segmentId) {
+        return ownerIds[segmentId];
+    }
+
+    public int segmentIndex(int segmentId) {
+        return segmentIndexes[segmentId];
+    }
+
+    /**
+     * Find the closest segment to a point, or null if none lies within maxDistance
+     */
+    public SegmentHit nearest(double x, double y, double maxDistance) {
+        List<SegmentHit> hits = nearest(x, y, 1, maxDistance);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    /**
+     * Find up to maxResults segments closest to a point, ordered by distance.
+     * Uses best-first traversal so only nodes that can still beat the current
+     * k-th candidate are expanded.
+     */
+    public List<SegmentHit> nearest(double x, double y, int maxResults, double maxDistance) {
+        List<SegmentHit> results = new ArrayList<>(Math.min(maxResults, 8));
+        if (root < 0 || maxResults <= 0) {
+            return results;
+        }
+
+        double maxDistanceSq = maxDistance * maxDistance;
+        MinHeap heap = new MinHeap();
+        heap.push(boxDistanceSq(root, x, y), root);
+
+        while (!heap.isEmpty()) {
+            double distanceSq = heap.peekKey();
+            if (distanceSq > maxDistanceSq) {
+                break;
+            }
+            int ref = heap.pop();
+
+            if (ref < 0) {
+                // Segment entries are encoded as negative references
+                int segmentId = ~ref;
+                results.add(hit(segmentId, x, y));
+                if (results.size() >= maxResults) {
+                    break;
+                }
+                continue;
+            }
+
+            int start = childStart[ref];
+            int end = start + childCount[ref];
+            if (leaf[ref]) {
+                for (int i = start; i < end; i++) {
+                    int segmentId = childRefs[i];
+                    heap.push(segmentDistanceSq(segmentId, x, y), ~segmentId);
+                }
+            } else {
+                for (int i = start; i < end; i++) {
+                    int child = childRefs[i];
+                    heap.push(boxDistanceSq(child, x, y), child);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Project a point onto a specific segment regardless of distance
+     */
+    public SegmentHit project(int segmentId, double x, double y) {
+        return hit(segmentId, x, y);
+    }
+
+    private SegmentHit hit(int segmentId, double x, double y) {
+        double t = projectionFraction(segmentId, x, y);
+        double px = ax[segmentId] + (bx[segmentId] - ax[segmentId]) * t;
+        double py = ay[segmentId] + (by[segmentId] - ay[segmentId]) * t;
+        double distance = Math.hypot(x - px, y - py);
+        return new SegmentHit(segmentId, ownerIds[segmentId], segmentIndexes[segmentId], distance, t, px, py);
+    }
+
+    private double projectionFraction(int segmentId, double x, double y) {
+        double dx = bx[segmentId] - ax[segmentId];
+        double dy = by[segmentId] - ay[segmentId];
+        double lengthSq = dx * dx + dy * dy;
+        if (lengthSq == 0) {
+            return 0.0;
+        }
+        double t = ((x - ax[segmentId]) * dx + (y - ay[segmentId]) * dy) / lengthSq;
+        return Math.max(0.0, Math.min(1.0, t));
+    }
+
+    private double segmentDistanceSq(int segmentId, double x, double y) {
+        double t = projectionFraction(segmentId, x, y);
+        double px = ax[segmentId] + (bx[segmentId] - ax[segmentId]) * t - x;
+        double py = ay[segmentId] + (by[segmentId] - ay[segmentId]) * t - y;
+        return px * px + py * py;
+    }
+
+    private double boxDistanceSq(int node, double x, double y) {
+        double dx = Math.max(Math.max(nodeMinX[node] - x, 0), x - nodeMaxX[node]);
+        double dy = Math.max(Math.max(nodeMinY[node] - y, 0), y - nodeMaxY[node]);
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Sort-Tile-Recursive packing of one level. Entries are sorted into vertical slices
+     * by center x, each slice is sorted by center y and cut into nodes of NODE_CAPACITY.
+     *
+     * @return ids of the nodes created for this level
+     */
+    private static int[] packLevel(NodeBuffer nodes, int count,
+                                   double[] minX, double[] minY, double[] maxX, double[] maxY,
+                                   int[] entryRefs, boolean leafLevel) {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+
+        int nodeCount = (count + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(nodeCount));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+
+        Arrays.sort(order, Comparator.comparingDouble(i -> minX[i] + maxX[i]));
+        for (int sliceStart = 0; sliceStart < count; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(count, sliceStart + sliceSize);
+            Arrays.sort(order, sliceStart, sliceEnd, Comparator.comparingDouble(i -> minY[i] + maxY[i]));
+        }
+
+        int[] created = new int[nodeCount];
+        for (int n = 0; n < nodeCount; n++) {
+            int start = n * NODE_CAPACITY;
+            int end = Math.min(count, start + NODE_CAPACITY);
+
+            double nMinX = Double.POSITIVE_INFINITY;
+            double nMinY = Double.POSITIVE_INFINITY;
+            double nMaxX = Double.NEGATIVE_INFINITY;
+            double nMaxY = Double.NEGATIVE_INFINITY;
+            int refStart = nodes.refCount;
+            for (int i = start; i < end; i++) {
+                int entry = order[i];
+                nMinX = Math.min(nMinX, minX[entry]);
+                nMinY = Math.min(nMinY, minY[entry]);
+                nMaxX = Math.max(nMaxX, maxX[entry]);
+                nMaxY = Math.max(nMaxY, maxY[entry]);
+                nodes.addRef(entryRefs == null ? entry : entryRefs[entry]);
+            }
+            created[n] = nodes.addNode(nMinX, nMinY, nMaxX, nMaxY, refStart, end - start, leafLevel);
+        }
+        return created;
+    }
+
+    /**
+     * A segment found by a query, with the closest point on it
+     */
+    public record SegmentHit(
+            int segmentId,
+            int ownerId,
+            int segmentIndex,
+            double distance,   // Perpendicular (or end-point) distance from the query point
+            double fraction,   // Position of the closest point along the segment (0-1)
+            double x,
+            double y
+    ) {}
+
+    public static final class Builder {
+        private double[] ax = new double[64];
+        private double[] ay = new double[64];
+        private double[] bx = new double[64];
+        private double[] by = new double[64];
+        private int[] ownerIds = new int[64];
+        private int[] segmentIndexes = new int[64];
+        private int size;
+
+        private Builder() {
+        }
+
+        public Builder add(int ownerId, int segmentIndex, double x1, double y1, double x2, double y2) {
+            if (size == ax.length) {
+                int capacity = size * 2;
+                ax = Arrays.copyOf(ax, capacity);
+                ay = Arrays.copyOf(ay, capacity);
+                bx = Arrays.copyOf(bx, capacity);
+                by = Arrays.copyOf(by, capacity);
+                ownerIds = Arrays.copyOf(ownerIds, capacity);
+                segmentIndexes = Arrays.copyOf(segmentIndexes, capacity);
+            }
+            ax[size] = x1;
+            ay[size] = y1;
+            bx[size] = x2;
+            by[size] = y2;
+            ownerIds[size] = ownerId;
+            segmentIndexes[size] = segmentIndex;
+            size++;
+            return this;
+        }
+
+        public SegmentRTree build() {
+            return new SegmentRTree(this);
+        }
+    }
+
+    private static final class NodeBuffer {
+        double[] minX = new double[16];
+        double[] minY = new double[16];
+        double[] maxX = new double[16];
+        double[] maxY = new double[16];
+        int[] childStart = new int[16];
+        int[] childCount = new int[16];
+        boolean[] leaf = new boolean[16];
+        int count;
+
+        int[] refs = new int[64];
+        int refCount;
+
+        int addNode(double nMinX, double nMinY, double nMaxX, double nMaxY, int start, int size, boolean isLeaf) {
+            if (count == minX.length) {
+                int capacity = count * 2;
+                minX = Arrays.copyOf(minX, capacity);
+                minY = Arrays.copyOf(minY, capacity);
+                maxX = Arrays.copyOf(maxX, capacity);
+                maxY = Arrays.copyOf(maxY, capacity);
+                childStart = Arrays.copyOf(childStart, capacity);
+                childCount = Arrays.copyOf(childCount, capacity);
+                leaf = Arrays.copyOf(leaf, capacity);
+            }
+            minX[count] = nMinX;
+            minY[count] = nMinY;
+            maxX[count] = nMaxX;
+            maxY[count] = nMaxY;
+            childStart[count] = start;
+            childCount[count] = size;
+            leaf[count] = isLeaf;
+            return count++;
+        }
+
+        void addRef(int ref) {
+            if (refCount == refs.length) {
+                refs = Arrays.copyOf(refs, refCount * 2);
+            }
+            refs[refCount++] = ref;
+        }
+    }
+
+    /**
+     * Binary min-heap of (distance, reference) pairs used by best-first search
+     */
+    private static final class MinHeap {
+        private double[] keys = new double[32];
+        private int[] values = new int[32];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int result = values[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[child];
+                    values[i] = values[child];
+                    i = child;
+                }
+                keys[i] = key;
+                values[i] = value;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.majuro.transit.timeseries;
+
+/**
+ * Autoregressive AR(p) model fitted with the Yule-Walker equations, solved by Levinson-Durbin
+ * recursion. The order is chosen by AIC up to a maximum. Samples must be evenly spaced.
+ */
+public final class AutoRegressiveModel {
+
+    private final double mean;
+    private final double[] coefficients; // coefficients[j] multiplies the value j + 1 steps back
+    private final double noiseVariance;
+
+    private AutoRegressiveModel(double mean, double[] coefficients, double noiseVariance) {
+        this.mean = mean;
+        this.coefficients = coefficients;
+        this.noiseVariance = noiseVariance;
+    }
+
+    /**
+     * Fit a model to evenly spaced samples
+     * @param maxOrder Highest order considered; limited to a third of the sample count
+     */
+    public static AutoRegressiveModel fit(double[] samples, int maxOrder) {
+        int n = samples.length;
+        if (n == 0) {
+            throw new IllegalArgumentException("Cannot fit a model to an empty series");
+        }
+
+        double mean = 0;
+        for (double sample : samples) {
+            mean += sample;
+        }
+        mean /= n;
+
+        int order = Math.max(0, Math.min(maxOrder, n / 3));
+        double[] autocovariance = new double[order + 1];
+        for (int lag = 0; lag <= order; lag++) {
+            double sum = 0;
+            for (int t = 0; t + lag < n; t++) {
+                sum += (samples[t] - mean) * (samples[t + lag] - mean);
+            }
+            autocovariance[lag] = sum / n;
+        }
+        if (autocovariance[0] <= 0) {
+            // Constant series: the mean is the best forecast
+            return new AutoRegressiveModel(mean, new double[0], 0);
+        }
+
+        // Levinson-Durbin, keeping the order with the lowest AIC
+        double[] phi = new double[order + 1];
+        double[] previous = new double[order + 1];
+        double error = autocovariance[0];
+        double[] best = new double[0];
+        double bestError = error;
+        double bestAic = n * Math.log(error);
+
+        for (int k = 1; k <= order; k++) {
+            double acc = autocovariance[k];
+            for (int j = 1; j < k; j++) {
+                acc -= phi[j] * autocovariance[k - j];
+            }
+            double reflection = acc / error;
+            System.arraycopy(phi, 0, previous, 0, k);
+            phi[k] = reflection;
+            for (int j = 1; j < k; j++) {
+                phi[j] = previous[j] - reflection * previous[k - j];
+            }
+            error *= (1 - reflection * reflection);
+            if (error <= 0) {
+                break;
+            }
+
+            double aic = n * Math.log(error) + 2 * k;
+            if (aic < bestAic) {
+                bestAic = aic;
+                bestError = error;
+                best = new double[k];
+                System.arraycopy(phi, 1, best, 0, k);
+            }
+        }
+        return new AutoRegressiveModel(mean, best, bestError);
+    }
+
+    /**
+     * Forecast the next {@code steps} values following the given history
+     */
+    public double[] forecast(double[] history, int steps) {
+        int p = coefficients.length;
+        double[] window = new double[p + steps];
+        for (int j = 0; j < p; j++) {
+            int source = history.length - p + j;
+            window[j] = (source >= 0 ? history[source] : mean) - mean;
+        }
+
+        double[] result = new double[steps];
+        for (int h = 0; h < steps; h++) {
+            double value = 0;
+            for (int j = 0; j < p; j++) {
+                value += coefficients[j] * window[p + h - 1 - j];
+            }
+            window[p + h] = value;
+            result[h] = value + mean;
+        }
+        return result;
+    }
+
+    public int order() {
+        return coefficients.length;
+    }
+
+    public double mean() {
+        return mean;
+    }
+
+    public double noiseVariance() {
+        return noiseVariance;
+    }
+
+    public double[] coefficients() {
+        return coefficients.clone();
+    }
+}
@@ -0,0 +1,113 @@
+package com.majuro.transit.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Append-only bit buffer backed by a long array, with a matching sequential reader
+ */
+final class BitBuffer {
+
+    private long[] words;
+    private int bitLength;
+
+    BitBuffer(int initialWords) {
+        this.words = new long[Math.max(1, initialWords)];
+    }
+
+    private BitBuffer(long[] words, int bitLength) {
+        this.words = words;
+        this.bitLength = bitLength;
+    }
+
+    /**
+     * Append the lowest {@code count} bits of a value, most significant first
+     */
+    void write(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        ensureCapacity(bitLength + count);
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+
+        int word = bitLength >>> 6;
+        int used = bitLength & 63;
+        int free = 64 - used;
+        if (count <= free) {
+            words[word] |= value << (free - count);
+        } else {
+            int overflow = count - free;
+            words[word] |= value >>> overflow;
+            words[word + 1] |= value << (64 - overflow);
+        }
+        bitLength += count;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    int bitLength() {
+        return bitLength;
+    }
+
+    int sizeBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    /**
+     * @return A compact copy that can no longer grow
+     */
+    BitBuffer trimmed() {
+        return new BitBuffer(Arrays.copyOf(words, (bitLength + 63) >>> 6), bitLength);
+    }
+
+    Reader reader() {
+        return new Reader(words, bitLength);
+    }
+
+    private void ensureCapacity(int bits) {
+        int needed = (bits + 63) >>> 6;
+        if (needed > words.length) {
+            words = Arrays.copyOf(words, Math.max(needed, words.length * 2));
+        }
+    }
+
+    static final class Reader {
+        private final long[] words;
+        private final int limit;
+        private int position;
+
+        private Reader(long[] words, int limit) {
+            this.words = words;
+            this.limit = limit;
+        }
+
+        long read(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (position + count > limit) {
+                throw new IllegalStateException("Read past end of bit buffer");
+            }
+
+            int word = position >>> 6;
+            int used = position & 63;
+            int available = 64 - used;
+            long value;
+            if (count <= available) {
+                value = words[word] >>> (available - count);
+            } else {
+                int overflow = count - available;
+                value = (words[word] << overflow) | (words[word + 1] >>> (64 - overflow));
+            }
+            position += count;
+            return count == 64 ? value : value & ((1L << count) - 1);
+        }
+
+        boolean readBit() {
+            return read(1) == 1;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.majuro.transit.timeseries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only, compressed multi-column time series. Timestamps (epoch seconds) are stored as
+ * delta-of-deltas and each double column is XOR-encoded against its previous value, as in
+ * Facebook's Gorilla paper. Points are grouped into fixed-size blocks; every sealed block keeps
+ * per-column min/max/sum summaries so range aggregates only decode the blocks at the edges
+ * of each bucket.
+ * <p>
+ * Timestamps must be strictly increasing. Appends and queries are synchronized; a single writer
+ * is expected.
+ */
+public final class GorillaSeries {
+
+    private final int columns;
+    private final int blockSize;
+
+    private final List<Block> sealed = new ArrayList<>();
+    private BlockWriter active;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long count;
+
+    public GorillaSeries(int columns, int blockSize) {
+        if (columns < 1 || blockSize < 2) {
+            throw new IllegalArgumentException("A series needs at least one column and a block size of 2");
+        }
+        this.columns = columns;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Append a point
+     * @return false if the timestamp is not after the last appended one
+     */
+    public synchronized boolean append(long epochSeconds, double... values) {
+        if (values.length != columns) {
+            throw new IllegalArgumentException("Expected " + columns + " values, got " + values.length);
+        }
+        if (epochSeconds <= lastTimestamp) {
+            return false;
+        }
+
+        if (active == null) {
+            active = new BlockWriter(epochSeconds, values);
+        } else {
+            active.append(epochSeconds, values);
+        }
+        if (active.count == blockSize) {
+            sealed.add(active.seal());
+            active = null;
+        }
+
+        lastTimestamp = epochSeconds;
+        count++;
+        return true;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * @return Timestamp of the most recent point, or {@link Long#MIN_VALUE} if the series is empty
+     */
+    public synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return Approximate memory used by the compressed blocks, in bytes
+     */
+    public synchronized long sizeBytes() {
+        long bytes = 0;
+        for (Block block : sealed) {
+            bytes += block.bits.sizeBytes() + 3L * columns * Double.BYTES + 32;
+        }
+        if (active != null) {
+            bytes += active.bits.sizeBytes() + 3L * columns * Double.BYTES + 32;
+        }
+        return bytes;
+    }
+
+    /**
+     * Visit every point with {@code from <= timestamp < to}, in order
+     */
+    public synchronized void scan(long from, long to, PointConsumer consumer) {
+        for (Block block : blocksOverlapping(from, to)) {
+            block.decode(columns, (timestamp, values) -> {
+                if (timestamp >= from && timestamp < to) {
+                    consumer.accept(timestamp, values);
+                }
+            });
+        }
+    }
+
+    /**
+     * Downsample {@code [from, to)} into buckets of {@code step} seconds aligned to {@code from}.
+     * Blocks that fall entirely inside one bucket contribute their summaries without being decoded.
+     * Empty buckets are omitted.
+     */
+    public synchronized List<Bucket> aggregate(long from, long to, long step) {
+        if (step <= 0 || to <= from) {
+            throw new IllegalArgumentException("Invalid range or step");
+        }
+        int bucketCount = (int) Math.min(Integer.MAX_VALUE, (to - from + step - 1) / step);
+        Bucket[] buckets = new Bucket[bucketCount];
+
+        for (Block block : blocksOverlapping(from, to)) {
+            long firstBucket = (block.firstTimestamp - from) / step;
+            long lastBucket = (block.lastTimestamp - from) / step;
+            if (block.firstTimestamp >= from && block.lastTimestamp < to && firstBucket == lastBucket) {
+                bucket(buckets, (int) firstBucket, from, step).merge(block);
+                continue;
+            }
+            block.decode(columns, (timestamp, values) -> {
+                if (timestamp >= from && timestamp < to) {
+                    bucket(buckets, (int) ((timestamp - from) / step), from, step).add(values);
+                }
+            });
+        }
+
+        List<Bucket> result = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            if (bucket != null) {
+                result.add(bucket);
+            }
+        }
+        return result;
+    }
+
+    private Bucket bucket(Bucket[] buckets, int index, long from, long step) {
+        Bucket bucket = buckets[index];
+        if (bucket == null) {
+            bucket = new Bucket(from + index * step, columns);
+            buckets[index] = bucket;
+        }
+        return bucket;
+    }
+
+    private List<Block> blocksOverlapping(long from, long to) {
+        List<Block> blocks = new ArrayList<>();
+        // Sealed blocks are ordered by time; binary search the first one that ends at or after from
+        int low = 0;
+        int high = sealed.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sealed.get(mid).lastTimestamp < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < sealed.size() && sealed.get(i).firstTimestamp < to; i++) {
+            blocks.add(sealed.get(i));
+        }
+        if (active != null && active.firstTimestamp < to && active.lastTimestamp >= from) {
+            blocks.add(active.view());
+        }
+        return blocks;
+    }
+
+    @FunctionalInterface
+    public interface PointConsumer {
+        void accept(long epochSeconds, double[] values);
+    }
+
+    /**
+     * Aggregate of the points falling in one step of a range query
+     */
+    public static final class Bucket {
+        private final long startEpochSeconds;
+        private long count;
+        private final double[] min;
+        private final double[] max;
+        private final double[] sum;
+
+        Bucket(long startEpochSeconds, int columns) {
+            this.startEpochSeconds = startEpochSeconds;
+            this.min = new double[columns];
+            this.max = new double[columns];
+            this.sum = new double[columns];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(double[] values) {
+            for (int c = 0; c < values.length; c++) {
+                min[c] = Math.min(min[c], values[c]);
+                max[c] = Math.max(max[c], values[c]);
+                sum[c] += values[c];
+            }
+            count++;
+        }
+
+        void merge(Block block) {
+            for (int c = 0; c < sum.length; c++) {
+                min[c] = Math.min(min[c], block.min[c]);
+                max[c] = Math.max(max[c], block.max[c]);
+                sum[c] += block.sum[c];
+            }
+            count += block.count;
+        }
+
+        public long startEpochSeconds() {
+            return startEpochSeconds;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public double min(int column) {
+            return min[column];
+        }
+
+        public double max(int column) {
+            return max[column];
+        }
+
+        public double avg(int column) {
+            return sum[column] / count;
+        }
+    }
+
+    /**
+     * Immutable compressed block with per-column summaries
+     */
+    private static final class Block {
+        final long firstTimestamp;
+        final long lastTimestamp;
+        final int count;
+        final BitBuffer bits;
+        final double[] min;
+        final double[] max;
+        final double[] sum;
+
+        Block(long firstTimestamp, long lastTimestamp, int count, BitBuffer bits,
+              double[] min, double[] max, double[] sum) {
+            this.firstTimestamp = firstTimestamp;
+            this.lastTimestamp = lastTimestamp;
+            this.count = count;
+            this.bits = bits;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        void decode(int columns, PointConsumer consumer) {
+            BitBuffer.Reader reader = bits.reader();
+            long timestamp = firstTimestamp;
+            long delta = 0;
+            long[] previous = new long[columns];
+            int[] leading = new int[columns];
+            int[] trailing = new int[columns];
+            double[] values = new double[columns];
+
+            for (int c = 0; c < columns; c++) {
+                previous[c] = reader.read(64);
+                values[c] = Double.longBitsToDouble(previous[c]);
+            }
+            consumer.accept(timestamp, values);
+
+            for (int i = 1; i < count; i++) {
+                delta += readDeltaOfDelta(reader);
+                timestamp += delta;
+                for (int c = 0; c < columns; c++) {
+                    if (reader.readBit()) {
+                        if (reader.readBit()) {
+                            leading[c] = (int) reader.read(5);
+                            int length = (int) reader.read(6);
+                            trailing[c] = 64 - leading[c] - (length == 0 ? 64 : length);
+                        }
+                        int length = 64 - leading[c] - trailing[c];
+                        previous[c] ^= reader.read(length) << trailing[c];
+                    }
+                    values[c] = Double.longBitsToDouble(previous[c]);
+                }
+                consumer.accept(timestamp, values);
+            }
+        }
+
+        private static long readDeltaOfDelta(BitBuffer.Reader reader) {
+            if (!reader.readBit()) {
+                return 0;
+            }
+            if (!reader.readBit()) {
+                return reader.read(7) - 63;
+            }
+            if (!reader.readBit()) {
+                return reader.read(9) - 255;
+            }
+            if (!reader.readBit()) {
+                return reader.read(12) - 2047;
+            }
+            return (int) reader.read(32);
+        }
+    }
+
+    /**
+     * Encoder for the block currently being filled
+     */
+    private final class BlockWriter {
+        final long firstTimestamp;
+        long lastTimestamp;
+        long delta;
+        int count;
+        final BitBuffer bits = new BitBuffer(blockSize * columns / 4 + 4);
+        final long[] previous = new long[columns];
+        final int[] leading = new int[columns];
+        final int[] trailing = new int[columns];
+        final double[] min = new double[columns];
+        final double[] max = new double[columns];
+        final double[] sum = new double[columns];
+
+        BlockWriter(long timestamp, double[] values) {
+            firstTimestamp = timestamp;
+            lastTimestamp = timestamp;
+            Arrays.fill(leading, -1);
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for (int c = 0; c < columns; c++) {
+                previous[c] = Double.doubleToRawLongBits(values[c]);
+                bits.write(previous[c], 64);
+            }
+            summarize(values);
+        }
+
+        void append(long timestamp, double[] values) {
+            long newDelta = timestamp - lastTimestamp;
+            writeDeltaOfDelta(newDelta - delta);
+            delta = newDelta;
+            lastTimestamp = timestamp;
+
+            for (int c = 0; c < columns; c++) {
+                long value = Double.doubleToRawLongBits(values[c]);
+                long xor = value ^ previous[c];
+                previous[c] = value;
+                if (xor == 0) {
+                    bits.writeBit(false);
+                    continue;
+                }
+                bits.writeBit(true);
+
+                int lead = Math.min(31, Long.numberOfLeadingZeros(xor));
+                int trail = Long.numberOfTrailingZeros(xor);
+                if (leading[c] >= 0 && lead >= leading[c] && trail >= trailing[c]) {
+                    // Meaningful bits fit inside the previous window
+                    bits.writeBit(false);
+                    bits.write(xor >>> trailing[c], 64 - leading[c] - trailing[c]);
+                } else {
+                    int length = 64 - lead - trail;
+                    bits.writeBit(true);
+                    bits.write(lead, 5);
+                    bits.write(length == 64 ? 0 : length, 6);
+                    bits.write(xor >>> trail, length);
+                    leading[c] = lead;
+                    trailing[c] = trail;
+                }
+            }
+            summarize(values);
+        }
+
+        private void writeDeltaOfDelta(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                bits.writeBit(false);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                bits.write(0b10, 2);
+                bits.write(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                bits.write(0b110, 3);
+                bits.write(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                bits.write(0b1110, 4);
+                bits.write(deltaOfDelta + 2047, 12);
+            } else {
+                if (deltaOfDelta < Integer.MIN_VALUE || deltaOfDelta > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Gap between points is too large: " + deltaOfDelta + "s");
+                }
+                bits.write(0b1111, 4);
+                bits.write(deltaOfDelta, 32);
+            }
+        }
+
+        private void summarize(double[] values) {
+            for (int c = 0; c < columns; c++) {
+                min[c] = Math.min(min[c], values[c]);
+                max[c] = Math.max(max[c], values[c]);
+                sum[c] += values[c];
+            }
+            count++;
+        }
+
+        Block seal() {
+            return new Block(firstTimestamp, lastTimestamp, count, bits.trimmed(), min, max, sum);
+        }
+
+        /**
+         * Snapshot of the block so far; only valid while the caller holds the series lock
+         */
+        Block view() {
+            return new Block(firstTimestamp, lastTimestamp, count, bits, min.clone(), max.clone(), sum.clone());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.majuro.transit.codec;
+
+import com.majuro.transit.dto.BusPositionDTO;
+import com.majuro.transit.dto.StopDTO;
+import com.majuro.transit.model.FeedSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompactWriterTest {
+
+    private static final FeedSnapshot FEED = FeedSnapshot.builder()
+            .version(7)
+            .stopIds(new String[]{"S0", "S1"})
+            .stopIndexById(Map.of("S0", 0, "S1", 1))
+            .build();
+
+    /**
+     * Encoded payload split into its header, dictionary and record bytes
+     */
+    private record Decoded(int formatVersion, long feedVersion, List<String> dictionary, int recordCount,
+                           DataInputStream records) {}
+
+    private static Decoded decode(CompactWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        int formatVersion = in.readUnsignedByte();
+        long feedVersion = in.readLong();
+        List<String> dictionary = new ArrayList<>();
+        for (int i = in.readUnsignedShort(); i > 0; i--) {
+            dictionary.add(new String(in.readNBytes(in.readUnsignedShort()), StandardCharsets.UTF_8));
+        }
+        return new Decoded(formatVersion, feedVersion, dictionary, in.readInt(), in);
+    }
+
+    @Test
+    void writesHeaderDictionaryAndRecords() throws IOException {
+        CompactWriter writer = new CompactWriter(FEED);
+        writer.writeRecord(w -> {
+            w.writeString("MOVING");
+            w.writeString("Laura");
+        });
+        writer.writeRecord(w -> {
+            w.writeString("Laura");
+            w.writeString(null);
+        });
+
+        Decoded decoded = decode(writer);
+        assertEquals(CompactWriter.FORMAT_VERSION, decoded.formatVersion());
+        assertEquals(7L, decoded.feedVersion());
+        assertEquals(List.of("MOVING", "Laura"), decoded.dictionary());
+        assertEquals(2, decoded.recordCount());
+
+        DataInputStream records = decoded.records();
+        assertEquals(0, records.readUnsignedShort());
+        assertEquals(1, records.readUnsignedShort());
+        assertEquals(1, records.readUnsignedShort());
+        assertEquals(CompactWriter.NO_STRING, records.readUnsignedShort());
+        assertEquals(-1, records.read());
+    }
+
+    @Test
+    void writesSentinelsAndClampsOutOfRangeValues() throws IOException {
+        CompactWriter writer = new CompactWriter(FEED);
+        writer.writeRecord(w -> {
+            w.writeStop("S1");
+            w.writeStop("unknown");
+            w.writeCoordinate(null);
+            w.writeShort(null);
+            w.writeShort(100_000);
+            w.writeScaled(1000.0, 100);
+            w.writeScaled(null, 100);
+            w.writeTimeOfDay("14:05");
+        });
+
+        DataInputStream records = decode(writer).records();
+        assertEquals(1, records.readInt());
+        assertEquals(CompactWriter.NO_STOP, records.readInt());
+        assertEquals(CompactWriter.NO_COORDINATE, records.readInt());
+        assertEquals(CompactWriter.NO_SHORT, records.readShort());
+        assertEquals(Short.MAX_VALUE, records.readShort());
+        assertEquals(CompactWriter.NO_SCALED - 1, records.readUnsignedShort());
+        assertEquals(CompactWriter.NO_SCALED, records.readUnsignedShort());
+        assertEquals(14 * 3600 + 5 * 60, records.readInt());
+    }
+
+    @Test
+    void writesBusPositionsInTheDocumentedLayout() throws IOException {
+        BusPositionDTO position = new BusPositionDTO();
+        position.setBusId(12L);
+        position.setBusLabel("T1");
+        position.setRouteName("Laura");
+        position.setCurrentStop(new StopDTO("S0", "Stop 0", 7.1, 171.2));
+        position.setCurrentLatitude(7.089712);
+        position.setCurrentLongitude(171.272034);
+        position.setProgressPercent(42.5);
+        position.setStatus("MOVING");
+        position.setIsOperational(true);
+        position.setTidalDelayApplied(true);
+        position.setMinutesToNextStop(3);
+        position.setEstimatedDelayMinutes(-2);
+        position.setEstimatedArrivalTime("08:30");
+
+        CompactWriter writer = new CompactWriter(FEED);
+        writer.writeRecord(position);
+        Decoded decoded = decode(writer);
+        DataInputStream records = decoded.records();
+
+        assertEquals(12, records.readInt());
+        assertEquals("T1", decoded.dictionary().get(records.readUnsignedShort()));
+        assertEquals("Laura", decoded.dictionary().get(records.readUnsignedShort()));
+        assertEquals(0, records.readInt());
+        assertEquals(CompactWriter.NO_STOP, records.readInt());
+        assertEquals(7_089_712, records.readInt());
+        assertEquals(171_272_034, records.readInt());
+        assertEquals(4250, records.readUnsignedShort());
+        assertEquals("MOVING", decoded.dictionary().get(records.readUnsignedShort()));
+        assertEquals(2 | 4, records.readUnsignedByte());
+        assertEquals(3, records.readShort());
+        assertEquals(-2, records.readShort());
+        assertEquals(CompactWriter.NO_STRING, records.readUnsignedShort());
+        assertEquals(8 * 3600 + 30 * 60, records.readInt());
+        assertEquals(-1, records.read());
+    }
+}
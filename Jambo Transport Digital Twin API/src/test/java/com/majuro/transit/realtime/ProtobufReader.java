@@ -0,0 +1,70 @@
+package com.majuro.transit.realtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wire-format decoder for tests: splits a message into its fields so encoded output can be
+ * checked without generated protobuf classes
+ */
+public final class ProtobufReader {
+
+    private final byte[] bytes;
+    private int position;
+
+    private ProtobufReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Fields of a message by field number, in order. Varints are decoded to {@link Long}, fixed32
+     * to {@link Integer} and length-delimited fields are left as {@code byte[]}.
+     */
+    public static Map<Integer, List<Object>> fields(byte[] message) {
+        ProtobufReader reader = new ProtobufReader(message);
+        Map<Integer, List<Object>> fields = new HashMap<>();
+        while (reader.position < message.length) {
+            long tag = reader.readVarint();
+            int field = (int) (tag >>> 3);
+            Object value = switch ((int) (tag & 7)) {
+                case 0 -> reader.readVarint();
+                case 2 -> reader.readBytes();
+                case 5 -> reader.readFixed32();
+                default -> throw new IllegalStateException("Unexpected wire type in tag " + tag);
+            };
+            fields.computeIfAbsent(field, f -> new ArrayList<>()).add(value);
+        }
+        return fields;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Varint longer than ten bytes");
+    }
+
+    private int readFixed32() {
+        int value = (bytes[position] & 0xFF)
+                | (bytes[position + 1] & 0xFF) << 8
+                | (bytes[position + 2] & 0xFF) << 16
+                | (bytes[position + 3] & 0xFF) << 24;
+        position += 4;
+        return value;
+    }
+
+    private byte[] readBytes() {
+        int length = (int) readVarint();
+        byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+        position += length;
+        return value;
+    }
+}
@@ -0,0 +1,63 @@
+package com.majuro.transit.realtime;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ProtobufWriterTest {
+
+    private static String hex(ProtobufWriter writer) {
+        return HexFormat.of().formatHex(writer.toByteArray());
+    }
+
+    @Test
+    void encodesVarints() {
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeUInt64(1, 150);
+        assertEquals("089601", hex(writer));
+    }
+
+    @Test
+    void signExtendsNegativeInt32ToTenBytes() {
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeInt32(1, -1);
+        assertEquals("08ffffffffffffffffff01", hex(writer));
+        assertEquals(11, writer.size());
+    }
+
+    @Test
+    void encodesFixed32LittleEndian() {
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeFloat(1, 1.0f);
+        assertEquals("0d0000803f", hex(writer));
+    }
+
+    @Test
+    void encodesStringsAndNestedMessagesWithTheirLength() {
+        ProtobufWriter nested = new ProtobufWriter();
+        nested.writeUInt64(1, 150);
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeString(2, "testing");
+        writer.writeMessage(3, nested);
+        assertEquals("120774657374696e67" + "1a03089601", hex(writer));
+    }
+
+    @Test
+    void skipsNullStrings() {
+        ProtobufWriter writer = new ProtobufWriter();
+        writer.writeString(1, null);
+        assertEquals(0, writer.size());
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        ProtobufWriter writer = new ProtobufWriter(16);
+        byte[] payload = new byte[300];
+        writer.writeBytes(1, payload);
+        // Tag, two-byte length, payload
+        assertEquals(303, writer.size());
+        assertEquals(payload.length, ((byte[]) ProtobufReader.fields(writer.toByteArray()).get(1).get(0)).length);
+    }
+}
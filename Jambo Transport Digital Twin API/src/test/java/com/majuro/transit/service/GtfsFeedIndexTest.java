@@ -0,0 +1,134 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.model.gtfs.GtfsCalendar;
+import com.majuro.transit.model.gtfs.GtfsCalendarDate;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GtfsFeedIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    // Services A (weekdays), B (every day) and C (declared only through calendar_dates)
+    private static final Map<String, Integer> SERVICES = Map.of("A", 0, "B", 1, "C", 2);
+
+    private static GtfsCalendar weekdays(String serviceId, LocalDate start, LocalDate end) {
+        return new GtfsCalendar(serviceId, true, true, true, true, true, false, false, start, end);
+    }
+
+    private static GtfsCalendar everyDay(String serviceId, LocalDate start, LocalDate end) {
+        return new GtfsCalendar(serviceId, true, true, true, true, true, true, true, start, end);
+    }
+
+    private static GtfsCalendarDate exception(String serviceId, LocalDate date, int type) {
+        return new GtfsCalendarDate(null, serviceId, date, type);
+    }
+
+    /**
+     * Snapshot holding only the calendar, with one trip per service and one without a service
+     */
+    private static FeedSnapshot snapshot(List<GtfsCalendar> calendars, List<GtfsCalendarDate> calendarDates) {
+        LocalDate start = GtfsFeedIndex.calendarStart(calendars, calendarDates);
+        long[][] serviceDays = GtfsFeedIndex.buildServiceDays(start, calendars, calendarDates, SERVICES);
+        return FeedSnapshot.builder()
+                .calendarStart(start)
+                .dayServiceBits(serviceDays)
+                .dayTripBits(GtfsFeedIndex.buildTripDays(serviceDays, new int[]{0, 1, 2, -1}))
+                .build();
+    }
+
+    private static LocalDate next(DayOfWeek day) {
+        return TODAY.with(TemporalAdjusters.next(day));
+    }
+
+    @Test
+    void appliesTheWeekdayMaskWithinTheDateRange() {
+        LocalDate start = TODAY.minusDays(10);
+        LocalDate end = TODAY.plusDays(20);
+        FeedSnapshot feed = snapshot(
+                List.of(weekdays("A", start, end), everyDay("B", start, end.plusDays(30))), List.of());
+
+        assertTrue(feed.isServiceActive(0, next(DayOfWeek.MONDAY)));
+        assertTrue(feed.isServiceActive(0, next(DayOfWeek.FRIDAY)));
+        assertFalse(feed.isServiceActive(0, next(DayOfWeek.SATURDAY)));
+        assertFalse(feed.isServiceActive(0, next(DayOfWeek.SUNDAY)));
+        assertTrue(feed.isServiceActive(1, next(DayOfWeek.SUNDAY)));
+
+        // B keeps the window open after A's range ends
+        LocalDate afterEnd = end.plusDays(1).with(TemporalAdjusters.nextOrSame(DayOfWeek.MONDAY));
+        assertFalse(feed.isServiceActive(0, afterEnd));
+        assertTrue(feed.isServiceActive(1, afterEnd));
+    }
+
+    @Test
+    void appliesCalendarDateAdditionsAndRemovals() {
+        LocalDate start = TODAY.minusDays(10);
+        LocalDate end = TODAY.plusDays(20);
+        LocalDate saturday = next(DayOfWeek.SATURDAY);
+        LocalDate wednesday = next(DayOfWeek.WEDNESDAY);
+        FeedSnapshot feed = snapshot(List.of(weekdays("A", start, end)), List.of(
+                exception("A", saturday, GtfsCalendarDate.SERVICE_ADDED),
+                exception("A", wednesday, GtfsCalendarDate.SERVICE_REMOVED)));
+
+        assertTrue(feed.isServiceActive(0, saturday));
+        assertFalse(feed.isServiceActive(0, saturday.plusDays(1)));
+        assertFalse(feed.isServiceActive(0, wednesday));
+        assertTrue(feed.isServiceActive(0, wednesday.plusDays(1)));
+    }
+
+    @Test
+    void runsServicesDeclaredOnlyThroughCalendarDates() {
+        // The loader declares such services with no weekdays over the range of their dates
+        LocalDate first = TODAY.plusDays(3);
+        LocalDate second = TODAY.plusDays(9);
+        GtfsCalendar undeclared = new GtfsCalendar("C", false, false, false, false, false, false, false, first, second);
+        FeedSnapshot feed = snapshot(List.of(undeclared), List.of(
+                exception("C", first, GtfsCalendarDate.SERVICE_ADDED),
+                exception("C", second, GtfsCalendarDate.SERVICE_ADDED)));
+
+        assertEquals(first, feed.getCalendarStart());
+        assertTrue(feed.isServiceActive(2, first));
+        assertTrue(feed.isServiceActive(2, second));
+        assertFalse(feed.isServiceActive(2, first.plusDays(1)));
+        assertTrue(feed.isTripActive(2, first));
+        assertFalse(feed.isTripActive(0, first));
+    }
+
+    @Test
+    void clampsLongCalendarsToTheWindow() {
+        FeedSnapshot feed = snapshot(List.of(everyDay("B", TODAY.minusYears(5), TODAY.plusYears(5))), List.of());
+        LocalDate windowStart = TODAY.minusDays(GtfsFeedIndex.HISTORY_DAYS);
+        LocalDate windowEnd = windowStart.plusDays(GtfsFeedIndex.MAX_CALENDAR_DAYS - 1);
+
+        assertEquals(windowStart, feed.getCalendarStart());
+        assertEquals(GtfsFeedIndex.MAX_CALENDAR_DAYS, feed.getDayServiceBits().length);
+        assertTrue(feed.isServiceActive(1, windowStart));
+        assertTrue(feed.isServiceActive(1, windowEnd));
+        assertFalse(feed.isServiceActive(1, windowStart.minusDays(1)));
+        assertFalse(feed.isServiceActive(1, windowEnd.plusDays(1)));
+    }
+
+    @Test
+    void tripsAreInactiveOutsideTheWindow() {
+        LocalDate start = TODAY.minusDays(5);
+        LocalDate end = TODAY.plusDays(5);
+        FeedSnapshot feed = snapshot(List.of(everyDay("B", start, end)), List.of());
+
+        assertTrue(feed.isTripActive(1, start));
+        assertTrue(feed.isTripActive(1, end));
+        assertFalse(feed.isTripActive(1, start.minusDays(1)));
+        assertFalse(feed.isTripActive(1, end.plusDays(1)));
+        assertFalse(feed.isTripActive(3, TODAY));
+        assertFalse(snapshot(List.of(), List.of()).isTripActive(1, TODAY));
+    }
+}
@@ -0,0 +1,134 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.dto.BusPositionDTO;
+import com.majuro.transit.dto.StopDTO;
+import com.majuro.transit.model.FeedSnapshot;
+import com.majuro.transit.service.DelayPropagationService.DelayTable;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static com.majuro.transit.realtime.ProtobufReader.fields;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GtfsRealtimeFeedServiceTest {
+
+    private static final FeedSnapshot FEED = FeedSnapshot.builder()
+            .version(1)
+            .stopIds(new String[]{"S0", "S1", "S2"})
+            .routeIds(new String[]{"R1"})
+            .tripIds(new String[]{"T1", "LOOP"})
+            .tripDirections(new int[]{1, 0})
+            .tripRoute(new int[]{0, 0})
+            .tripPattern(new int[]{0, 1})
+            .tripStopSequences(new int[][]{{1, 2, 3}, {1, 2, 3}})
+            .patternStops(new int[][]{{0, 1, 2}, {0, 1, 0}})
+            .tripIndexById(Map.of("T1", 0, "LOOP", 1))
+            .build();
+
+    private static final DelayTable DELAYS = new DelayTable(FEED,
+            new RouteImpactCache.ImpactSnapshot(1, Map.of()), new float[][]{},
+            new int[][]{{0, 60, 60}, {0, 0, 120}});
+
+    private final GtfsRealtimeFeedService service = new GtfsRealtimeFeedService(
+            new FleetSnapshotService(null, null, null) {
+                @Override
+                public List<BusPositionDTO> getActivePositions() {
+                    BusPositionDTO position = new BusPositionDTO();
+                    position.setBusId(7L);
+                    position.setBusLabel("T1");
+                    position.setStatus("MOVING");
+                    position.setNextStop(new StopDTO("S1", "Stop 1", 7.1, 171.2));
+                    position.setCurrentLatitude(7.1);
+                    position.setCurrentLongitude(171.2);
+
+                    BusPositionDTO loop = new BusPositionDTO();
+                    loop.setBusId(8L);
+                    loop.setBusLabel("LOOP");
+                    loop.setStatus("STOPPED");
+                    loop.setCurrentStop(new StopDTO("S0", "Stop 0", 7.0, 171.1));
+                    loop.setCurrentLatitude(7.0);
+                    loop.setCurrentLongitude(171.1);
+                    return List.of(position, loop);
+                }
+
+                @Override
+                public long getVersion() {
+                    return 1;
+                }
+            },
+            new DelayPropagationService(null, null, null) {
+                @Override
+                public DelayTable getDelayTable() {
+                    return DELAYS;
+                }
+            });
+
+    private static String string(Map<Integer, List<Object>> fields, int field) {
+        return new String((byte[]) fields.get(field).get(0), StandardCharsets.UTF_8);
+    }
+
+    private static Map<Integer, List<Object>> message(Map<Integer, List<Object>> fields, int field) {
+        return fields((byte[]) fields.get(field).get(0));
+    }
+
+    @Test
+    void decodesVehiclePositionsFeed() {
+        Map<Integer, List<Object>> feed = fields(service.getVehiclePositions().bytes());
+
+        Map<Integer, List<Object>> header = message(feed, 1);
+        assertEquals("2.0", string(header, 1));
+        assertEquals(0L, header.get(2).get(0));
+
+        assertEquals(2, feed.get(2).size());
+        Map<Integer, List<Object>> entity = message(feed, 2);
+        assertEquals("T1", string(entity, 1));
+
+        Map<Integer, List<Object>> vehicle = message(entity, 4);
+        Map<Integer, List<Object>> trip = message(vehicle, 1);
+        assertEquals("T1", string(trip, 1));
+        assertEquals("R1", string(trip, 5));
+        assertEquals(1L, trip.get(6).get(0));
+
+        Map<Integer, List<Object>> position = message(vehicle, 2);
+        assertEquals(7.1f, Float.intBitsToFloat((Integer) position.get(1).get(0)));
+        assertEquals(171.2f, Float.intBitsToFloat((Integer) position.get(2).get(0)));
+
+        // IN_TRANSIT_TO the next stop
+        assertEquals(2L, vehicle.get(4).get(0));
+        assertEquals("S1", string(vehicle, 7));
+        assertEquals("7", string(message(vehicle, 8), 1));
+    }
+
+    @Test
+    void listsOnlyStopsWhereTheDelayChanges() {
+        Map<Integer, List<Object>> feed = fields(service.getTripUpdates().bytes());
+        Map<Integer, List<Object>> update = message(message(feed, 2), 3);
+
+        List<Object> stopTimes = update.get(2);
+        assertEquals(2, stopTimes.size());
+        Map<Integer, List<Object>> second = fields((byte[]) stopTimes.get(1));
+        assertEquals(2L, second.get(1).get(0));
+        assertEquals("S1", string(second, 4));
+        assertEquals(60L, message(second, 2).get(1).get(0));
+    }
+
+    @Test
+    void identifiesRepeatedStopsOfLoopTripsBySequence() {
+        Map<Integer, List<Object>> feed = fields(service.getTripUpdates().bytes());
+        Map<Integer, List<Object>> entity = fields((byte[]) feed.get(2).get(1));
+        assertEquals("LOOP", string(entity, 1));
+
+        List<Object> stopTimes = message(entity, 3).get(2);
+        assertEquals(2, stopTimes.size());
+        Map<Integer, List<Object>> first = fields((byte[]) stopTimes.get(0));
+        Map<Integer, List<Object>> last = fields((byte[]) stopTimes.get(1));
+        assertEquals("S0", string(first, 4));
+        assertEquals(1L, first.get(1).get(0));
+        assertEquals("S0", string(last, 4));
+        assertEquals(3L, last.get(1).get(0));
+        assertEquals(120L, message(last, 2).get(1).get(0));
+    }
+}
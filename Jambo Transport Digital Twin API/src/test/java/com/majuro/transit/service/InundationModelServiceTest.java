@@ -0,0 +1,40 @@
+package com.majuro.transit.service;
+
+import com.majuro.transit.model.RouteSegmentOrientation.Orientation;
+import com.majuro.transit.model.TidalReading;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InundationModelServiceTest {
+
+    @Test
+    void northFacingSegmentsAreExposedToNortherlyWaves() {
+        assertTrue(InundationModelService.isExposed(Orientation.NORTH_FACING, 0));
+        assertTrue(InundationModelService.isExposed(Orientation.NORTH_FACING, 315));
+        assertTrue(InundationModelService.isExposed(Orientation.NORTH_FACING, 44.9));
+        assertFalse(InundationModelService.isExposed(Orientation.NORTH_FACING, 180));
+        assertFalse(InundationModelService.isExposed(Orientation.NORTH_FACING, 90));
+    }
+
+    @Test
+    void southFacingSegmentsAreExposedToSoutherlyWaves() {
+        assertTrue(InundationModelService.isExposed(Orientation.SOUTH_FACING, 180));
+        assertTrue(InundationModelService.isExposed(Orientation.SOUTH_FACING, 135));
+        assertFalse(InundationModelService.isExposed(Orientation.SOUTH_FACING, 225));
+        assertFalse(InundationModelService.isExposed(Orientation.SOUTH_FACING, 0));
+    }
+
+    @Test
+    void exposedSideTakesTheFullRunUp() {
+        InundationModelService service = new InundationModelService(null, null);
+        ReflectionTestUtils.setField(service, "shelteredFactor", 0.5);
+        TidalReading southerly = TidalReading.builder().waveHeight(2.0).waveDirection(180.0).build();
+
+        assertEquals(2.0, service.waterLevel(Orientation.SOUTH_FACING, southerly), 1e-9);
+        assertEquals(1.0, service.waterLevel(Orientation.NORTH_FACING, southerly), 1e-9);
+    }
+}
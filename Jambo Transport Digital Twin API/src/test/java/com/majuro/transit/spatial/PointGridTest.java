@@ -0,0 +1,132 @@
+package com.majuro.transit.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PointGridTest {
+
+    private static final double UNLIMITED = Double.POSITIVE_INFINITY;
+
+    /**
+     * Distances of the k nearest points within the radius, found by checking every point in the
+     * same projection the grid uses
+     */
+    private static double[] bruteForce(double[] lats, double[] lons, double lat, double lon, int k, double maxMeters) {
+        LocalProjection projection = new LocalProjection(
+                Arrays.stream(lats).average().orElse(0), Arrays.stream(lons).average().orElse(0));
+        return IntStream.range(0, lats.length)
+                .mapToDouble(i -> distance(projection, lats[i], lons[i], lat, lon))
+                .filter(distance -> distance <= maxMeters)
+                .sorted()
+                .limit(k)
+                .toArray();
+    }
+
+    private static double[] distances(int[] points, double[] lats, double[] lons, double lat, double lon) {
+        LocalProjection projection = new LocalProjection(
+                Arrays.stream(lats).average().orElse(0), Arrays.stream(lons).average().orElse(0));
+        return Arrays.stream(points)
+                .mapToDouble(i -> distance(projection, lats[i], lons[i], lat, lon))
+                .toArray();
+    }
+
+    private static double distance(LocalProjection projection, double lat1, double lon1, double lat2, double lon2) {
+        double dx = projection.x(lon1) - projection.x(lon2);
+        double dy = projection.y(lat1) - projection.y(lat2);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private static void assertMatchesBruteForce(PointGrid grid, double[] lats, double[] lons,
+                                                double lat, double lon, int k, double maxMeters) {
+        int[] nearest = grid.nearest(lat, lon, k, maxMeters);
+        assertArrayEquals(bruteForce(lats, lons, lat, lon, k, maxMeters), distances(nearest, lats, lons, lat, lon));
+    }
+
+    @Test
+    void matchesBruteForceOnRandomStops() {
+        Random random = new Random(7);
+        double[] lats = new double[5000];
+        double[] lons = new double[5000];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = 7.05 + random.nextDouble() * 0.07;
+            lons[i] = 171.0 + random.nextDouble() * 0.4;
+        }
+        PointGrid grid = PointGrid.build(lats, lons);
+        double[] radii = {50, 300, 2000, UNLIMITED};
+
+        for (int q = 0; q < 2000; q++) {
+            // Queries cover the grid and a margin around it
+            double lat = 7.0 + random.nextDouble() * 0.17;
+            double lon = 170.9 + random.nextDouble() * 0.6;
+            assertMatchesBruteForce(grid, lats, lons, lat, lon, 1 + random.nextInt(20), radii[q % radii.length]);
+        }
+    }
+
+    @Test
+    void findsPointsFromQueriesOutsideTheGrid() {
+        double[] lats = {7.10, 7.10, 7.11};
+        double[] lons = {171.20, 171.21, 171.20};
+        PointGrid grid = PointGrid.build(lats, lons);
+
+        assertArrayEquals(new int[]{1}, grid.nearest(7.10, 171.30, 1, UNLIMITED));
+        assertArrayEquals(new int[]{2, 0}, grid.nearest(7.20, 171.20, 2, UNLIMITED));
+        assertArrayEquals(new int[0], grid.nearest(7.20, 171.20, 2, 5000));
+        assertMatchesBruteForce(grid, lats, lons, 6.9, 171.0, 3, UNLIMITED);
+    }
+
+    @Test
+    void stopsAtTheRadius() {
+        // Stops 100 m apart along a meridian
+        double metersPerDegree = Math.toRadians(1.0) * GeoMath.EARTH_RADIUS_M;
+        double[] lats = new double[10];
+        double[] lons = new double[10];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = 7.1 + i * 100 / metersPerDegree;
+            lons[i] = 171.3;
+        }
+        PointGrid grid = PointGrid.build(lats, lons);
+
+        assertArrayEquals(new int[]{0, 1, 2}, grid.nearest(lats[0], lons[0], 10, 250));
+        assertArrayEquals(new int[]{0}, grid.nearest(lats[0], lons[0], 10, 99));
+        assertMatchesBruteForce(grid, lats, lons, lats[4], lons[4] + 0.001, 10, 350);
+    }
+
+    @Test
+    void returnsEveryPointWhenKExceedsTheCount() {
+        double[] lats = {7.10, 7.12, 7.11};
+        double[] lons = {171.20, 171.22, 171.21};
+        PointGrid grid = PointGrid.build(lats, lons);
+
+        int[] nearest = grid.nearest(7.10, 171.20, 10, UNLIMITED);
+        assertArrayEquals(new int[]{0, 2, 1}, nearest);
+        assertEquals(0, grid.nearest(7.10, 171.20, 0, UNLIMITED).length);
+        assertEquals(0, PointGrid.build(new double[0], new double[0]).nearest(7.10, 171.20, 3, UNLIMITED).length);
+    }
+
+    @Test
+    void handlesCollinearStops() {
+        Random random = new Random(11);
+        // Along a parallel, so the grid is a single row, and along a meridian, a single column
+        double[][][] lines = {
+                {IntStream.range(0, 200).mapToDouble(i -> 7.1).toArray(),
+                 IntStream.range(0, 200).mapToDouble(i -> 171.0 + i * 0.002).toArray()},
+                {IntStream.range(0, 200).mapToDouble(i -> 7.0 + i * 0.001).toArray(),
+                 IntStream.range(0, 200).mapToDouble(i -> 171.3).toArray()}
+        };
+        for (double[][] line : lines) {
+            PointGrid grid = PointGrid.build(line[0], line[1]);
+            for (int q = 0; q < 200; q++) {
+                double lat = 6.95 + random.nextDouble() * 0.3;
+                double lon = 170.95 + random.nextDouble() * 0.5;
+                assertMatchesBruteForce(grid, line[0], line[1], lat, lon, 1 + random.nextInt(8),
+                        q % 2 == 0 ? UNLIMITED : 1500);
+            }
+        }
+    }
+}
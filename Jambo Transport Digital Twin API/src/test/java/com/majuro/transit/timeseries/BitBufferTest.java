@@ -0,0 +1,59 @@
+package com.majuro.transit.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BitBufferTest {
+
+    @Test
+    void readsBackValuesAcrossWordBoundaries() {
+        BitBuffer buffer = new BitBuffer(1);
+        buffer.write(0x0ABCDEF012345678L, 60);
+        buffer.write(0x3FF, 10);
+        buffer.write(0xDEADBEEFCAFEBABEL, 64);
+        buffer.writeBit(true);
+        buffer.write(5, 3);
+        assertEquals(138, buffer.bitLength());
+
+        BitBuffer.Reader reader = buffer.reader();
+        assertEquals(0x0ABCDEF012345678L, reader.read(60));
+        assertEquals(0x3FF, reader.read(10));
+        assertEquals(0xDEADBEEFCAFEBABEL, reader.read(64));
+        assertTrue(reader.readBit());
+        assertEquals(5, reader.read(3));
+    }
+
+    @Test
+    void keepsOnlyTheRequestedLowBits() {
+        BitBuffer buffer = new BitBuffer(1);
+        buffer.write(-1L, 4);
+        buffer.writeBit(false);
+
+        BitBuffer.Reader reader = buffer.reader();
+        assertEquals(0xF, reader.read(4));
+        assertFalse(reader.readBit());
+    }
+
+    @Test
+    void rejectsReadsPastTheEnd() {
+        BitBuffer buffer = new BitBuffer(1);
+        buffer.write(1, 8);
+        BitBuffer.Reader reader = buffer.reader();
+        reader.read(8);
+        assertThrows(IllegalStateException.class, () -> reader.read(1));
+    }
+
+    @Test
+    void trimmedCopyKeepsTheBits() {
+        BitBuffer buffer = new BitBuffer(16);
+        buffer.write(0x1234, 16);
+        BitBuffer trimmed = buffer.trimmed();
+
+        assertEquals(Long.BYTES, trimmed.sizeBytes());
+        assertEquals(0x1234, trimmed.reader().read(16));
+    }
+}
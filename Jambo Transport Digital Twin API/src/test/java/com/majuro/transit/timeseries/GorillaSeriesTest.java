@@ -0,0 +1,114 @@
+package com.majuro.transit.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GorillaSeriesTest {
+
+    private static final long START = 1_754_611_200L;
+
+    // Gaps covering every delta-of-delta encoding, up to the 32-bit one
+    private static final long[] GAPS = {1800, 1800, 1800, 1850, 1600, 2000, 1800, 5000, 1800, 100_000, 1800, 1};
+
+    @Test
+    void decodesEveryPointExactly() {
+        GorillaSeries series = new GorillaSeries(3, 5);
+        List<Long> timestamps = new ArrayList<>();
+        List<double[]> points = new ArrayList<>();
+        Random random = new Random(42);
+
+        long timestamp = START;
+        for (int i = 0; i < 40; i++) {
+            double[] values = {
+                    random.nextDouble() * 6,
+                    12.0,                               // Unchanged value writes a single bit
+                    i % 7 == 0 ? -0.0 : Math.sin(i)
+            };
+            series.append(timestamp, values);
+            timestamps.add(timestamp);
+            points.add(values.clone());
+            timestamp += GAPS[i % GAPS.length];
+        }
+
+        List<double[]> decoded = new ArrayList<>();
+        List<Long> decodedTimes = new ArrayList<>();
+        series.scan(Long.MIN_VALUE, Long.MAX_VALUE, (time, values) -> {
+            decodedTimes.add(time);
+            decoded.add(values.clone());
+        });
+
+        assertEquals(40L, series.count());
+        assertEquals(points.size(), decoded.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(timestamps.get(i), decodedTimes.get(i));
+            assertArrayEquals(points.get(i), decoded.get(i));
+        }
+    }
+
+    @Test
+    void decodesXorsWithoutLeadingOrTrailingZeros() {
+        GorillaSeries series = new GorillaSeries(1, 4);
+        double first = 1.0;
+        double flipped = Double.longBitsToDouble(Double.doubleToRawLongBits(first) ^ 0x8000000000000001L);
+        double close = Math.nextUp(flipped);
+        series.append(START, first);
+        series.append(START + 60, flipped);
+        series.append(START + 120, close);
+
+        List<Double> decoded = new ArrayList<>();
+        series.scan(START, START + 121, (time, values) -> decoded.add(values[0]));
+        assertEquals(List.of(first, flipped, close), decoded);
+    }
+
+    @Test
+    void rejectsTimestampsThatDoNotIncrease() {
+        GorillaSeries series = new GorillaSeries(1, 4);
+        series.append(START, 1.0);
+        assertFalse(series.append(START, 2.0));
+        assertFalse(series.append(START - 1, 2.0));
+        assertEquals(1L, series.count());
+        assertThrows(IllegalArgumentException.class, () -> series.append(START + 1, 1.0, 2.0));
+    }
+
+    @Test
+    void aggregatesMatchTheRawPoints() {
+        GorillaSeries series = new GorillaSeries(1, 4);
+        double[] values = new double[50];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i * 37 % 11) - 3.5;
+            series.append(START + i * 600L, values[i]);
+        }
+
+        // Hour buckets hold six points, so some sealed blocks merge by summary and others decode
+        long step = 3600;
+        List<GorillaSeries.Bucket> buckets = series.aggregate(START + 600, START + 50 * 600L, step);
+        assertEquals(9, buckets.size());
+        for (GorillaSeries.Bucket bucket : buckets) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double sum = 0;
+            int count = 0;
+            for (int i = 1; i < values.length; i++) {
+                long time = START + i * 600L;
+                if (time >= bucket.startEpochSeconds() && time < bucket.startEpochSeconds() + step) {
+                    min = Math.min(min, values[i]);
+                    max = Math.max(max, values[i]);
+                    sum += values[i];
+                    count++;
+                }
+            }
+            assertEquals(count, bucket.count());
+            assertEquals(min, bucket.min(0), 0);
+            assertEquals(max, bucket.max(0), 0);
+            assertEquals(sum / count, bucket.avg(0), 1e-12);
+        }
+    }
+}